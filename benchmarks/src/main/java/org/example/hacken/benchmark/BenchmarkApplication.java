@@ -0,0 +1,107 @@
+package org.example.hacken.benchmark;
+
+import org.example.hacken.HackenApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.ContextClosedEvent;
+import org.web3j.protocol.Web3j;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+// Starts the application against a private in-memory H2 database and the stub node, without a web server.
+// Each call gets its own database, so benchmarks with different table sizes do not see each other's rows.
+// When BENCHMARK_POSTGRES_URL is set the application runs against that PostgreSQL database instead, in a schema of
+// its own that is dropped again on close, with the production settings: partitioned table, JDBC sink and address
+// statistics. Environment variables are used because JMH forks do not inherit system properties.
+public final class BenchmarkApplication {
+
+    private static final String POSTGRES_URL = System.getenv("BENCHMARK_POSTGRES_URL");
+    private static final String POSTGRES_USERNAME =
+            Objects.requireNonNullElse(System.getenv("BENCHMARK_POSTGRES_USERNAME"), "postgres");
+    private static final String POSTGRES_PASSWORD =
+            Objects.requireNonNullElse(System.getenv("BENCHMARK_POSTGRES_PASSWORD"), "");
+
+    private BenchmarkApplication() {
+    }
+
+    public static ConfigurableApplicationContext start(String... extraProperties) {
+        List<String> args = POSTGRES_URL == null ? h2Properties() : new ArrayList<>();
+        args.addAll(List.of(
+                "--storage.migration.enabled=false",
+                "--ingest.log.sample-rate=0",
+                "--logging.level.root=WARN",
+                "--logging.level.org.hibernate=WARN",
+                "--springdoc.api-docs.enabled=false",
+                "--spring.main.banner-mode=off"));
+        for (String property : extraProperties) {
+            args.add("--" + property);
+        }
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(HackenApplication.class, StubNodeConfig.class)
+                .web(WebApplicationType.NONE);
+        if (POSTGRES_URL != null) {
+            String schema = "bench_" + UUID.randomUUID().toString().replace("-", "");
+            executePostgres("CREATE SCHEMA " + schema);
+            args.addAll(List.of(
+                    "--spring.datasource.url=" + POSTGRES_URL + (POSTGRES_URL.contains("?") ? "&" : "?")
+                            + "currentSchema=" + schema,
+                    "--spring.datasource.username=" + POSTGRES_USERNAME,
+                    "--spring.datasource.password=" + POSTGRES_PASSWORD));
+            builder.listeners((ApplicationListener<ContextClosedEvent>) event ->
+                    executePostgres("DROP SCHEMA " + schema + " CASCADE"));
+        }
+        return builder.run(args.toArray(new String[0]));
+    }
+
+    private static List<String> h2Properties() {
+        return new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID()
+                        + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.hibernate.ddl-auto=create",
+                // H2 has no declarative partitioning: Hibernate creates a plain transactions table instead
+                "--spring.sql.init.mode=never",
+                "--partitions.transactions.enabled=false",
+                // The JDBC sink relies on PostgreSQL's INSERT ... ON CONFLICT ... RETURNING, which H2 lacks
+                "--sync.sink=jpa",
+                // Same for the address statistics upsert (ON CONFLICT ... DO UPDATE)
+                "--stats.address.enabled=false",
+                // The dedup filter warm-up uses PostgreSQL-only SQL; it fails on H2 and the filter starts empty
+                "--logging.level.org.example.hacken.persistence.RecentTransactionHashFilter=ERROR",
+                "--logging.level.org.hibernate.engine.jdbc.spi.SqlExceptionHelper=OFF"));
+    }
+
+    private static void executePostgres(String sql) {
+        try (Connection connection = DriverManager.getConnection(POSTGRES_URL, POSTGRES_USERNAME, POSTGRES_PASSWORD);
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not run '" + sql + "' on " + POSTGRES_URL, e);
+        }
+    }
+
+    @Configuration
+    static class StubNodeConfig {
+
+        // Takes precedence over the Infura-backed client defined by the application
+        @Bean
+        @Primary
+        public Web3j stubWeb3j() {
+            return Web3j.build(new StubWeb3jService());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.example.hacken.benchmark;
+
+import org.example.hacken.ingest.BlockDecoder;
+import org.example.hacken.ingest.DecodedBlock;
+import org.example.hacken.model.TransactionEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.Transaction;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of turning an eth_getBlockByNumber response into transaction entities: JSON deserialization by Web3j,
+// mapping of the deserialized block, and mapTransaction on its own
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockDecodeBenchmark {
+
+    // Typical mainnet blocks carry between 200 and 400 transactions
+    @Param({"200", "400"})
+    private int transactionCount;
+
+    private String blockJson;
+    private EthBlock block;
+    private Transaction transaction;
+
+    @Setup
+    public void setUp() {
+        blockJson = MainnetBlockFixture.blockJson(19_000_000, transactionCount);
+        block = MainnetBlockFixture.parse(blockJson);
+        transaction = (Transaction) block.getBlock().getTransactions().get(0).get();
+    }
+
+    @Benchmark
+    public DecodedBlock parseAndDecode() {
+        return BlockDecoder.decode(MainnetBlockFixture.parse(blockJson));
+    }
+
+    @Benchmark
+    public EthBlock parse() {
+        return MainnetBlockFixture.parse(blockJson);
+    }
+
+    @Benchmark
+    public DecodedBlock decode() {
+        return BlockDecoder.decode(block);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public TransactionEntity mapTransaction() {
+        return BlockDecoder.mapTransaction(transaction);
+    }
+}
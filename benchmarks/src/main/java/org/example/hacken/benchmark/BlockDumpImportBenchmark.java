@@ -0,0 +1,80 @@
+package org.example.hacken.benchmark;
+
+import org.example.hacken.ingest.BlockDumpImporter;
+import org.example.hacken.ingest.BlockDumpReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Reproducible load without a node: a generated gzip dump is streamed through BlockDumpImporter into the database,
+// and, for comparison, only read and decoded. Each iteration imports a fresh block range.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BlockDumpImportBenchmark {
+
+    @Param({"50"})
+    private int blockCount;
+
+    @Param({"200"})
+    private int transactionCount;
+
+    private ConfigurableApplicationContext context;
+    private BlockDumpImporter importer;
+    private long nextBlockNumber = 1_000_000;
+    private Path dump;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        importer = context.getBean(BlockDumpImporter.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void writeDump() throws IOException {
+        dump = Files.createTempFile("blocks-", ".ndjson.gz");
+        MainnetBlockFixture.writeDump(dump, nextBlockNumber, blockCount, transactionCount);
+        nextBlockNumber += blockCount;
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteDump() throws IOException {
+        Files.deleteIfExists(dump);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long importDump() throws Exception {
+        return importer.importDump(dump);
+    }
+
+    @Benchmark
+    public long readDump() throws Exception {
+        long[] transactions = new long[1];
+        BlockDumpReader.read(dump, block -> transactions[0] += block.getBlock().getTransactions().size());
+        return transactions[0];
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.hacken.benchmark;
+
+import org.example.hacken.ingest.BlockDecoder;
+import org.example.hacken.ingest.IngestionPipeline;
+import org.example.hacken.model.TransactionEntity;
+import org.example.hacken.persistence.TransactionPartitionManager;
+import org.example.hacken.persistence.TransactionSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.web3j.protocol.core.methods.response.EthBlock;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// A fetched block all the way into the database: through the decode and persist stages of the ingestion pipeline,
+// and the persistence step alone (sink write and checkpoint in one transaction). Every invocation ingests a new
+// block, so the table grows during the run just like it does on a live node.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class IngestionBenchmark {
+
+    @Param({"200", "400"})
+    private int transactionCount;
+
+    private ConfigurableApplicationContext context;
+    private IngestionPipeline ingestionPipeline;
+    private TransactionSink transactionSink;
+    private TransactionPartitionManager partitionManager;
+    private TransactionTemplate transactionTemplate;
+
+    // Block numbers are never reused, which keeps every transaction hash new
+    private long nextBlockNumber = 1_000_000;
+    private EthBlock block;
+    private List<TransactionEntity> entities;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        ingestionPipeline = context.getBean(IngestionPipeline.class);
+        transactionSink = context.getBean(TransactionSink.class);
+        partitionManager = context.getBean(TransactionPartitionManager.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+    }
+
+    // Generating the block is not part of the measurement
+    @Setup(Level.Invocation)
+    public void nextBlock() {
+        // persistBlock bypasses the pipeline, which otherwise creates the partitions (PostgreSQL only)
+        partitionManager.ensureCovered(nextBlockNumber, nextBlockNumber);
+        block = MainnetBlockFixture.ethBlock(nextBlockNumber++, transactionCount);
+        entities = BlockDecoder.decode(block).transactions();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BigInteger processBlock() throws InterruptedException {
+        BigInteger number = block.getBlock().getNumber();
+        ingestionPipeline.submit(block);
+        // Done once the block's transactions and the checkpoint are committed
+        while (!number.equals(ingestionPipeline.getLastCommittedBlock())) {
+            LockSupport.parkNanos(10_000);
+        }
+        return number;
+    }
+
+    @Benchmark
+    public List<TransactionEntity> persistBlock() {
+        return transactionTemplate.execute(status -> transactionSink.write(entities));
+    }
+}
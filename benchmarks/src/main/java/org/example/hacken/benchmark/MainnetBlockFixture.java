@@ -0,0 +1,151 @@
+package org.example.hacken.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.core.methods.response.EthBlock;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+// Generates eth_getBlockByNumber responses shaped like mainnet blocks: mostly EIP-1559 transactions with a mix of
+// plain transfers, token transfers, contract calls with large calldata and the occasional contract creation.
+// The content is derived from the block number, so the same block always has the same transactions.
+public final class MainnetBlockFixture {
+
+    private static final ObjectMapper OBJECT_MAPPER = ObjectMapperFactory.getObjectMapper();
+
+    private MainnetBlockFixture() {
+    }
+
+    // JSON-RPC response body for a block with `transactionCount` full transaction objects
+    public static String blockJson(long blockNumber, int transactionCount) {
+        Random random = new Random(blockNumber);
+        ObjectNode response = OBJECT_MAPPER.createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.put("id", 1);
+        ObjectNode block = response.putObject("result");
+        String blockHash = hex(random, 32);
+        block.put("number", quantity(blockNumber));
+        block.put("hash", blockHash);
+        block.put("parentHash", hex(random, 32));
+        block.put("nonce", "0x0000000000000000");
+        block.put("sha3Uncles", hex(random, 32));
+        block.put("logsBloom", hex(random, 256));
+        block.put("transactionsRoot", hex(random, 32));
+        block.put("stateRoot", hex(random, 32));
+        block.put("receiptsRoot", hex(random, 32));
+        block.put("miner", hex(random, 20));
+        block.put("difficulty", "0x0");
+        block.put("totalDifficulty", "0xc70d815d562d3cfa955");
+        block.put("extraData", hex(random, 16));
+        block.put("size", quantity(1000L + transactionCount * 600L));
+        block.put("gasLimit", quantity(30_000_000));
+        block.put("gasUsed", quantity(12_000_000 + random.nextInt(18_000_000)));
+        block.put("timestamp", quantity(1_700_000_000L + blockNumber * 12));
+        block.put("baseFeePerGas", quantity(10_000_000_000L + random.nextInt(1_000_000_000)));
+        block.put("mixHash", hex(random, 32));
+        block.putArray("uncles");
+
+        ArrayNode transactions = block.putArray("transactions");
+        for (int index = 0; index < transactionCount; index++) {
+            transactions.add(transaction(random, blockNumber, blockHash, index));
+        }
+        try {
+            return OBJECT_MAPPER.writeValueAsString(response);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The same block, already deserialized the way Web3j does it
+    public static EthBlock ethBlock(long blockNumber, int transactionCount) {
+        return parse(blockJson(blockNumber, transactionCount));
+    }
+
+    // Write blocks [fromBlock, fromBlock + blockCount) as a gzip-compressed NDJSON dump for BlockDumpImporter
+    public static void writeDump(Path file, long fromBlock, int blockCount, int transactionCount) {
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(file)),
+                StandardCharsets.UTF_8)) {
+            for (long number = fromBlock; number < fromBlock + blockCount; number++) {
+                writer.write(blockJson(number, transactionCount));
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static EthBlock parse(String json) {
+        try {
+            return OBJECT_MAPPER.readValue(json, EthBlock.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ObjectNode transaction(Random random, long blockNumber, String blockHash, int index) {
+        ObjectNode tx = OBJECT_MAPPER.createObjectNode();
+        int kind = random.nextInt(100);
+        tx.put("blockHash", blockHash);
+        tx.put("blockNumber", quantity(blockNumber));
+        tx.put("hash", hex(random, 32));
+        tx.put("from", hex(random, 20));
+        tx.put("nonce", quantity(random.nextInt(100_000)));
+        tx.put("transactionIndex", quantity(index));
+        tx.put("gas", quantity(21_000 + random.nextInt(500_000)));
+        tx.put("gasPrice", quantity(10_000_000_000L + random.nextInt(2_000_000_000)));
+        tx.put("maxFeePerGas", quantity(20_000_000_000L + random.nextInt(2_000_000_000)));
+        tx.put("maxPriorityFeePerGas", quantity(random.nextInt(2_000_000_000)));
+        tx.put("type", "0x2");
+        tx.put("chainId", "0x1");
+        tx.putArray("accessList");
+        if (kind < 35) {
+            // Plain ether transfer
+            tx.put("to", hex(random, 20));
+            tx.put("value", quantity(Math.abs(random.nextLong()) >>> random.nextInt(40)));
+            tx.put("input", "0x");
+        } else if (kind < 70) {
+            // ERC-20 transfer(address,uint256)
+            tx.put("to", hex(random, 20));
+            tx.put("value", "0x0");
+            tx.put("input", "0xa9059cbb" + hex(random, 64).substring(2));
+        } else if (kind < 98) {
+            // Router or aggregator call with large calldata
+            tx.put("to", hex(random, 20));
+            tx.put("value", quantity(random.nextInt(1_000_000_000)));
+            tx.put("input", hex(random, 4 + 32 * (4 + random.nextInt(40))));
+        } else {
+            // Contract creation
+            tx.putNull("to");
+            tx.put("value", "0x0");
+            tx.put("input", hex(random, 2_000 + random.nextInt(10_000)));
+        }
+        tx.put("v", "0x1");
+        tx.put("yParity", "0x1");
+        tx.put("r", hex(random, 32));
+        tx.put("s", hex(random, 32));
+        return tx;
+    }
+
+    private static String quantity(long value) {
+        return "0x" + Long.toHexString(value);
+    }
+
+    private static String hex(Random random, int bytes) {
+        StringBuilder hex = new StringBuilder(2 + bytes * 2).append("0x");
+        for (int i = 0; i < bytes; i++) {
+            int b = random.nextInt(256);
+            hex.append(Character.forDigit(b >> 4, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
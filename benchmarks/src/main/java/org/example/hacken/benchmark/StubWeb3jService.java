@@ -0,0 +1,82 @@
+package org.example.hacken.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.reactivex.Flowable;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.websocket.events.Notification;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// In-process stand-in for the Ethereum node. The chain head stays at block 0 and every block is empty, so the
+// application's own sync services stay idle while a benchmark drives the pipeline directly.
+public class StubWeb3jService implements Web3jService {
+
+    private static final ObjectMapper OBJECT_MAPPER = ObjectMapperFactory.getObjectMapper();
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        ObjectNode response = OBJECT_MAPPER.createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.put("id", request.getId());
+        switch (request.getMethod()) {
+            case "eth_blockNumber" -> response.put("result", "0x0");
+            case "eth_getBlockByNumber" -> {
+                ObjectNode block = response.putObject("result");
+                block.put("number", "0x0");
+                block.put("hash", "0x" + "0".repeat(64));
+                block.putArray("transactions");
+            }
+            case "eth_newBlockFilter" -> response.put("result", "0x1");
+            case "eth_getFilterChanges" -> response.putArray("result");
+            case "eth_uninstallFilter" -> response.put("result", true);
+            default -> response.putNull("result");
+        }
+        return OBJECT_MAPPER.treeToValue(response, responseType);
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        try {
+            return CompletableFuture.completedFuture(send(request, responseType));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        List<Response<?>> responses = new ArrayList<>();
+        for (Request<?, ? extends Response<?>> request : batchRequest.getRequests()) {
+            responses.add(send(request, request.getResponseType()));
+        }
+        return new BatchResponse(batchRequest.getRequests(), responses);
+    }
+
+    @Override
+    public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+        try {
+            return CompletableFuture.completedFuture(sendBatch(batchRequest));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod,
+                                                             Class<T> responseType) {
+        return Flowable.empty();
+    }
+
+    @Override
+    public void close() {
+    }
+}
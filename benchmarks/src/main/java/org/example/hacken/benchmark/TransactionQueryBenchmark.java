@@ -0,0 +1,104 @@
+package org.example.hacken.benchmark;
+
+import org.example.hacken.controller.TransactionController;
+import org.example.hacken.model.TransactionEntity;
+import org.example.hacken.model.TransactionPage;
+import org.example.hacken.repository.TransactionRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// TransactionController lookups at different table sizes. The controller methods are called directly, so the
+// numbers cover the query and mapping cost without HTTP serialization.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class TransactionQueryBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+    // Number of distinct keys the lookups cycle through (a power of two)
+    private static final int KEYS = 1024;
+
+    @Param({"10000", "100000", "1000000"})
+    private int tableSize;
+
+    private ConfigurableApplicationContext context;
+    private TransactionController controller;
+    private TransactionRepository repository;
+    private String[] hashes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        controller = context.getBean(TransactionController.class);
+        repository = context.getBean(TransactionRepository.class);
+
+        List<String> stored = TransactionTableFixture.insert(context, tableSize, 1);
+        hashes = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            hashes[i] = stored.get((int) ((long) i * stored.size() / KEYS));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // Through the lookup cache; after the warm-up every key is a cache hit
+    @Benchmark
+    public TransactionEntity getTransaction() throws IOException {
+        return controller.getTransaction(hashes[next++ & (KEYS - 1)]);
+    }
+
+    // The database lookup the cache falls back to
+    @Benchmark
+    public Optional<TransactionEntity> findByHash() {
+        return repository.findByTransactionHash(hashes[next++ & (KEYS - 1)]);
+    }
+
+    @Benchmark
+    public TransactionPage fromAddressPage() {
+        return controller.getTransactionsFromAddress(senderAddress(), null, null, null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public TransactionPage searchFromAndTo() {
+        return controller.searchTransactions(senderAddress(), recipientAddress(), null, null, null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public TransactionPage valueRangePage() {
+        return controller.getTransactionsByValue("1000000000000000000", "100000000000000000000000", "desc", null,
+                null, null, PAGE_SIZE);
+    }
+
+    private String senderAddress() {
+        return TransactionTableFixture.address(Math.floorMod(next++, TransactionTableFixture.ADDRESS_POOL_SIZE));
+    }
+
+    private String recipientAddress() {
+        return TransactionTableFixture.address(
+                Math.floorMod(next++, TransactionTableFixture.ADDRESS_POOL_SIZE) + TransactionTableFixture.ADDRESS_POOL_SIZE);
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.hacken.benchmark;
+
+import org.example.hacken.model.HexBytesConverter;
+import org.example.hacken.persistence.TransactionPartitionManager;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Fills the transactions table with synthetic rows. Senders and recipients are drawn from a fixed pool of
+// addresses, so that address lookups return a table-size dependent number of rows.
+public final class TransactionTableFixture {
+
+    // Number of distinct sender and recipient addresses
+    public static final int ADDRESS_POOL_SIZE = 1_000;
+
+    // Rows are spread over consecutive blocks of this many transactions, starting at block 1
+    public static final int TRANSACTIONS_PER_BLOCK = 200;
+
+    private static final int INSERT_BATCH_SIZE = 1_000;
+
+    private TransactionTableFixture() {
+    }
+
+    // Insert `rowCount` rows and return their transaction hashes
+    public static List<String> insert(ApplicationContext context, int rowCount, long seed) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        // Only does anything on PostgreSQL, where the rows go into partitions that must exist first
+        context.getBean(TransactionPartitionManager.class)
+                .ensureCovered(1, (long) rowCount / TRANSACTIONS_PER_BLOCK + 1);
+        Random random = new Random(seed);
+        List<String> hashes = new ArrayList<>(rowCount);
+        List<Object[]> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        List<Object[]> claims = new ArrayList<>(INSERT_BATCH_SIZE);
+        for (int i = 0; i < rowCount; i++) {
+            String hash = randomHex(random, 32);
+            hashes.add(hash);
+            long block = (long) i / TRANSACTIONS_PER_BLOCK + 1;
+            claims.add(new Object[]{HexBytesConverter.toBytes(hash), block});
+            batch.add(new Object[]{
+                    HexBytesConverter.toBytes(hash),
+                    block,
+                    HexBytesConverter.toBytes(address(random.nextInt(ADDRESS_POOL_SIZE))),
+                    HexBytesConverter.toBytes(address(random.nextInt(ADDRESS_POOL_SIZE) + ADDRESS_POOL_SIZE)),
+                    new BigDecimal(new BigInteger(80, random))});
+            if (batch.size() == INSERT_BATCH_SIZE || i == rowCount - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO transactions (transaction_hash, block_number, from_address,"
+                        + " to_address, tx_value) VALUES (?, ?, ?, ?, ?)", batch);
+                // By-hash lookups go through transaction_blocks
+                jdbcTemplate.batchUpdate("INSERT INTO transaction_blocks (transaction_hash, block_number)"
+                        + " VALUES (?, ?)", claims);
+                batch.clear();
+                claims.clear();
+            }
+        }
+        return hashes;
+    }
+
+    // Sender addresses are 0..ADDRESS_POOL_SIZE-1, recipients ADDRESS_POOL_SIZE..2*ADDRESS_POOL_SIZE-1
+    public static String address(int index) {
+        return String.format("0x%040x", index);
+    }
+
+    public static String randomHex(Random random, int bytes) {
+        byte[] value = new byte[bytes];
+        random.nextBytes(value);
+        return HexBytesConverter.toHex(value);
+    }
+}
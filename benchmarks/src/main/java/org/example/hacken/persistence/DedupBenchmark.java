@@ -0,0 +1,100 @@
+package org.example.hacken.persistence;
+
+import org.example.hacken.benchmark.BenchmarkApplication;
+import org.example.hacken.benchmark.TransactionTableFixture;
+import org.example.hacken.model.TransactionEntity;
+import org.example.hacken.repository.TransactionRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Duplicate check of one block's transaction hashes against the stored ones: the in-process filter in front of
+// the database versus asking the database for every hash, plus the batching of the new entities for saveAll.
+// Lives in the persistence package to reach the package-private JpaTransactionSink.partitionList.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DedupBenchmark {
+
+    private static final int STORED_TRANSACTIONS = 50_000;
+    private static final int BLOCK_SIZE = 300;
+
+    // Share of the block's hashes that are already stored (0 for live blocks, 1 for a replayed block)
+    @Param({"0", "0.1", "1"})
+    private double duplicateRatio;
+
+    private ConfigurableApplicationContext context;
+    private RecentTransactionHashFilter hashFilter;
+    private TransactionRepository transactionRepository;
+    private List<String> blockHashes;
+    private List<TransactionEntity> blockEntities;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        hashFilter = context.getBean(RecentTransactionHashFilter.class);
+        transactionRepository = context.getBean(TransactionRepository.class);
+
+        List<String> stored = TransactionTableFixture.insert(context, STORED_TRANSACTIONS, 1);
+        hashFilter.record(stored);
+
+        Random random = new Random(2);
+        blockHashes = new ArrayList<>(BLOCK_SIZE);
+        blockEntities = new ArrayList<>(BLOCK_SIZE);
+        int duplicates = (int) Math.round(BLOCK_SIZE * duplicateRatio);
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            String hash = i < duplicates
+                    ? stored.get(random.nextInt(stored.size()))
+                    : TransactionTableFixture.randomHex(random, 32);
+            blockHashes.add(hash);
+            TransactionEntity entity = new TransactionEntity();
+            entity.setTransactionHash(hash);
+            entity.setBlockNumber(1L);
+            entity.setFromAddress(TransactionTableFixture.address(i));
+            entity.setToAddress(TransactionTableFixture.address(i + 1));
+            entity.setValue("1000000000000000000");
+            blockEntities.add(entity);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Set<String> filterThenDatabase() {
+        return hashFilter.findExisting(blockHashes, transactionRepository::findExistingTransactionHashes);
+    }
+
+    @Benchmark
+    public List<String> databaseOnly() {
+        return transactionRepository.findExistingTransactionHashes(blockHashes);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public List<List<TransactionEntity>> partitionList() {
+        return JpaTransactionSink.partitionList(blockEntities, 100);
+    }
+}
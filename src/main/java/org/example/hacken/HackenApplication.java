@@ -2,8 +2,10 @@ package org.example.hacken;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class HackenApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,60 @@
+package org.example.hacken.config;
+
+import org.hibernate.boot.model.relational.Namespace;
+import org.hibernate.boot.model.relational.Sequence;
+import org.hibernate.mapping.Table;
+import org.hibernate.tool.schema.spi.SchemaFilter;
+import org.hibernate.tool.schema.spi.SchemaFilterProvider;
+
+import java.util.Set;
+
+// Keeps Hibernate's schema update (ddl-auto=update) away from the partitioned tables, whose DDL lives in
+// schema.sql: Hibernate does not see the indexes of partitioned tables and would try to create them again.
+// Schema changes to these tables go into schema.sql. Creating a schema from scratch (ddl-auto=create, e.g. on H2)
+// still includes them, as plain tables.
+public class PartitionedTableSchemaFilterProvider implements SchemaFilterProvider {
+
+    private static final Set<String> PARTITIONED_TABLES = Set.of("transactions");
+
+    private static final SchemaFilter MIGRATE_FILTER = new SchemaFilter() {
+        @Override
+        public boolean includeNamespace(Namespace namespace) {
+            return true;
+        }
+
+        @Override
+        public boolean includeTable(Table table) {
+            return !PARTITIONED_TABLES.contains(table.getName());
+        }
+
+        @Override
+        public boolean includeSequence(Sequence sequence) {
+            return true;
+        }
+    };
+
+    @Override
+    public SchemaFilter getCreateFilter() {
+        return SchemaFilter.ALL;
+    }
+
+    @Override
+    public SchemaFilter getDropFilter() {
+        return SchemaFilter.ALL;
+    }
+
+    @Override
+    public SchemaFilter getTruncatorFilter() {
+        return SchemaFilter.ALL;
+    }
+
+    @Override
+    public SchemaFilter getMigrateFilter() {
+        return MIGRATE_FILTER;
+    }
+
+    @Override
+    public SchemaFilter getValidateFilter() {
+        return SchemaFilter.ALL;
+    }
+}
@@ -1,24 +1,93 @@
 package org.example.hacken.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import okhttp3.OkHttpClient;
+import org.example.hacken.rpc.CircuitBreaker;
+import org.example.hacken.rpc.MeteredWeb3jService;
+import org.example.hacken.rpc.MultiEndpointWeb3jService;
+import org.example.hacken.rpc.RpcEndpoint;
+import org.example.hacken.rpc.TokenBucket;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.web3j.protocol.Web3j;
+import org.web3j.protocol.Web3jService;
 import org.web3j.protocol.http.HttpService;
 
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 public class Web3Config {
 
-    @Value("${infura.project.id}")
-    private String infuraProjectId;
+    // JSON-RPC endpoints, in order of preference until their latencies are known
+    @Value("${rpc.endpoints:https://mainnet.infura.io/v3/${infura.project.id}}")
+    private List<String> endpointUrls;
+
+    // Requests per second allowed per endpoint: one value for all endpoints or one per endpoint; 0 = unlimited
+    @Value("${rpc.endpoint.requests-per-second:0}")
+    private List<Double> requestsPerSecond;
+
+    // Requests an endpoint may receive at once after being idle, in seconds of its rate
+    @Value("${rpc.endpoint.burst-seconds:1}")
+    private double burstSeconds;
+
+    @Value("${rpc.circuit.failure-threshold:5}")
+    private int circuitFailureThreshold;
+
+    @Value("${rpc.circuit.open-ms:30000}")
+    private long circuitOpenMs;
+
+    @Value("${rpc.hedge.enabled:true}")
+    private boolean hedgeEnabled;
+
+    // Latency percentile of the chosen endpoint after which a read is hedged to a second endpoint
+    @Value("${rpc.hedge.percentile:0.95}")
+    private double hedgePercentile;
 
+    @Value("${rpc.hedge.min-delay-ms:50}")
+    private long hedgeMinDelayMs;
+
+    @Value("${rpc.hedge.max-delay-ms:2000}")
+    private long hedgeMaxDelayMs;
+
+    // Every request (single calls, batches and the block polling) goes through the metered transport, which spreads
+    // it over the endpoints
     @Bean
-    public Web3j web3j() {
-        if (infuraProjectId == null || infuraProjectId.isEmpty()) {
-            throw new IllegalStateException("Infura Project ID is not set in application.properties.");
+    public Web3jService web3jService(MeterRegistry meterRegistry) {
+        if (endpointUrls.isEmpty() || endpointUrls.stream().anyMatch(url -> url.isBlank() || url.endsWith("/v3/"))) {
+            throw new IllegalStateException(
+                    "Infura Project ID (or rpc.endpoints) is not set in application.properties.");
+        }
+
+        // One connection pool shared by all endpoints
+        OkHttpClient httpClient = new OkHttpClient();
+        List<RpcEndpoint> endpoints = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < endpointUrls.size(); i++) {
+            String url = endpointUrls.get(i).trim();
+            double rate = requestsPerSecond.get(Math.min(i, requestsPerSecond.size() - 1));
+            // Metrics are tagged by host only, since provider URLs usually carry an API key
+            String name = URI.create(url).getHost();
+            if (!names.add(name)) {
+                name = name + "-" + i;
+                names.add(name);
+            }
+            endpoints.add(new RpcEndpoint(name, new HttpService(url, httpClient),
+                    new TokenBucket(rate, Math.max(1, rate * burstSeconds)),
+                    new CircuitBreaker(circuitFailureThreshold, TimeUnit.MILLISECONDS.toNanos(circuitOpenMs)),
+                    meterRegistry));
         }
+        return new MeteredWeb3jService(new MultiEndpointWeb3jService(endpoints, hedgeEnabled, hedgePercentile,
+                hedgeMinDelayMs, hedgeMaxDelayMs), meterRegistry);
+    }
 
-        String infuraUrl = "https://mainnet.infura.io/v3/" + infuraProjectId;
-        return Web3j.build(new HttpService(infuraUrl));
+    @Bean
+    public Web3j web3j(Web3jService web3jService) {
+        return Web3j.build(web3jService);
     }
 }
@@ -0,0 +1,34 @@
+package org.example.hacken.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import org.example.hacken.model.AddressStats;
+import org.example.hacken.repository.AddressStatsRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+// Mark this class as a REST controller that handles requests to `/api/addresses`
+@RestController
+@RequestMapping("/api/addresses")
+@Tag(name = "Address API", description = "Aggregated information about addresses")
+public class AddressController {
+
+    // Inject the repository holding the per-address totals maintained during ingestion
+    @Autowired
+    private AddressStatsRepository addressStatsRepository;
+
+    // Endpoint to get the sent/received counts, wei totals and first/last block of an address
+    @GetMapping("/{address}/stats")
+    @Operation(summary = "Get Address Statistics",
+            description = "Transaction counts, total wei sent and received, and first/last block of an address")
+    public AddressStats getAddressStats(@PathVariable String address) {
+        if (!address.matches("0x[0-9a-fA-F]{40}")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "address must be a 0x-prefixed 20-byte hex string");
+        }
+        return addressStatsRepository.findById(address)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No transactions for " + address));
+    }
+}
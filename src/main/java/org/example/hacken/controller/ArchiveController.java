@@ -0,0 +1,44 @@
+package org.example.hacken.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import org.example.hacken.persistence.TransactionArchive;
+import org.example.hacken.persistence.TransactionPartitionManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.util.List;
+
+// Mark this class as a REST controller that handles requests to `/api/admin/archive`
+@RestController
+@RequestMapping("/api/admin/archive")
+@Tag(name = "Archive API", description = "Maintenance of the compressed archive of old transactions")
+public class ArchiveController {
+
+    // Inject the archive tier of the transactions table
+    @Autowired
+    private TransactionArchive archive;
+
+    // Endpoint to list the segment files of the archive
+    @GetMapping
+    @Operation(summary = "List Archive Segments", description = "Segment files with their block ranges [fromBlock, toBlock)")
+    public List<TransactionArchive.Segment> getSegments() {
+        return archive.segments();
+    }
+
+    // Endpoint to archive the partitions that are old enough right away instead of waiting for the scheduled run
+    @PostMapping("/run")
+    @Operation(summary = "Archive Old Partitions",
+            description = "Move partitions older than archive.older-than-blocks into segments and drop them")
+    public List<TransactionPartitionManager.Partition> archivePartitions() throws IOException {
+        try {
+            return archive.archiveOldPartitions();
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+}
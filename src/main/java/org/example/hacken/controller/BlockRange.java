@@ -0,0 +1,18 @@
+package org.example.hacken.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+// Inclusive block range of a query; missing bounds leave that side open
+record BlockRange(long from, long to) {
+
+    static BlockRange of(Long fromBlock, Long toBlock) {
+        long from = fromBlock != null ? fromBlock : 0;
+        long to = toBlock != null ? toBlock : Long.MAX_VALUE;
+        if (from < 0 || from > to) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "fromBlock and toBlock must satisfy 0 <= fromBlock <= toBlock");
+        }
+        return new BlockRange(from, to);
+    }
+}
@@ -0,0 +1,102 @@
+package org.example.hacken.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import org.example.hacken.model.EventLog;
+import org.example.hacken.model.EventLogPage;
+import org.example.hacken.repository.EventLogRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+// Mark this class as a REST controller that handles requests to `/api/logs`
+@RestController
+@RequestMapping("/api/logs")
+@Tag(name = "Event Log API", description = "Event logs ingested from transaction receipts")
+public class EventLogController {
+
+    // A `0x`-prefixed 20-byte address
+    private static final Pattern ADDRESS = Pattern.compile("0[xX][0-9a-fA-F]{40}");
+
+    // A `0x`-prefixed 32-byte topic
+    private static final Pattern TOPIC = Pattern.compile("0[xX][0-9a-fA-F]{64}");
+
+    // Inject the repository for interacting with the event_logs table
+    @Autowired
+    private EventLogRepository repository;
+
+    // Page size used when the client does not ask for one
+    @Value("${api.page.default-size:100}")
+    private int defaultPageSize;
+
+    // Largest page size a client may request
+    @Value("${api.page.max-size:1000}")
+    private int maxPageSize;
+
+    // Endpoint to list event logs by emitting contract and/or event signature, one keyset page at a time
+    @GetMapping
+    @Operation(summary = "Search Event Logs",
+            description = "Logs in block order, optionally filtered by contract address and topic0 (event signature)")
+    public EventLogPage searchLogs(
+            @RequestParam(required = false) String address, // Contract that emitted the log
+            @RequestParam(required = false) String topic0, // First topic, the hash of the event signature
+            @RequestParam(required = false) Long fromBlock,
+            @RequestParam(required = false) Long toBlock,
+            @RequestParam(required = false) String after, // Cursor of the form "<blockNumber>:<logIndex>"
+            @RequestParam(required = false) Integer limit) {
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        Pageable fetch = PageRequest.of(0, pageSize + 1);
+        BlockRange blocks = BlockRange.of(fromBlock, toBlock);
+        // Malformed filters would otherwise fail in the hex conversion of the storage layer with 500
+        if (address != null && !ADDRESS.matcher(address).matches()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "address must be a 0x-prefixed 20-byte hex string");
+        }
+        if (topic0 != null && !TOPIC.matcher(topic0).matches()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "topic0 must be a 0x-prefixed 32-byte hex string");
+        }
+
+        // Without a cursor, start before the first log of any block
+        long afterBlock = -1;
+        int afterIndex = -1;
+        if (after != null) {
+            int separator = after.indexOf(':');
+            try {
+                afterBlock = Long.parseLong(after.substring(0, separator));
+                afterIndex = Integer.parseInt(after.substring(separator + 1));
+            } catch (RuntimeException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "after must have the form <blockNumber>:<logIndex>");
+            }
+        }
+
+        List<EventLog> rows;
+        if (address != null && topic0 != null) {
+            rows = repository.findPageByAddressAndTopic0(address, topic0, blocks.from(), blocks.to(), afterBlock,
+                    afterIndex, fetch);
+        } else if (address != null) {
+            rows = repository.findPageByAddress(address, blocks.from(), blocks.to(), afterBlock, afterIndex, fetch);
+        } else if (topic0 != null) {
+            rows = repository.findPageByTopic0(topic0, blocks.from(), blocks.to(), afterBlock, afterIndex, fetch);
+        } else {
+            rows = repository.findPage(blocks.from(), blocks.to(), afterBlock, afterIndex, fetch);
+        }
+
+        // Trim the extra row and derive the cursor of the next page from the last item
+        if (rows.size() <= pageSize) {
+            return new EventLogPage(rows, null);
+        }
+        List<EventLog> items = rows.subList(0, pageSize);
+        EventLog last = items.get(pageSize - 1);
+        return new EventLogPage(items, last.getBlockNumber() + ":" + last.getLogIndex());
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.hacken.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import org.example.hacken.persistence.TransactionPartitionManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+// Mark this class as a REST controller that handles requests to `/api/admin/partitions`
+@RestController
+@RequestMapping("/api/admin/partitions")
+@Tag(name = "Partition API", description = "Maintenance of the block-range partitions of the transactions table")
+public class PartitionController {
+
+    // Inject the manager of the transactions partitions
+    @Autowired
+    private TransactionPartitionManager partitionManager;
+
+    // Endpoint to list the attached partitions
+    @GetMapping
+    @Operation(summary = "List Partitions", description = "Attached partitions with their block ranges [fromBlock, toBlock)")
+    public List<TransactionPartitionManager.Partition> getPartitions() {
+        return partitionManager.partitions();
+    }
+
+    // Endpoint to detach every partition that ends at or before the given block
+    @PostMapping("/detach")
+    @Operation(summary = "Detach Old Partitions",
+            description = "Detach partitions lying entirely below a block; the detached tables are kept until dropped")
+    public List<TransactionPartitionManager.Partition> detachPartitions(@RequestParam long beforeBlock) {
+        try {
+            return partitionManager.detachBefore(beforeBlock);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+}
@@ -4,16 +4,31 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
 import org.example.hacken.model.TransactionEntity;
-import org.example.hacken.repository.TransactionRepository;
+import org.example.hacken.model.TransactionLookupResult;
+import org.example.hacken.model.TransactionPage;
+import org.example.hacken.rpc.JsonRpcBatcher;
+import org.example.hacken.service.TransactionExportService;
+import org.example.hacken.service.TransactionLookupService;
+import org.example.hacken.service.TransactionQueryService;
+import org.example.hacken.service.TransactionStreamService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import org.web3j.protocol.Web3j;
-import org.web3j.protocol.core.methods.response.*;
 
 import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 
 // Mark this class as a REST controller that handles requests to `/api/transactions`
 @RestController
@@ -21,91 +36,269 @@ import java.util.Optional;
 @Tag(name = "Transaction API", description = "Operations related to transactions") // Swagger tag for API documentation
 public class TransactionController {
 
-    // Inject Web3j for interacting with the Ethereum blockchain
+    // Largest possible transaction value (2^256 - 1 wei)
+    private static final BigInteger MAX_WEI = BigInteger.TWO.pow(256).subtract(BigInteger.ONE);
+
+    // A `0x`-prefixed 32-byte hash
+    private static final Pattern TRANSACTION_HASH = Pattern.compile("0[xX][0-9a-fA-F]{64}");
+
+    // A `0x`-prefixed 20-byte address
+    private static final Pattern ADDRESS = Pattern.compile("0[xX][0-9a-fA-F]{40}");
+
+    // A hash cursor: a hash or any whole-byte prefix of one, down to the empty hash "0x". An odd number of digits is
+    // rejected rather than left-padded, which would turn "0xabc" into the different cursor "0x0abc"
+    private static final Pattern HASH_CURSOR = Pattern.compile("0[xX](?:[0-9a-fA-F]{2}){0,32}");
+
+    private static final String ADDRESS_FORMAT = "a 0x-prefixed 20-byte hex string";
+    private static final String HASH_FORMAT = "a 0x-prefixed 32-byte hex string";
+    private static final String CURSOR_FORMAT = "a 0x-prefixed hex string of at most 32 whole bytes";
+
+    // Inject the read-through cache used for lookups by hash
     @Autowired
-    private Web3j web3j;
+    private TransactionLookupService lookupService;
 
-    // Inject the repository for interacting with transaction data in the database
+    // Inject the service that pages through the database and the archive
     @Autowired
-    private TransactionRepository repository;
+    private TransactionQueryService queryService;
+
+    // Inject the service that streams large result sets
+    @Autowired
+    private TransactionExportService exportService;
+
+    // Inject the service that pushes newly ingested transactions to subscribers
+    @Autowired
+    private TransactionStreamService streamService;
+
+    // Largest number of hashes accepted by a batch lookup
+    @Value("${api.batch.max-hashes:1000}")
+    private int maxBatchSize;
+
+    // Page size used when the client does not ask for one
+    @Value("${api.page.default-size:100}")
+    private int defaultPageSize;
+
+    // Largest page size a client may request
+    @Value("${api.page.max-size:1000}")
+    private int maxPageSize;
 
     // Endpoint to get a transaction by its hash
     @GetMapping("/{hash}")
     @Operation(summary = "Get Transaction by Hash", description = "Retrieve a transaction using its hash") // Swagger operation documentation
     public TransactionEntity getTransaction(@PathVariable String hash) throws IOException {
-        // Check if the transaction already exists in the database
-        Optional<TransactionEntity> optionalTx = repository.findById(hash);
-        if (optionalTx.isPresent()) {
-            return optionalTx.get(); // If found, return the transaction
-        }
+        validate(hash, TRANSACTION_HASH, "hash", HASH_FORMAT);
+        // Served from the cache, then the database, then the blockchain; returns null if the transaction is unknown
+        return JsonRpcBatcher.await(lookupService.getTransaction(hash)).orElse(null);
+    }
 
-        // Fetch the transaction by hash from the blockchain using Web3j
-        EthTransaction ethTransaction = web3j.ethGetTransactionByHash(hash).send();
-        Optional<Transaction> transactionOptional = ethTransaction.getTransaction();
-
-        // If the transaction exists on the blockchain
-        if (transactionOptional.isPresent()) {
-            Transaction tx = transactionOptional.get();
-            // Map the blockchain transaction to TransactionEntity and save it to the database
-            TransactionEntity entity = mapTransaction(tx);
-            repository.save(entity); // Save the transaction entity
-            return entity; // Return the saved transaction entity
-        } else {
-            // If the transaction was not found, return null or throw a custom exception
-            return null;
+    // Endpoint to look up many transactions by hash in one request
+    @PostMapping("/batch")
+    @Operation(summary = "Get Transactions by Hashes",
+            description = "Look up a JSON array of transaction hashes; results are returned in request order")
+    public List<TransactionLookupResult> getTransactions(@RequestBody List<String> hashes) throws IOException {
+        if (hashes.isEmpty() || hashes.size() > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Between 1 and " + maxBatchSize + " hashes can be looked up at once");
+        }
+        for (int i = 0; i < hashes.size(); i++) {
+            if (hashes.get(i) == null || !TRANSACTION_HASH.matcher(hashes.get(i).trim()).matches()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Invalid transaction hash at index " + i + ": " + hashes.get(i));
+            }
+        }
+        // Cached hashes are answered from memory; the rest takes one database query and batched node requests
+        List<Optional<TransactionEntity>> transactions = JsonRpcBatcher.await(lookupService.getTransactions(hashes));
+        List<TransactionLookupResult> results = new ArrayList<>(hashes.size());
+        for (int i = 0; i < hashes.size(); i++) {
+            TransactionEntity transaction = transactions.get(i).orElse(null);
+            results.add(new TransactionLookupResult(hashes.get(i), transaction != null, transaction));
         }
+        return results;
     }
 
-    // Endpoint to retrieve all transactions from a specific sender address
+    // Endpoint to retrieve transactions from a specific sender address, one keyset page at a time
     @GetMapping("/from/{address}")
     @Operation(summary = "Get Transactions From Address", description = "Retrieve transactions from a specific address")
-    public List<TransactionEntity> getTransactionsFromAddress(@PathVariable String address) throws IOException {
-        // Fetch and return all transactions from the specified address
-        return repository.findByFromAddress(address);
+    public TransactionPage getTransactionsFromAddress(
+            @PathVariable String address,
+            @RequestParam(required = false) Long fromBlock, // First block to include
+            @RequestParam(required = false) Long toBlock, // Last block to include
+            @RequestParam(required = false) String after, // Cursor returned as `nextCursor` by the previous page
+            @RequestParam(required = false) Integer limit) { // Page size, capped at the configured maximum
+        validate(address, ADDRESS, "address", ADDRESS_FORMAT);
+        int pageSize = pageSize(limit);
+        BlockRange blocks = BlockRange.of(fromBlock, toBlock);
+        return toPage(queryService.findPage(address, null, blocks.from(), blocks.to(), cursor(after),
+                fetchSize(pageSize)), pageSize);
     }
 
-    // Endpoint to retrieve all transactions sent to a specific recipient address
+    // Endpoint to retrieve transactions sent to a specific recipient address, one keyset page at a time
     @GetMapping("/to/{address}")
     @Operation(summary = "Get Transactions To Address", description = "Retrieve transactions to a specific address")
-    public List<TransactionEntity> getTransactionsToAddress(@PathVariable String address) throws IOException {
-        // Fetch and return all transactions to the specified address
-        return repository.findByToAddress(address);
+    public TransactionPage getTransactionsToAddress(
+            @PathVariable String address,
+            @RequestParam(required = false) Long fromBlock,
+            @RequestParam(required = false) Long toBlock,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit) {
+        validate(address, ADDRESS, "address", ADDRESS_FORMAT);
+        int pageSize = pageSize(limit);
+        BlockRange blocks = BlockRange.of(fromBlock, toBlock);
+        return toPage(queryService.findPage(null, address, blocks.from(), blocks.to(), cursor(after),
+                fetchSize(pageSize)), pageSize);
     }
 
     // Endpoint to search for transactions using optional parameters (fromAddress, toAddress)
     @GetMapping("/search")
     @Operation(summary = "Search Transactions", description = "Search transactions based on criteria")
-    public List<TransactionEntity> searchTransactions(
+    public TransactionPage searchTransactions(
             @RequestParam(required = false) String fromAddress, // Optional query parameter for the sender's address
-            @RequestParam(required = false) String toAddress) { // Optional query parameter for the recipient's address
+            @RequestParam(required = false) String toAddress, // Optional query parameter for the recipient's address
+            @RequestParam(required = false) Long fromBlock, // Optional first block to include
+            @RequestParam(required = false) Long toBlock, // Optional last block to include
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit) {
+        validateAddresses(fromAddress, toAddress);
+        int pageSize = pageSize(limit);
+        BlockRange blocks = BlockRange.of(fromBlock, toBlock);
+        // Missing address filters match every transaction; without any, all transactions are paged through
+        return toPage(queryService.findPage(fromAddress, toAddress, blocks.from(), blocks.to(), cursor(after),
+                fetchSize(pageSize)), pageSize);
+    }
+
+    // Endpoint to export all matching transactions as newline-delimited JSON, streamed from a database cursor and
+    // the archive segments
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    @Operation(summary = "Export Transactions", description = "Stream matching transactions as NDJSON")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @RequestParam(required = false) String fromAddress,
+            @RequestParam(required = false) String toAddress,
+            @RequestParam(required = false) Long fromBlock,
+            @RequestParam(required = false) Long toBlock) {
+        validateAddresses(fromAddress, toAddress);
+        BlockRange blocks = BlockRange.of(fromBlock, toBlock);
+        StreamingResponseBody body =
+                out -> exportService.exportNdjson(fromAddress, toAddress, blocks.from(), blocks.to(), out);
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
+    }
+
+    // Endpoint to follow newly ingested transactions as server-sent events, one event per block
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream New Transactions",
+            description = "Push transactions as they are committed; resume with Last-Event-ID or `after`")
+    public SseEmitter streamTransactions(
+            @RequestParam(required = false) String fromAddress,
+            @RequestParam(required = false) String toAddress,
+            @RequestParam(required = false) Long after, // Last block seen; buffered blocks after it are replayed
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        validateAddresses(fromAddress, toAddress);
+        // The header is sent by reconnecting EventSource clients and is newer than the original query
+        Long afterBlock = lastEventId != null ? lastEventId : after;
+        if (afterBlock != null && afterBlock < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "after must be a block number");
+        }
+        return streamService.subscribe(fromAddress, toAddress, afterBlock);
+    }
+
+    // Endpoint to list transactions whose value lies in a wei range, sorted by value
+    @GetMapping("/value")
+    @Operation(summary = "Get Transactions By Value Range",
+            description = "Retrieve transactions with a value between min and max (in wei), sorted by value")
+    public TransactionPage getTransactionsByValue(
+            @RequestParam(required = false) String min, // Lower bound in wei, inclusive
+            @RequestParam(required = false) String max, // Upper bound in wei, inclusive
+            @RequestParam(defaultValue = "asc") String order, // Sort direction: "asc" or "desc"
+            @RequestParam(required = false) Long fromBlock,
+            @RequestParam(required = false) Long toBlock,
+            @RequestParam(required = false) String after, // Cursor of the form "<value>:<hash>"
+            @RequestParam(required = false) Integer limit) {
+        int pageSize = pageSize(limit);
+        BlockRange blocks = BlockRange.of(fromBlock, toBlock);
+        BigInteger minValue = min != null ? parseWei(min, "min") : BigInteger.ZERO;
+        BigInteger maxValue = max != null ? parseWei(max, "max") : MAX_WEI;
+        boolean descending = "desc".equalsIgnoreCase(order);
 
-        // If both fromAddress and toAddress are provided, search for transactions matching both
-        if (fromAddress != null && toAddress != null) {
-            return repository.findByFromAddressAndToAddress(fromAddress, toAddress);
+        // Without a cursor, start just outside the range in the direction of travel
+        BigInteger cursorValue = descending ? MAX_WEI.add(BigInteger.ONE) : BigInteger.ONE.negate();
+        String cursorHash = "0x";
+        if (after != null) {
+            int separator = after.indexOf(':');
+            if (separator < 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "after must have the form <value>:<hash>");
+            }
+            cursorValue = parseWei(after.substring(0, separator), "after");
+            cursorHash = after.substring(separator + 1);
+            validate(cursorHash, HASH_CURSOR, "the hash of after", CURSOR_FORMAT);
         }
-        // If only fromAddress is provided, search by sender's address
-        else if (fromAddress != null) {
-            return repository.findByFromAddress(fromAddress);
+
+        List<TransactionEntity> rows = queryService.findValuePage(minValue, maxValue, blocks.from(), blocks.to(),
+                cursorValue, cursorHash, descending, fetchSize(pageSize));
+        return toPage(rows, pageSize, entity -> entity.getValue() + ":" + entity.getTransactionHash());
+    }
+
+    // Resolve the requested page size, falling back to the default and capping at the maximum
+    private int pageSize(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
         }
-        // If only toAddress is provided, search by recipient's address
-        else if (toAddress != null) {
-            return repository.findByToAddress(toAddress);
+        return Math.max(1, Math.min(limit, maxPageSize));
+    }
+
+    // Cursors are transaction hashes; the empty hash "0x" sorts before every stored hash
+    private static String cursor(String after) {
+        if (after == null) {
+            return "0x";
         }
-        // If no parameters are provided, return all transactions
-        else {
-            return repository.findAll();
+        validate(after, HASH_CURSOR, "after", CURSOR_FORMAT);
+        return after;
+    }
+
+    // Optional address filters must be complete addresses
+    private static void validateAddresses(String fromAddress, String toAddress) {
+        if (fromAddress != null) {
+            validate(fromAddress, ADDRESS, "fromAddress", ADDRESS_FORMAT);
+        }
+        if (toAddress != null) {
+            validate(toAddress, ADDRESS, "toAddress", ADDRESS_FORMAT);
         }
     }
 
-    // Helper method to map a Web3j Transaction object to a TransactionEntity for database storage
-    private TransactionEntity mapTransaction(Transaction tx) {
-        // Create a new TransactionEntity and set its fields
-        TransactionEntity entity = new TransactionEntity();
-        entity.setTransactionHash(tx.getHash()); // Set the transaction hash
-        entity.setFromAddress(tx.getFrom()); // Set the sender's address
-        entity.setToAddress(tx.getTo()); // Set the recipient's address
-        entity.setValue(tx.getValue().toString()); // Set the transaction value as a string
-        // Additional fields like block number or timestamp could be set here if needed
-        return entity; // Return the mapped TransactionEntity
+    // Reject a malformed hash or address with 400 before it reaches the hex conversion of the storage layer
+    private static void validate(String value, Pattern pattern, String name, String format) {
+        if (!pattern.matcher(value).matches()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, name + " must be " + format);
+        }
+    }
+
+    // Fetch one row more than the page size to find out whether another page follows
+    private static int fetchSize(int pageSize) {
+        return pageSize + 1;
+    }
+
+    // Build a hash-ordered page
+    private static TransactionPage toPage(List<TransactionEntity> rows, int pageSize) {
+        return toPage(rows, pageSize, TransactionEntity::getTransactionHash);
+    }
+
+    // Build the page, trimming the extra row and deriving the cursor of the next page from the last item
+    private static TransactionPage toPage(List<TransactionEntity> rows, int pageSize,
+                                          Function<TransactionEntity, String> cursorOf) {
+        if (rows.size() <= pageSize) {
+            return new TransactionPage(rows, null);
+        }
+        List<TransactionEntity> items = rows.subList(0, pageSize);
+        return new TransactionPage(items, cursorOf.apply(items.get(pageSize - 1)));
+    }
+
+    // Parse a non-negative decimal wei amount
+    private static BigInteger parseWei(String value, String name) {
+        try {
+            BigInteger wei = new BigInteger(value);
+            if (wei.signum() < 0) {
+                throw new NumberFormatException();
+            }
+            return wei;
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, name + " must be a non-negative wei amount");
+        }
     }
 }
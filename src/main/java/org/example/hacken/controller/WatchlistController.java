@@ -0,0 +1,44 @@
+package org.example.hacken.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+import org.example.hacken.ingest.AddressWatchlist;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.UncheckedIOException;
+
+// Mark this class as a REST controller that handles requests to `/api/admin/watchlist`
+@RestController
+@RequestMapping("/api/admin/watchlist")
+@Tag(name = "Watchlist API", description = "Addresses whose transactions are persisted in watchlist mode")
+public class WatchlistController {
+
+    // Inject the watchlist filtering the ingested transactions
+    @Autowired
+    private AddressWatchlist watchlist;
+
+    // Endpoint to show whether the watchlist is active and how many addresses it holds
+    @GetMapping
+    @Operation(summary = "Watchlist Status", description = "Source, number of addresses and time of the last load")
+    public AddressWatchlist.Status getStatus() {
+        return watchlist.status();
+    }
+
+    // Endpoint to load the addresses again from the database table or file
+    @PostMapping("/reload")
+    @Operation(summary = "Reload Watchlist",
+            description = "Load the addresses again; ingestion keeps using the old list until the new one is loaded")
+    public AddressWatchlist.Status reload() {
+        try {
+            return watchlist.reload();
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        } catch (UncheckedIOException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.example.hacken.ingest;
+
+// Open-addressing hash set of 20-byte addresses. Every slot is three longs (bytes 0-7, bytes 8-15, bytes 16-19 plus
+// an occupied marker), so a few hundred thousand addresses take a few MB instead of the ~150 bytes per entry of a
+// HashSet<String>, and a lookup parses the hex string in place without allocating. Linear probing with a load
+// factor of at most one half. Not thread-safe while being filled; AddressWatchlist builds a new set on every load
+// and only publishes it once it is complete.
+final class AddressSet {
+
+    private static final int LONGS_PER_SLOT = 3;
+    private static final long OCCUPIED = 1L << 32;
+
+    private long[] slots;
+    private int mask;
+    private int size;
+
+    AddressSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        slots = new long[capacity * LONGS_PER_SLOT];
+        mask = capacity - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Add a `0x`-prefixed hex address (any case); returns false if it is not a valid address
+    boolean add(String address) {
+        long[] key = parse(address);
+        if (key == null) {
+            return false;
+        }
+        if ((size + 1) * 2 > mask + 1) {
+            resize();
+        }
+        if (insert(slots, mask, key[0], key[1], key[2])) {
+            size++;
+        }
+        return true;
+    }
+
+    boolean contains(String address) {
+        if (address == null || address.length() != 42 || address.charAt(0) != '0'
+                || (address.charAt(1) != 'x' && address.charAt(1) != 'X')) {
+            return false;
+        }
+        long k0 = parseHex(address, 2, 16);
+        long k1 = parseHex(address, 18, 16);
+        long k2 = parseHex(address, 34, 8);
+        if (k0 == -1 && invalid(address, 2, 16) || k1 == -1 && invalid(address, 18, 16) || k2 < 0) {
+            return false;
+        }
+        k2 |= OCCUPIED;
+        for (int slot = hash(k0, k1, k2) & mask; ; slot = (slot + 1) & mask) {
+            int i = slot * LONGS_PER_SLOT;
+            if (slots[i + 2] == 0) {
+                return false;
+            }
+            if (slots[i] == k0 && slots[i + 1] == k1 && slots[i + 2] == k2) {
+                return true;
+            }
+        }
+    }
+
+    private static boolean insert(long[] table, int mask, long k0, long k1, long k2) {
+        for (int slot = hash(k0, k1, k2) & mask; ; slot = (slot + 1) & mask) {
+            int i = slot * LONGS_PER_SLOT;
+            if (table[i + 2] == 0) {
+                table[i] = k0;
+                table[i + 1] = k1;
+                table[i + 2] = k2;
+                return true;
+            }
+            if (table[i] == k0 && table[i + 1] == k1 && table[i + 2] == k2) {
+                return false;
+            }
+        }
+    }
+
+    private void resize() {
+        int capacity = (mask + 1) * 2;
+        long[] table = new long[capacity * LONGS_PER_SLOT];
+        for (int i = 0; i < slots.length; i += LONGS_PER_SLOT) {
+            if (slots[i + 2] != 0) {
+                insert(table, capacity - 1, slots[i], slots[i + 1], slots[i + 2]);
+            }
+        }
+        slots = table;
+        mask = capacity - 1;
+    }
+
+    // Addresses in tests and precompiles are not uniformly distributed, so all three words are mixed
+    private static int hash(long k0, long k1, long k2) {
+        long h = k0 * 0x9E3779B97F4A7C15L ^ k1 * 0xC2B2AE3D27D4EB4FL ^ k2 * 0x165667B19E3779F9L;
+        return (int) (h ^ (h >>> 29) ^ (h >>> 47));
+    }
+
+    private static long[] parse(String address) {
+        if (address == null) {
+            return null;
+        }
+        String trimmed = address.trim();
+        if (trimmed.length() != 42 || !trimmed.regionMatches(true, 0, "0x", 0, 2)
+                || invalid(trimmed, 2, 40)) {
+            return null;
+        }
+        return new long[]{parseHex(trimmed, 2, 16), parseHex(trimmed, 18, 16), parseHex(trimmed, 34, 8) | OCCUPIED};
+    }
+
+    // Value of `digits` hex digits starting at `offset`; -1 if a character is not a hex digit (a valid 16-digit
+    // value can be -1 as well, see invalid)
+    private static long parseHex(String s, int offset, int digits) {
+        long value = 0;
+        for (int i = offset; i < offset + digits; i++) {
+            int digit = Character.digit(s.charAt(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private static boolean invalid(String s, int offset, int digits) {
+        for (int i = offset; i < offset + digits; i++) {
+            if (Character.digit(s.charAt(i), 16) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
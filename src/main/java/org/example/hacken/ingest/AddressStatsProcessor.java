@@ -0,0 +1,41 @@
+package org.example.hacken.ingest;
+
+import org.example.hacken.model.TransactionEntity;
+import org.example.hacken.persistence.AddressStatsBatch;
+import org.example.hacken.persistence.AddressStatsWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Updates the per-address statistics with the transactions a group inserted, in the same database transaction
+@Component
+@Order(1)
+public class AddressStatsProcessor implements BlockProcessor {
+
+    @Autowired
+    private AddressStatsWriter addressStatsWriter;
+
+    @Value("${stats.address.enabled:true}")
+    private boolean enabled;
+
+    @Override
+    public String name() {
+        return "address-stats";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void write(List<DecodedBlock> group, List<TransactionEntity> inserted) {
+        // Only rows that were actually inserted count, so replayed blocks do not inflate the totals
+        AddressStatsBatch addressStats = new AddressStatsBatch();
+        addressStats.add(inserted);
+        addressStatsWriter.write(addressStats);
+    }
+}
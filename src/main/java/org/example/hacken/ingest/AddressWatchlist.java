@@ -0,0 +1,155 @@
+package org.example.hacken.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.example.hacken.model.HexBytesConverter;
+import org.example.hacken.model.TransactionEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+// Optional watchlist mode: only transactions sent from or to one of the watched addresses are persisted by the
+// ingestion. The addresses come from the watched_addresses table or from a file with one address per line, and
+// can be reloaded at runtime; a reload builds a new AddressSet and swaps it in once it is complete, so lookups
+// never wait for it. Blocks are still checkpointed when none of their transactions is kept.
+@Component
+public class AddressWatchlist {
+
+    private static final Logger log = LoggerFactory.getLogger(AddressWatchlist.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Whether transactions are filtered at all
+    @Value("${watchlist.enabled:false}")
+    private boolean enabled;
+
+    // Where the addresses are loaded from: "db" (watched_addresses table) or "file"
+    @Value("${watchlist.source:db}")
+    private String source;
+
+    // Address file for source=file; blank lines and lines starting with # are ignored
+    @Value("${watchlist.file:watchlist.txt}")
+    private String file;
+
+    private volatile AddressSet addresses = new AddressSet(0);
+    private volatile Instant loadedAt;
+
+    private Counter matched;
+    private Counter skipped;
+
+    // Current state of the watchlist, as reported by the admin endpoint
+    public record Status(boolean enabled, String source, int size, Instant loadedAt) {
+    }
+
+    @PostConstruct
+    public void init() {
+        matched = Counter.builder("watchlist.transactions")
+                .description("Ingested transactions checked against the watchlist")
+                .tag("result", "matched")
+                .register(meterRegistry);
+        skipped = Counter.builder("watchlist.transactions")
+                .description("Ingested transactions checked against the watchlist")
+                .tag("result", "skipped")
+                .register(meterRegistry);
+        Gauge.builder("watchlist.addresses", this, watchlist -> watchlist.addresses.size())
+                .description("Addresses on the watchlist")
+                .register(meterRegistry);
+        // Loaded before the ingestion starts, which would otherwise drop everything until the first reload
+        if (enabled) {
+            reload();
+        }
+    }
+
+    // Load the addresses again from the configured source and return the new state
+    public synchronized Status reload() {
+        if (!enabled) {
+            throw new IllegalStateException("The watchlist is disabled (watchlist.enabled=false)");
+        }
+        long startedAt = System.nanoTime();
+        AddressSet loaded = "file".equalsIgnoreCase(source) ? loadFile(Path.of(file)) : loadTable();
+        addresses = loaded;
+        loadedAt = Instant.now();
+        log.info("Watchlist loaded: source={} addresses={} durationMs={}", source, loaded.size(),
+                (System.nanoTime() - startedAt) / 1_000_000);
+        return status();
+    }
+
+    public Status status() {
+        return new Status(enabled, source, addresses.size(), loadedAt);
+    }
+
+    // Drop the transactions of a block that involve no watched address
+    public DecodedBlock filter(DecodedBlock block) {
+        if (!enabled || block.transactions().isEmpty()) {
+            return block;
+        }
+        List<TransactionEntity> kept = new ArrayList<>();
+        for (TransactionEntity transaction : block.transactions()) {
+            if (matches(transaction)) {
+                kept.add(transaction);
+            }
+        }
+        return kept.size() == block.transactions().size() ? block
+                : new DecodedBlock(block.number(), kept, block.checkpoint());
+    }
+
+    // Whether a transaction is to be persisted; always true while the watchlist is disabled
+    public boolean matches(TransactionEntity transaction) {
+        if (!enabled) {
+            return true;
+        }
+        AddressSet current = addresses;
+        boolean match = current.contains(transaction.getFromAddress())
+                || current.contains(transaction.getToAddress());
+        (match ? matched : skipped).increment();
+        return match;
+    }
+
+    private AddressSet loadTable() {
+        Integer count = jdbcTemplate.queryForObject("SELECT count(*) FROM watched_addresses", Integer.class);
+        AddressSet loaded = new AddressSet(count == null ? 0 : count);
+        jdbcTemplate.query("SELECT address FROM watched_addresses", row -> {
+            loaded.add(HexBytesConverter.toHex(row.getBytes(1)));
+        });
+        return loaded;
+    }
+
+    private static AddressSet loadFile(Path path) {
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            AddressSet loaded = new AddressSet(1024);
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String address = line.trim();
+                if (address.isEmpty() || address.startsWith("#")) {
+                    continue;
+                }
+                if (!loaded.add(address)) {
+                    log.warn("Ignoring invalid watchlist address: file={} line={} value={}", path, lineNumber, address);
+                }
+            }
+            return loaded;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading watchlist file " + path, e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.example.hacken.ingest;
+
+import org.example.hacken.model.TransactionEntity;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.Transaction;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Maps blocks fetched with full transaction objects to transaction entities
+public final class BlockDecoder {
+
+    private BlockDecoder() {
+    }
+
+    // Convert the block's transactions into TransactionEntity objects for database storage
+    public static DecodedBlock decode(EthBlock block) {
+        BigInteger number = block.getBlock().getNumber();
+        Instant timestamp = timestamp(block.getBlock());
+        List<TransactionEntity> entities = block.getBlock().getTransactions().stream()
+                .map(txResult -> {
+                    TransactionEntity entity = mapTransaction((Transaction) txResult.get());
+                    entity.setBlockNumber(number.longValueExact());
+                    entity.setBlockTimestamp(timestamp);
+                    return entity;
+                })
+                .collect(Collectors.toList());
+        return new DecodedBlock(number, entities);
+    }
+
+    // Convert a Transaction object to a TransactionEntity for database storage
+    public static TransactionEntity mapTransaction(Transaction tx) {
+        TransactionEntity entity = new TransactionEntity();
+        entity.setTransactionHash(tx.getHash()); // Set the transaction hash
+        entity.setFromAddress(tx.getFrom()); // Set the sender's address
+        entity.setToAddress(tx.getTo()); // Set the recipient's address
+        entity.setValue(tx.getValue() != null ? tx.getValue().toString() : "0"); // Set the transaction value (or 0 if null)
+        // Pending transactions have no block yet
+        entity.setBlockNumber(tx.getBlockNumberRaw() != null ? tx.getBlockNumber().longValueExact() : null);
+        return entity; // Return the populated TransactionEntity
+    }
+
+    // Block timestamp, or null if the block was stored without one (e.g. a trimmed dump)
+    public static Instant timestamp(EthBlock.Block block) {
+        return block.getTimestampRaw() != null ? Instant.ofEpochSecond(block.getTimestamp().longValueExact()) : null;
+    }
+}
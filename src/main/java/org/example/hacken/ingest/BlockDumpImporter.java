@@ -0,0 +1,169 @@
+package org.example.hacken.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.hacken.model.ProcessedBlock;
+import org.example.hacken.repository.ProcessedBlockRepository;
+import org.example.hacken.service.TransactionSyncService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Loads blocks from JSON-RPC block dumps instead of the node, e.g. for the initial load or after losing the
+// database. Start the application with import.dump.enabled=true and import.dump.path pointing at a dump file or a
+// directory of them (see BlockDumpReader for the format). The blocks go through the same persist stage as synced
+// blocks; the checkpoint is only moved once the whole dump is written, never backwards and never over a gap: it
+// moves to the end of the run of imported blocks that continues the stored checkpoint (or of the first run if there
+// is none). The sync is started after the import, so it resumes behind that run and fetches any gap from the node.
+@Component
+public class BlockDumpImporter implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(BlockDumpImporter.class);
+
+    @Autowired
+    private IngestionPipeline ingestionPipeline;
+
+    @Autowired
+    private ProcessedBlockRepository processedBlockRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Started once the dump is written (see TransactionSyncService.init)
+    @Autowired
+    private TransactionSyncService transactionSyncService;
+
+    // Whether the dump at import.dump.path is imported on startup
+    @Value("${import.dump.enabled:false}")
+    private boolean enabled;
+
+    // Dump file or directory of dump files
+    @Value("${import.dump.path:dumps}")
+    private String path;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (enabled) {
+            importDump(Path.of(path));
+            transactionSyncService.start();
+        }
+    }
+
+    // Import every block found at `dumpPath` and return the number of blocks read
+    public long importDump(Path dumpPath) throws IOException, InterruptedException {
+        List<Path> files = BlockDumpReader.dumpFiles(dumpPath);
+        Counter importedBlocks = Counter.builder("ingest.import.blocks")
+                .description("Blocks read from dump files")
+                .register(meterRegistry);
+
+        long startedAt = System.nanoTime();
+        long blocks = 0;
+        BigInteger[] highestBlock = new BigInteger[1];
+        ImportedRuns runs = new ImportedRuns();
+        for (Path file : files) {
+            long fileBlocks = BlockDumpReader.read(file, block -> {
+                DecodedBlock decoded = BlockDecoder.decode(block);
+                // Blocks in a dump may come in any order, so none of them moves the checkpoint on its own
+                ingestionPipeline.submitImported(decoded.withoutCheckpoint());
+                importedBlocks.increment();
+                runs.add(decoded.number().longValueExact());
+                if (highestBlock[0] == null || decoded.number().compareTo(highestBlock[0]) > 0) {
+                    highestBlock[0] = decoded.number();
+                }
+            });
+            blocks += fileBlocks;
+            log.info("Dump file imported: file={} blocks={}", file, fileBlocks);
+        }
+
+        if (highestBlock[0] != null) {
+            advanceCheckpoint(runs);
+        }
+        double seconds = Math.max((System.nanoTime() - startedAt) / 1e9, 1e-3);
+        log.info("Dump import finished: path={} files={} blocks={} highestBlock={} blocksPerSecond={}", dumpPath,
+                files.size(), blocks, highestBlock[0], String.format("%.1f", blocks / seconds));
+        return blocks;
+    }
+
+    // Queue an empty block that moves the checkpoint to the end of the imported run continuing it, then wait for all
+    // blocks to be written. The checkpoint is left alone if the sync is already past that run or if the dump does
+    // not connect to it, since the blocks in between would never be fetched.
+    private void advanceCheckpoint(ImportedRuns runs) throws InterruptedException {
+        BigInteger stored = processedBlockRepository.findById(1).map(ProcessedBlock::getBlockNumber).orElse(null);
+        if (runs.count() > 1) {
+            log.warn("Dump has gaps: runs={}", runs);
+        }
+        Long target = stored == null ? runs.firstEnd() : runs.endOfRunCovering(stored.longValueExact() + 1);
+        if (target != null) {
+            if (stored == null || stored.compareTo(BigInteger.valueOf(target)) < 0) {
+                ingestionPipeline.submitDecoded(new DecodedBlock(BigInteger.valueOf(target), List.of()));
+            }
+        } else if (stored.longValueExact() < runs.lastEnd()) {
+            log.warn("Dump does not continue the checkpoint, leaving it unchanged: checkpoint={} firstBlock={}",
+                    stored, runs.firstStart());
+        }
+        ingestionPipeline.awaitPersisted();
+    }
+
+    // Contiguous runs of imported block numbers, start -> end (inclusive); dumps are usually sequential, so there
+    // are only a few runs however many blocks were imported
+    static final class ImportedRuns {
+        private final TreeMap<Long, Long> runs = new TreeMap<>();
+
+        void add(long block) {
+            Map.Entry<Long, Long> before = runs.floorEntry(block);
+            if (before != null && before.getValue() >= block) {
+                return;
+            }
+            long start = block;
+            long end = block;
+            if (before != null && before.getValue() == block - 1) {
+                start = before.getKey();
+            }
+            Long after = runs.remove(block + 1);
+            if (after != null) {
+                end = after;
+            }
+            runs.put(start, end);
+        }
+
+        int count() {
+            return runs.size();
+        }
+
+        Long firstStart() {
+            return runs.isEmpty() ? null : runs.firstKey();
+        }
+
+        Long firstEnd() {
+            return runs.isEmpty() ? null : runs.firstEntry().getValue();
+        }
+
+        Long lastEnd() {
+            return runs.isEmpty() ? null : runs.lastEntry().getValue();
+        }
+
+        // End of the run containing `block`, or null if the block was not imported
+        Long endOfRunCovering(long block) {
+            Map.Entry<Long, Long> run = runs.floorEntry(block);
+            return run != null && run.getValue() >= block ? run.getValue() : null;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            runs.forEach((start, end) -> text.append(text.isEmpty() ? "" : ",").append(start).append('-').append(end));
+            return text.toString();
+        }
+    }
+}
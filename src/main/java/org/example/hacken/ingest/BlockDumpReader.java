@@ -0,0 +1,89 @@
+package org.example.hacken.ingest;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.web3j.protocol.ObjectMapperFactory;
+import org.web3j.protocol.core.methods.response.EthBlock;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+// Streams blocks out of JSON-RPC block dumps: files with one eth_getBlockByNumber response (or bare block object)
+// per line, optionally gzip-compressed. Blocks are decoded one at a time, so memory use does not depend on the
+// size of the file.
+public final class BlockDumpReader {
+
+    private static final ObjectMapper OBJECT_MAPPER = ObjectMapperFactory.getObjectMapper();
+
+    private BlockDumpReader() {
+    }
+
+    @FunctionalInterface
+    public interface BlockHandler {
+        void accept(EthBlock block) throws InterruptedException;
+    }
+
+    // The dump files at `path`: the file itself, or the .ndjson/.jsonl/.json(.gz) files of a directory in name order
+    public static List<Path> dumpFiles(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return List.of(path);
+        }
+        try (Stream<Path> files = Files.list(path)) {
+            return files.filter(file -> file.getFileName().toString().matches(".*\\.(ndjson|jsonl|json)(\\.gz)?"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    // Decode the blocks of one dump file in file order and hand each to `handler`; returns the number of blocks
+    public static long read(Path file, BlockHandler handler) throws IOException, InterruptedException {
+        long blocks = 0;
+        try (InputStream in = open(file); JsonParser parser = OBJECT_MAPPER.getFactory().createParser(in)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IOException(file + ": expected a JSON object per block, found " + token);
+                }
+                handler.accept(toBlock(file, OBJECT_MAPPER.readTree(parser)));
+                blocks++;
+            }
+        }
+        return blocks;
+    }
+
+    private static InputStream open(Path file) throws IOException {
+        InputStream in = new MappedFileInputStream(file);
+        if (file.getFileName().toString().endsWith(".gz")) {
+            return new GZIPInputStream(in, 1 << 16);
+        }
+        return in;
+    }
+
+    // Accept both a full JSON-RPC response and the bare block object
+    private static EthBlock toBlock(Path file, JsonNode node) throws IOException {
+        EthBlock block;
+        if (node.has("result") || node.has("error")) {
+            block = OBJECT_MAPPER.treeToValue(node, EthBlock.class);
+        } else {
+            block = new EthBlock();
+            block.setResult(OBJECT_MAPPER.treeToValue(node, EthBlock.Block.class));
+        }
+
+        if (block.getBlock() == null) {
+            throw new IOException(file + ": entry without a block");
+        }
+        List<EthBlock.TransactionResult> transactions = block.getBlock().getTransactions();
+        if (!transactions.isEmpty() && !(transactions.get(0) instanceof EthBlock.TransactionObject)) {
+            throw new IOException(file + ": block " + block.getBlock().getNumber()
+                    + " has transaction hashes only; dumps must contain full transaction objects");
+        }
+        return block;
+    }
+}
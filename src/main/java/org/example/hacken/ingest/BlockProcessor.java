@@ -0,0 +1,26 @@
+package org.example.hacken.ingest;
+
+import org.example.hacken.model.TransactionEntity;
+
+import java.util.List;
+
+// A step run by the persist stage for every block group, after the group's transactions have been written by the
+// transaction sink. Processors are Spring beans picked up by IngestionPipeline in @Order order; each one has its own
+// switch, and disabled processors are left out of the chain at startup. Both methods are called from the persist
+// stage thread only.
+public interface BlockProcessor {
+
+    // Name shown in the startup log
+    String name();
+
+    boolean isEnabled();
+
+    // Runs in the database transaction that writes the group; an exception rolls the whole group back. `inserted` are
+    // the transactions of the group that were not stored yet.
+    default void write(List<DecodedBlock> group, List<TransactionEntity> inserted) {
+    }
+
+    // Runs once the group has been committed; exceptions are logged and do not hold back the ingestion
+    default void committed(List<DecodedBlock> group, List<TransactionEntity> inserted) {
+    }
+}
@@ -0,0 +1,30 @@
+package org.example.hacken.ingest;
+
+import org.example.hacken.model.EventLog;
+import org.example.hacken.model.TransactionEntity;
+
+import java.math.BigInteger;
+import java.util.List;
+
+// A block whose transactions have been mapped to entities and are ready to be persisted, together with the event
+// logs of those transactions once their receipts have been fetched (see ReceiptFetcher). Blocks that are not part
+// of the sequential sync (e.g. imported from a dump) are written without advancing the checkpoint.
+public record DecodedBlock(BigInteger number, List<TransactionEntity> transactions, List<EventLog> logs,
+                           boolean checkpoint) {
+
+    public DecodedBlock(BigInteger number, List<TransactionEntity> transactions) {
+        this(number, transactions, true);
+    }
+
+    public DecodedBlock(BigInteger number, List<TransactionEntity> transactions, boolean checkpoint) {
+        this(number, transactions, List.of(), checkpoint);
+    }
+
+    public DecodedBlock withoutCheckpoint() {
+        return new DecodedBlock(number, transactions, logs, false);
+    }
+
+    public DecodedBlock withLogs(List<EventLog> logs) {
+        return new DecodedBlock(number, transactions, logs, checkpoint);
+    }
+}
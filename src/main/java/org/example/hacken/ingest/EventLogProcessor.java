@@ -0,0 +1,67 @@
+package org.example.hacken.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.example.hacken.model.EventLog;
+import org.example.hacken.model.TransactionEntity;
+import org.example.hacken.persistence.EventLogWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Stores the event logs attached by ReceiptFetcher, in the transaction that writes their transactions
+@Component
+@Order(2)
+public class EventLogProcessor implements BlockProcessor {
+
+    @Autowired
+    private EventLogWriter eventLogWriter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${sync.receipts.enabled:false}")
+    private boolean enabled;
+
+    private Counter insertedLogs;
+
+    // Logs inserted by the group being written, counted once it is committed so that retried groups count once
+    private int pendingInserted;
+
+    @PostConstruct
+    public void init() {
+        insertedLogs = Counter.builder("ingest.logs")
+                .description("Event logs inserted by the ingestion pipeline")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String name() {
+        return "event-logs";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void write(List<DecodedBlock> group, List<TransactionEntity> inserted) {
+        // The logs of the whole group go out in one bulk insert
+        List<EventLog> logs = new ArrayList<>();
+        for (DecodedBlock block : group) {
+            logs.addAll(block.logs());
+        }
+        pendingInserted = eventLogWriter.write(logs);
+    }
+
+    @Override
+    public void committed(List<DecodedBlock> group, List<TransactionEntity> inserted) {
+        insertedLogs.increment(pendingInserted);
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.hacken.ingest;
+
+import org.example.hacken.repository.FailedBlockRepository;
+import org.example.hacken.rpc.JsonRpcBatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.core.methods.response.EthBlock;
+
+import java.math.BigInteger;
+import java.util.List;
+
+// Gives the blocks in failed_blocks another chance: each is fetched again and handed to the pipeline, which writes
+// it like any other block without moving the checkpoint; the entry is deleted in the same transaction. A block that
+// fails again stays recorded for the next round.
+@Component
+public class FailedBlocksRetrier {
+
+    private static final Logger log = LoggerFactory.getLogger(FailedBlocksRetrier.class);
+
+    @Autowired
+    private IngestionPipeline ingestionPipeline;
+
+    @Autowired
+    private JsonRpcBatcher rpcBatcher;
+
+    @Autowired
+    private FailedBlockRepository failedBlockRepository;
+
+    // Blocks handed back per round, oldest first
+    @Value("${ingest.failed-blocks.retry-batch-blocks:100}")
+    private int batchBlocks;
+
+    @Scheduled(fixedDelayString = "${ingest.failed-blocks.retry-interval-ms:60000}",
+            initialDelayString = "${ingest.failed-blocks.retry-interval-ms:60000}")
+    public void retryFailed() {
+        List<Long> blockNumbers = failedBlockRepository.findBlockNumbers(PageRequest.of(0, batchBlocks));
+        int retried = 0;
+        for (long blockNumber : blockNumbers) {
+            try {
+                EthBlock block = JsonRpcBatcher.await(rpcBatcher.getBlockByNumber(BigInteger.valueOf(blockNumber),
+                        true));
+                if (block.getBlock() == null) {
+                    log.warn("Failed block is not available from the node: block={}", blockNumber);
+                    continue;
+                }
+                if (ingestionPipeline.retryFailed(BlockDecoder.decode(block))) {
+                    retried++;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("Error fetching failed block: block={} error={}", blockNumber, e.getMessage());
+            }
+        }
+        if (retried > 0) {
+            log.info("Failed blocks handed back to the pipeline: blocks={}", retried);
+        }
+    }
+}
@@ -0,0 +1,479 @@
+package org.example.hacken.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.hacken.model.TransactionEntity;
+import org.example.hacken.persistence.TransactionArchive;
+import org.example.hacken.persistence.TransactionPartitionManager;
+import org.example.hacken.persistence.TransactionSink;
+import org.example.hacken.repository.FailedBlockRepository;
+import org.example.hacken.repository.MissingReceiptBlockRepository;
+import org.example.hacken.repository.ProcessedBlockRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.web3j.protocol.core.methods.response.EthBlock;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+// Block ingestion split into stages connected by bounded queues:
+//   fetch (live subscription / backfill workers) -> decode -> persist
+// Producers block when a queue is full, which pushes back on the block source. The persist stage writes all blocks
+// that are waiting (up to the group size) in one database transaction and advances the checkpoint once per group.
+// Everything besides the transactions themselves (address statistics, event logs, the change feed) is done by the
+// enabled BlockProcessors, so every block is fetched and decoded once whatever is derived from it.
+// With receipt ingestion enabled, the receipts of a block are requested as it enters the persist queue, so that they
+// are fetched while the blocks in front of it are written; the persist stage waits for them before the commit. A
+// block whose receipts cannot be fetched is written without them and recorded in missing_receipt_blocks in the same
+// transaction, so the checkpoint can move on; MissingReceiptsRetrier hands it back once the node can serve them.
+// A block that cannot be committed even on its own is recorded in failed_blocks by the next commit, in the same
+// transaction that moves the checkpoint past it, and FailedBlocksRetrier hands it back until it is written.
+@Component
+public class IngestionPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionPipeline.class);
+
+    @Autowired
+    private TransactionSink transactionSink;
+
+    @Autowired
+    private TransactionPartitionManager partitionManager;
+
+    @Autowired
+    private ProcessedBlockRepository processedBlockRepository;
+
+    @Autowired
+    private MissingReceiptBlockRepository missingReceiptBlockRepository;
+
+    @Autowired
+    private FailedBlockRepository failedBlockRepository;
+
+    @Autowired
+    private AddressWatchlist watchlist;
+
+    @Autowired
+    private TransactionArchive archive;
+
+    @Autowired
+    private ReceiptFetcher receiptFetcher;
+
+    @Autowired
+    private List<BlockProcessor> processors;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Capacity of the queue between the fetch and decode stages
+    @Value("${ingest.queue.decode-capacity:64}")
+    private int decodeCapacity;
+
+    // Capacity of the queue between the decode and persist stages
+    @Value("${ingest.queue.persist-capacity:256}")
+    private int persistCapacity;
+
+    // Maximum number of blocks committed in one database transaction
+    @Value("${ingest.persist.group-size:50}")
+    private int groupSize;
+
+    // Fraction of inserted transactions that are logged individually
+    @Value("${ingest.log.sample-rate:0.001}")
+    private double logSampleRate;
+
+    // The enabled processors, in order
+    private List<BlockProcessor> activeProcessors;
+
+    private BlockingQueue<EthBlock> decodeQueue;
+    private BlockingQueue<PendingBlock> persistQueue;
+    private Thread decodeThread;
+    private Thread persistThread;
+    private volatile boolean running = true;
+
+    private Timer decodeTimer;
+    private Timer commitTimer;
+    private Timer sinkWriteTimer;
+    private DistributionSummary groupSizeSummary;
+    private DistributionSummary sinkBatchSize;
+    private Counter insertedTransactions;
+    private Counter skippedTransactions;
+    private Counter failedReceipts;
+    private Counter failedCommits;
+
+    // Highest block whose transactions and checkpoint have been committed
+    private volatile BigInteger lastCommittedBlock;
+
+    // Blocks handed to the persist stage, blocks it has written and blocks it could not write
+    private final AtomicLong queuedForPersist = new AtomicLong();
+    private final AtomicLong persisted = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    // Blocks handed back by MissingReceiptsRetrier that are queued or being written
+    private final Set<BigInteger> receiptRetries = ConcurrentHashMap.newKeySet();
+
+    // Blocks handed back by FailedBlocksRetrier that are queued or being written
+    private final Set<BigInteger> failedRetries = ConcurrentHashMap.newKeySet();
+
+    // Blocks that could not be committed and have not been written since
+    private final Set<BigInteger> failedBlocks = ConcurrentHashMap.newKeySet();
+
+    // Failed blocks not yet recorded in failed_blocks; written by the next commit (persist thread only)
+    private final Set<BigInteger> unrecordedFailures = new HashSet<>();
+
+    @PostConstruct
+    public void start() {
+        activeProcessors = processors.stream().filter(BlockProcessor::isEnabled).toList();
+        log.info("Ingestion processors: {}",
+                activeProcessors.stream().map(BlockProcessor::name).collect(Collectors.joining(", ")));
+        decodeQueue = new ArrayBlockingQueue<>(decodeCapacity);
+        persistQueue = new ArrayBlockingQueue<>(persistCapacity);
+        registerQueueGauge("decode", decodeQueue);
+        registerQueueGauge("persist", persistQueue);
+        registerMetrics();
+
+        decodeThread = startStage("ingest-decode", this::decodeLoop);
+        persistThread = startStage("ingest-persist", this::persistLoop);
+    }
+
+    // Hand a fetched block to the decode stage; blocks while the stage is saturated
+    public void submit(EthBlock block) throws InterruptedException {
+        decodeQueue.put(block);
+    }
+
+    // Hand an already decoded block (e.g. from the backfill workers) to the persist stage
+    public void submitDecoded(DecodedBlock block) throws InterruptedException {
+        enqueuePersist(block);
+    }
+
+    // Hand a block read from a dump to the persist stage. Dumps carry no receipts and the import does not use the
+    // node, so imported blocks are written without receipt data even with receipt ingestion enabled.
+    public void submitImported(DecodedBlock block) throws InterruptedException {
+        enqueuePersist(block, false);
+    }
+
+    // Write a block recorded in missing_receipt_blocks again, now with its receipts, without moving the checkpoint.
+    // Returns false if the block is still queued from an earlier retry.
+    public boolean retryReceipts(DecodedBlock block) throws InterruptedException {
+        if (!receiptRetries.add(block.number())) {
+            return false;
+        }
+        try {
+            enqueuePersist(block.withoutCheckpoint());
+        } catch (InterruptedException e) {
+            receiptRetries.remove(block.number());
+            throw e;
+        }
+        return true;
+    }
+
+    // Write a block recorded in failed_blocks again, without moving the checkpoint. Returns false if the block is
+    // still queued from an earlier retry.
+    public boolean retryFailed(DecodedBlock block) throws InterruptedException {
+        if (!failedRetries.add(block.number())) {
+            return false;
+        }
+        try {
+            enqueuePersist(block.withoutCheckpoint());
+        } catch (InterruptedException e) {
+            failedRetries.remove(block.number());
+            throw e;
+        }
+        return true;
+    }
+
+    // Wait until every block handed to the persist stage before this call has been written or has failed
+    public void awaitPersisted() throws InterruptedException {
+        long target = queuedForPersist.get();
+        while (persisted.get() + failed.get() < target) {
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+    }
+
+    // Blocks of [fromBlock, toBlock] that could not be committed and have not been written since, in block order
+    public List<BigInteger> failedBlocks(BigInteger fromBlock, BigInteger toBlock) {
+        return failedBlocks.stream()
+                .filter(number -> number.compareTo(fromBlock) >= 0 && number.compareTo(toBlock) <= 0)
+                .sorted()
+                .toList();
+    }
+
+    public BigInteger getLastCommittedBlock() {
+        return lastCommittedBlock;
+    }
+
+    private void decodeLoop() {
+        while (running || !decodeQueue.isEmpty()) {
+            try {
+                EthBlock block = decodeQueue.poll(1, TimeUnit.SECONDS);
+                if (block != null) {
+                    enqueuePersist(decodeTimer.record(() -> BlockDecoder.decode(block)));
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                log.error("Error decoding block", e);
+            }
+        }
+    }
+
+    private void persistLoop() {
+        // Keep going until the decode stage has stopped and everything it produced is written
+        while (running || decodeThread.isAlive() || !persistQueue.isEmpty()) {
+            try {
+                PendingBlock first = persistQueue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                // Group-commit whatever else is already waiting
+                List<PendingBlock> pending = new ArrayList<>(groupSize);
+                pending.add(first);
+                persistQueue.drainTo(pending, groupSize - 1);
+                List<DecodedBlock> group = new ArrayList<>(pending.size());
+                Set<BigInteger> missingReceipts = new HashSet<>();
+                for (PendingBlock block : pending) {
+                    group.add(awaitReceipts(block, missingReceipts));
+                }
+                int written = persistGroup(group, missingReceipts);
+                group.forEach(block -> {
+                    receiptRetries.remove(block.number());
+                    failedRetries.remove(block.number());
+                });
+                persisted.addAndGet(written);
+                failed.addAndGet(group.size() - written);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // The block with its receipt data, or without it if the receipts could not be fetched; the transactions are
+    // still written then, so that a node that lost a receipt does not stop the ingestion, and the block is added to
+    // missingReceipts to be retried later
+    private DecodedBlock awaitReceipts(PendingBlock block, Set<BigInteger> missingReceipts)
+            throws InterruptedException {
+        try {
+            return block.withReceipts().get();
+        } catch (ExecutionException e) {
+            failedReceipts.increment();
+            log.error("Error fetching receipts, writing block without receipts for a later retry: block={}",
+                    block.block().number(), e.getCause());
+            missingReceipts.add(block.block().number());
+            return block.block();
+        }
+    }
+
+    // Write a group of consecutive blocks and the checkpoint in one transaction. If the group fails, retry the
+    // blocks one by one so that a single bad block does not hold back the others; a block that fails on its own is
+    // kept for failed_blocks. Returns the number of blocks written.
+    private int persistGroup(List<DecodedBlock> group, Set<BigInteger> missingReceipts) {
+        try {
+            commit(group, missingReceipts);
+            return group.size();
+        } catch (Exception e) {
+            if (group.size() == 1) {
+                BigInteger number = group.get(0).number();
+                log.error("Error processing transactions, recording block for a later retry: block={}", number, e);
+                failedCommits.increment();
+                failedBlocks.add(number);
+                unrecordedFailures.add(number);
+                return 0;
+            }
+            log.warn("Error committing block group, retrying individually: firstBlock={} lastBlock={} error={}",
+                    group.get(0).number(), group.get(group.size() - 1).number(), e.getMessage());
+            int written = 0;
+            for (DecodedBlock block : group) {
+                written += persistGroup(List.of(block), missingReceipts);
+            }
+            return written;
+        }
+    }
+
+    private void commit(List<DecodedBlock> group, Set<BigInteger> missingReceipts) {
+        BigInteger lastBlock = lastCheckpointedBlock(group);
+        Set<BigInteger> numbers = group.stream().map(DecodedBlock::number).collect(Collectors.toSet());
+        // Earlier failures are recorded with this commit, so the checkpoint never moves past an unrecorded one
+        List<BigInteger> recording = unrecordedFailures.stream().filter(number -> !numbers.contains(number)).toList();
+        List<TransactionEntity> inserted = new ArrayList<>();
+        long[] written = new long[1];
+        // Imported dumps are not necessarily in block order
+        partitionManager.ensureCovered(
+                group.stream().mapToLong(block -> block.number().longValueExact()).min().getAsLong(),
+                group.stream().mapToLong(block -> block.number().longValueExact()).max().getAsLong());
+        commitTimer.record(() -> transactionTemplate.executeWithoutResult(status -> {
+            for (DecodedBlock block : group) {
+                if (!block.transactions().isEmpty()) {
+                    sinkBatchSize.record(block.transactions().size());
+                    written[0] += block.transactions().size();
+                    List<TransactionEntity> blockInserted =
+                            sinkWriteTimer.record(() -> transactionSink.write(block.transactions()));
+                    inserted.addAll(blockInserted);
+                }
+            }
+            for (BlockProcessor processor : activeProcessors) {
+                processor.write(group, inserted);
+            }
+            for (DecodedBlock block : group) {
+                if (missingReceipts.contains(block.number())) {
+                    missingReceiptBlockRepository.record(block.number().longValueExact());
+                } else if (receiptRetries.contains(block.number())) {
+                    missingReceiptBlockRepository.deleteById(block.number().longValueExact());
+                }
+                if (failedRetries.contains(block.number()) || failedBlocks.contains(block.number())) {
+                    failedBlockRepository.deleteById(block.number().longValueExact());
+                }
+            }
+            for (BigInteger number : recording) {
+                failedBlockRepository.record(number.longValueExact());
+            }
+            if (lastBlock != null) {
+                processedBlockRepository.advance(lastBlock);
+            }
+        }));
+        unrecordedFailures.removeAll(recording);
+        unrecordedFailures.removeAll(numbers);
+        failedBlocks.removeAll(numbers);
+        if (lastBlock != null && (lastCommittedBlock == null || lastBlock.compareTo(lastCommittedBlock) > 0)) {
+            lastCommittedBlock = lastBlock;
+        }
+        for (BlockProcessor processor : activeProcessors) {
+            try {
+                processor.committed(group, inserted);
+            } catch (RuntimeException e) {
+                log.error("Error in ingestion processor {}: firstBlock={} lastBlock={}", processor.name(),
+                        group.get(0).number(), group.get(group.size() - 1).number(), e);
+            }
+        }
+
+        // Counted only once the group is committed, so that retried groups are not counted twice
+        groupSizeSummary.record(group.size());
+        insertedTransactions.increment(inserted.size());
+        skippedTransactions.increment(written[0] - inserted.size());
+        logSample(inserted);
+    }
+
+    // The highest block of the group that advances the checkpoint, or null if none does
+    private static BigInteger lastCheckpointedBlock(List<DecodedBlock> group) {
+        for (int i = group.size() - 1; i >= 0; i--) {
+            if (group.get(i).checkpoint()) {
+                return group.get(i).number();
+            }
+        }
+        return null;
+    }
+
+    // Log a random sample of the inserted transactions instead of every single one
+    private void logSample(List<TransactionEntity> inserted) {
+        if (logSampleRate <= 0 || !log.isInfoEnabled()) {
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (TransactionEntity entity : inserted) {
+            if (random.nextDouble() < logSampleRate) {
+                log.info("Transaction saved: hash={} from={} to={} value={}", entity.getTransactionHash(),
+                        entity.getFromAddress(), entity.getToAddress(), entity.getValue());
+            }
+        }
+    }
+
+    private void enqueuePersist(DecodedBlock block) throws InterruptedException {
+        enqueuePersist(block, true);
+    }
+
+    private void enqueuePersist(DecodedBlock block, boolean fetchReceipts) throws InterruptedException {
+        // Unwatched transactions are dropped before they take up queue space, and their receipts are never fetched
+        DecodedBlock filtered = watchlist.filter(block);
+        if (block.number().longValueExact() < archive.archivedBelow() && !filtered.transactions().isEmpty()) {
+            // Blocks below the archive boundary are served from the immutable segments and not written again
+            filtered = new DecodedBlock(block.number(), List.of(), block.checkpoint());
+        }
+        CompletableFuture<DecodedBlock> withReceipts = fetchReceipts
+                ? receiptFetcher.attach(filtered)
+                : CompletableFuture.completedFuture(filtered);
+        queuedForPersist.incrementAndGet();
+        persistQueue.put(new PendingBlock(filtered, withReceipts));
+    }
+
+    private Thread startStage(String name, Runnable loop) {
+        Thread thread = new Thread(loop, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private void registerMetrics() {
+        decodeTimer = Timer.builder("ingest.block.decode")
+                .description("Time to decode a fetched block into transaction entities")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        commitTimer = Timer.builder("ingest.persist.commit")
+                .description("Time to write a group of blocks and the checkpoint in one transaction")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        sinkWriteTimer = Timer.builder("ingest.sink.write")
+                .description("Database time spent writing the transactions of one block")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        groupSizeSummary = DistributionSummary.builder("ingest.persist.group.size")
+                .description("Blocks committed per database transaction")
+                .baseUnit("blocks")
+                .register(meterRegistry);
+        sinkBatchSize = DistributionSummary.builder("ingest.sink.batch.size")
+                .description("Transactions handed to the sink per block")
+                .baseUnit("transactions")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        insertedTransactions = Counter.builder("ingest.transactions")
+                .description("Transactions inserted by the ingestion pipeline")
+                .register(meterRegistry);
+        skippedTransactions = Counter.builder("ingest.transactions.skipped")
+                .description("Transactions skipped because they were already stored")
+                .register(meterRegistry);
+        failedReceipts = Counter.builder("ingest.receipts.failed")
+                .description("Blocks written without receipts because fetching them failed")
+                .register(meterRegistry);
+        failedCommits = Counter.builder("ingest.blocks.failed")
+                .description("Blocks that could not be committed and were recorded in failed_blocks for a retry")
+                .register(meterRegistry);
+    }
+
+    private void registerQueueGauge(String stage, BlockingQueue<?> queue) {
+        Gauge.builder("ingest.queue.depth", queue, BlockingQueue::size)
+                .tag("stage", stage)
+                .description("Blocks waiting in front of an ingestion stage")
+                .register(meterRegistry);
+    }
+
+    // A block waiting to be persisted and the fetch of its receipts (already complete when receipts are disabled)
+    private record PendingBlock(DecodedBlock block, CompletableFuture<DecodedBlock> withReceipts) {
+    }
+
+    // Let both stages drain their queues before shutting down
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        decodeThread.join(TimeUnit.SECONDS.toMillis(10));
+        persistThread.join(TimeUnit.SECONDS.toMillis(20));
+    }
+}
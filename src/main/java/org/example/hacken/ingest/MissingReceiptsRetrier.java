@@ -0,0 +1,72 @@
+package org.example.hacken.ingest;
+
+import org.example.hacken.repository.MissingReceiptBlockRepository;
+import org.example.hacken.rpc.JsonRpcBatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.core.methods.response.EthBlock;
+
+import java.math.BigInteger;
+import java.util.List;
+
+// Gives the blocks in missing_receipt_blocks another chance: each is fetched again and handed to the pipeline,
+// which requests its receipts like for any other block. Its transactions are already stored, so only the receipt
+// data (gas used, status) is filled in and its event logs are added; the entry is deleted in the same transaction.
+// A block that fails again stays recorded for the next round.
+@Component
+public class MissingReceiptsRetrier {
+
+    private static final Logger log = LoggerFactory.getLogger(MissingReceiptsRetrier.class);
+
+    @Autowired
+    private ReceiptFetcher receiptFetcher;
+
+    @Autowired
+    private IngestionPipeline ingestionPipeline;
+
+    @Autowired
+    private JsonRpcBatcher rpcBatcher;
+
+    @Autowired
+    private MissingReceiptBlockRepository missingReceiptBlockRepository;
+
+    // Blocks handed back per round, oldest first
+    @Value("${sync.receipts.retry-batch-blocks:100}")
+    private int batchBlocks;
+
+    @Scheduled(fixedDelayString = "${sync.receipts.retry-interval-ms:60000}",
+            initialDelayString = "${sync.receipts.retry-interval-ms:60000}")
+    public void retryMissing() {
+        if (!receiptFetcher.isEnabled()) {
+            return;
+        }
+        List<Long> blockNumbers = missingReceiptBlockRepository.findBlockNumbers(PageRequest.of(0, batchBlocks));
+        int retried = 0;
+        for (long blockNumber : blockNumbers) {
+            try {
+                EthBlock block = JsonRpcBatcher.await(rpcBatcher.getBlockByNumber(BigInteger.valueOf(blockNumber),
+                        true));
+                if (block.getBlock() == null) {
+                    log.warn("Block missing receipts is not available from the node: block={}", blockNumber);
+                    continue;
+                }
+                if (ingestionPipeline.retryReceipts(BlockDecoder.decode(block))) {
+                    retried++;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("Error fetching block missing receipts: block={} error={}", blockNumber, e.getMessage());
+            }
+        }
+        if (retried > 0) {
+            log.info("Blocks missing receipts handed back to the pipeline: blocks={}", retried);
+        }
+    }
+}
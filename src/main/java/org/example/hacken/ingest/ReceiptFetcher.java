@@ -0,0 +1,220 @@
+package org.example.hacken.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.example.hacken.model.EventLog;
+import org.example.hacken.model.TransactionEntity;
+import org.example.hacken.rpc.EthBlockReceipts;
+import org.example.hacken.rpc.JsonRpcBatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthGetTransactionReceipt;
+import org.web3j.protocol.core.methods.response.Log;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Optional receipt ingestion: completes decoded blocks with the gas used and status of their transactions and with
+// the event logs they emitted. All receipts of a block come from a single eth_getBlockReceipts call, sent in the
+// same JSON-RPC batches as the other calls. Nodes that do not implement the method get one eth_getTransactionReceipt
+// call per transaction instead, queued together so that they still share batches; the first "method not found"
+// answer switches to this fallback for the rest of the run. Failed fetches are retried after a growing delay.
+@Component
+public class ReceiptFetcher {
+
+    private static final Logger log = LoggerFactory.getLogger(ReceiptFetcher.class);
+
+    // JSON-RPC "method not found"
+    private static final int METHOD_NOT_FOUND = -32601;
+
+    @Autowired
+    private JsonRpcBatcher rpcBatcher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Whether receipts and logs are ingested at all
+    @Value("${sync.receipts.enabled:false}")
+    private boolean enabled;
+
+    // Whether eth_getBlockReceipts is tried; false goes straight to one request per transaction
+    @Value("${sync.receipts.block-receipts:true}")
+    private volatile boolean blockReceipts;
+
+    // Blocks whose receipts may be requested at the same time; further blocks wait, which pushes back on the fetch
+    @Value("${sync.receipts.max-blocks-in-flight:64}")
+    private int maxBlocksInFlight;
+
+    // Attempts per block before it is given up on
+    @Value("${sync.receipts.max-attempts:3}")
+    private int maxAttempts;
+
+    // Delay before the first retry, multiplied by the attempt number for the following ones
+    @Value("${sync.receipts.retry-delay-ms:500}")
+    private long retryDelayMs;
+
+    private Semaphore inFlight;
+    private Counter blockRequests;
+    private Counter transactionRequests;
+
+    @PostConstruct
+    public void init() {
+        inFlight = new Semaphore(maxBlocksInFlight);
+        blockRequests = Counter.builder("ingest.receipts.requests")
+                .description("Receipt requests sent by the ingestion")
+                .tag("method", "eth_getBlockReceipts")
+                .register(meterRegistry);
+        transactionRequests = Counter.builder("ingest.receipts.requests")
+                .description("Receipt requests sent by the ingestion")
+                .tag("method", "eth_getTransactionReceipt")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Fetch the receipts of the block's transactions and return the block with receipt data and logs filled in.
+    // Blocks while too many blocks are being fetched; the returned future fails once every attempt has failed.
+    public CompletableFuture<DecodedBlock> attach(DecodedBlock block) throws InterruptedException {
+        if (!enabled || block.transactions().isEmpty()) {
+            return CompletableFuture.completedFuture(block);
+        }
+        inFlight.acquire();
+        CompletableFuture<DecodedBlock> result = attach(block, 1);
+        result.whenComplete((ignored, error) -> inFlight.release());
+        return result;
+    }
+
+    private CompletableFuture<DecodedBlock> attach(DecodedBlock block, int attempt) {
+        return fetch(block)
+                .thenApply(receipts -> apply(block, receipts))
+                .exceptionallyCompose(error -> {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    if (attempt >= maxAttempts) {
+                        return CompletableFuture.failedFuture(cause);
+                    }
+                    log.warn("Error fetching receipts, retrying: block={} attempt={} error={}", block.number(),
+                            attempt, cause.getMessage());
+                    return CompletableFuture.runAsync(() -> {
+                            }, CompletableFuture.delayedExecutor(retryDelayMs * attempt, TimeUnit.MILLISECONDS))
+                            .thenCompose(ignored -> attach(block, attempt + 1));
+                });
+    }
+
+    // Receipts of the block's transactions by transaction hash
+    private CompletableFuture<Map<String, TransactionReceipt>> fetch(DecodedBlock block) {
+        if (!blockReceipts) {
+            return fetchEach(block);
+        }
+        blockRequests.increment();
+        return rpcBatcher.getBlockReceipts(block.number()).thenCompose(response -> {
+            if (response.hasError() && isMethodNotFound(response.getError()) && blockReceipts) {
+                blockReceipts = false;
+                log.warn("The node does not support eth_getBlockReceipts, fetching receipts per transaction: {}",
+                        response.getError().getMessage());
+            }
+            if (!blockReceipts) {
+                return fetchEach(block);
+            }
+            if (response.hasError()) {
+                throw new CompletionException(new IOException("eth_getBlockReceipts for block " + block.number()
+                        + ": " + response.getError().getMessage()));
+            }
+            if (response.getReceipts() == null) {
+                throw new CompletionException(new IOException("Receipts of block " + block.number()
+                        + " are not available from the node"));
+            }
+            return CompletableFuture.completedFuture(byHash(response.getReceipts()));
+        });
+    }
+
+    // Fallback for nodes without eth_getBlockReceipts: one request per transaction, all queued at once
+    private CompletableFuture<Map<String, TransactionReceipt>> fetchEach(DecodedBlock block) {
+        List<CompletableFuture<EthGetTransactionReceipt>> requests = new ArrayList<>(block.transactions().size());
+        for (TransactionEntity transaction : block.transactions()) {
+            requests.add(rpcBatcher.getTransactionReceipt(transaction.getTransactionHash()));
+        }
+        transactionRequests.increment(requests.size());
+        return CompletableFuture.allOf(requests.toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+            List<TransactionReceipt> receipts = new ArrayList<>(requests.size());
+            for (CompletableFuture<EthGetTransactionReceipt> request : requests) {
+                EthGetTransactionReceipt response = request.join();
+                if (response.hasError()) {
+                    throw new CompletionException(new IOException("eth_getTransactionReceipt in block "
+                            + block.number() + ": " + response.getError().getMessage()));
+                }
+                // Empty while the node has not processed the block yet
+                response.getTransactionReceipt().ifPresent(receipts::add);
+            }
+            return byHash(receipts);
+        });
+    }
+
+    // Copy the receipt data to the transactions and collect their logs in block order
+    private static DecodedBlock apply(DecodedBlock block, Map<String, TransactionReceipt> receipts) {
+        List<EventLog> logs = new ArrayList<>();
+        for (TransactionEntity transaction : block.transactions()) {
+            TransactionReceipt receipt = receipts.get(transaction.getTransactionHash().toLowerCase());
+            if (receipt == null) {
+                throw new CompletionException(new IOException("No receipt for transaction "
+                        + transaction.getTransactionHash() + " in block " + block.number()));
+            }
+            transaction.setGasUsed(receipt.getGasUsedRaw() != null ? receipt.getGasUsed().longValueExact() : null);
+            // Receipts before Byzantium carry a state root instead of a status
+            transaction.setStatus(receipt.getStatus() != null ? Numeric.toBigInt(receipt.getStatus()).intValueExact()
+                    : null);
+            for (Log entry : receipt.getLogs()) {
+                logs.add(mapLog(entry, block.number(), transaction.getTransactionHash()));
+            }
+        }
+        logs.sort((a, b) -> Integer.compare(a.getLogIndex(), b.getLogIndex()));
+        return block.withLogs(logs);
+    }
+
+    private static EventLog mapLog(Log entry, BigInteger blockNumber, String transactionHash) {
+        EventLog eventLog = new EventLog();
+        eventLog.setBlockNumber(blockNumber.longValueExact());
+        eventLog.setLogIndex(entry.getLogIndex().intValueExact());
+        eventLog.setTransactionHash(transactionHash);
+        eventLog.setAddress(entry.getAddress());
+        List<String> topics = entry.getTopics() != null ? entry.getTopics() : List.of();
+        eventLog.setTopic0(topics.size() > 0 ? topics.get(0) : null);
+        eventLog.setTopic1(topics.size() > 1 ? topics.get(1) : null);
+        eventLog.setTopic2(topics.size() > 2 ? topics.get(2) : null);
+        eventLog.setTopic3(topics.size() > 3 ? topics.get(3) : null);
+        eventLog.setData(entry.getData() != null ? entry.getData() : "0x");
+        return eventLog;
+    }
+
+    private static Map<String, TransactionReceipt> byHash(List<TransactionReceipt> receipts) {
+        Map<String, TransactionReceipt> byHash = new HashMap<>(receipts.size() * 2);
+        for (TransactionReceipt receipt : receipts) {
+            byHash.put(receipt.getTransactionHash().toLowerCase(), receipt);
+        }
+        return byHash;
+    }
+
+    // Nodes differ in how they reject unknown methods; most use the JSON-RPC code, some only say so in the message
+    private static boolean isMethodNotFound(Response.Error error) {
+        String message = error.getMessage() != null ? error.getMessage().toLowerCase() : "";
+        return error.getCode() == METHOD_NOT_FOUND || message.contains("method") && (message.contains("not found")
+                || message.contains("does not exist") || message.contains("not supported"));
+    }
+}
@@ -0,0 +1,201 @@
+package org.example.hacken.ingest;
+
+import jakarta.annotation.PostConstruct;
+import org.example.hacken.model.ProcessedBlock;
+import org.example.hacken.model.TransactionEntity;
+import org.example.hacken.repository.ProcessedBlockRepository;
+import org.example.hacken.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Ring buffer of the most recently committed blocks and their newly inserted transactions, read by the change feed
+// (/api/transactions/stream). Every block gets the next sequence number. The persist stage only ever writes into the
+// buffer and never waits for readers: a reader that falls more than the capacity behind finds its blocks overwritten
+// and is told which blocks it missed instead.
+// In leased mode each instance commits whole ranges out of order and only sees its own, so the feed is filled from
+// the database instead: blocks up to the contiguous watermark in processed_block are read and published in order,
+// and every instance serves the blocks of all of them.
+@Component
+@Order(3)
+public class TransactionFeed implements BlockProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionFeed.class);
+
+    // Blocks read from the database per query in leased mode
+    private static final int POLL_BLOCKS = 100;
+
+    @Autowired
+    private ProcessedBlockRepository processedBlockRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    // Whether committed transactions are published at all
+    @Value("${api.stream.enabled:true}")
+    private boolean enabled;
+
+    // Number of blocks kept for readers that are behind or resuming
+    @Value("${api.stream.buffer-blocks:1024}")
+    private int capacity;
+
+    // "single" publishes the blocks committed by this instance, "leased" polls the database (see LeasedBlockSync)
+    @Value("${sync.coordination.mode:single}")
+    private String coordinationMode;
+
+    // Last block read from the database in leased mode; null until the first poll
+    private Long lastPolledBlock;
+
+    private Block[] ring;
+
+    // Sequence number the next published block will get
+    private long nextSequence;
+
+    // Highest block number that has been overwritten, or -1 while nothing has been
+    private long evictedThroughBlock = -1;
+
+    @PostConstruct
+    public void init() {
+        ring = new Block[capacity];
+    }
+
+    @Override
+    public String name() {
+        return "transaction-feed";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Subscribers only see transactions once they are committed
+    @Override
+    public void committed(List<DecodedBlock> group, List<TransactionEntity> inserted) {
+        if (!leased()) {
+            publish(inserted);
+        }
+    }
+
+    // In leased mode, publish the blocks the watermark has moved past since the last poll. The first poll starts at
+    // the current watermark, like a subscriber without a cursor starts at the next block.
+    @Scheduled(fixedDelayString = "${api.stream.poll-interval-ms:1000}")
+    public void pollCommitted() {
+        if (!enabled || !leased()) {
+            return;
+        }
+        try {
+            BigInteger checkpoint = processedBlockRepository.findById(1).map(ProcessedBlock::getBlockNumber)
+                    .orElse(null);
+            if (checkpoint == null) {
+                return;
+            }
+            long watermark = checkpoint.longValueExact();
+            if (lastPolledBlock == null) {
+                lastPolledBlock = watermark;
+                return;
+            }
+            while (lastPolledBlock < watermark) {
+                long toBlock = Math.min(watermark, lastPolledBlock + POLL_BLOCKS);
+                publish(transactionRepository.findByBlockNumberBetweenOrderByBlockNumberAscTransactionHashAsc(
+                        lastPolledBlock + 1, toBlock));
+                lastPolledBlock = toBlock;
+            }
+        } catch (RuntimeException e) {
+            log.error("Error reading committed blocks for the transaction feed", e);
+        }
+    }
+
+    private boolean leased() {
+        return "leased".equalsIgnoreCase(coordinationMode);
+    }
+
+    // Publish committed transactions, one buffer entry per block; the list is in block order as committed
+    public void publish(List<TransactionEntity> inserted) {
+        if (inserted.isEmpty()) {
+            return;
+        }
+        // Split into runs of the same block before taking the lock
+        List<List<TransactionEntity>> runs = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= inserted.size(); i++) {
+            if (i == inserted.size()
+                    || !inserted.get(i).getBlockNumber().equals(inserted.get(start).getBlockNumber())) {
+                runs.add(List.copyOf(inserted.subList(start, i)));
+                start = i;
+            }
+        }
+        synchronized (this) {
+            for (List<TransactionEntity> run : runs) {
+                int slot = (int) (nextSequence % capacity);
+                if (ring[slot] != null) {
+                    evictedThroughBlock = Math.max(evictedThroughBlock, ring[slot].number());
+                }
+                ring[slot] = new Block(nextSequence++, run.get(0).getBlockNumber(), run);
+            }
+            notifyAll();
+        }
+    }
+
+    // Position of a new reader: right after the newest block, or, when resuming, at the first buffered block after
+    // the given one
+    public synchronized Position position(Long afterBlock) {
+        if (afterBlock == null) {
+            long newest = nextSequence > 0 ? ring[(int) ((nextSequence - 1) % capacity)].number() : -1;
+            return new Position(nextSequence, newest, -1);
+        }
+        long sequence = nextSequence;
+        for (long s = Math.max(0, nextSequence - capacity); s < nextSequence; s++) {
+            if (ring[(int) (s % capacity)].number() > afterBlock) {
+                sequence = s;
+                break;
+            }
+        }
+        // Blocks after the cursor that are no longer buffered are reported as missed
+        return new Position(sequence, afterBlock, evictedThroughBlock > afterBlock ? evictedThroughBlock : -1);
+    }
+
+    // Read up to max blocks starting at the sequence, waiting up to the timeout for one to be published. If blocks
+    // from the sequence on have already been overwritten, reading continues at the oldest buffered block and the
+    // result says up to which block the reader missed data.
+    public synchronized Read read(long sequence, int max, long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (nextSequence <= sequence) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return new Read(List.of(), sequence, -1);
+            }
+            wait(remaining);
+        }
+        long oldest = Math.max(0, nextSequence - capacity);
+        long start = Math.max(sequence, oldest);
+        long end = Math.min(nextSequence, start + max);
+        List<Block> blocks = new ArrayList<>((int) (end - start));
+        for (long s = start; s < end; s++) {
+            blocks.add(ring[(int) (s % capacity)]);
+        }
+        return new Read(blocks, end, start > sequence ? evictedThroughBlock : -1);
+    }
+
+    // A committed block and the transactions inserted for it
+    public record Block(long sequence, long number, List<TransactionEntity> transactions) {
+    }
+
+    // Where a reader starts, the block it starts after (-1 if unknown), and the highest block it has missed (-1 if
+    // none)
+    public record Position(long sequence, long afterBlock, long missedThroughBlock) {
+    }
+
+    // Blocks read, the sequence to continue at, and the highest block skipped because it was overwritten (-1 if none)
+    public record Read(List<Block> blocks, long nextSequence, long missedThroughBlock) {
+    }
+}
@@ -0,0 +1,41 @@
+package org.example.hacken.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Type;
+
+// Running totals per address, maintained by the ingestion path together with the transaction inserts.
+// Wei totals are decimal strings like TransactionEntity values; they are unbounded, hence plain numeric.
+@Entity
+@Table(name = "address_stats")
+@Data
+@NoArgsConstructor
+public class AddressStats {
+
+    @Id
+    @Type(HexBytesType.class)
+    @Column(name = "address", nullable = false, columnDefinition = "bytea")
+    private String address;
+
+    @Column(name = "sent_count", nullable = false)
+    private long sentCount;
+
+    @Column(name = "received_count", nullable = false)
+    private long receivedCount;
+
+    @Convert(converter = WeiConverter.class)
+    @Column(name = "total_sent_wei", nullable = false, columnDefinition = "numeric")
+    private String totalSentWei;
+
+    @Convert(converter = WeiConverter.class)
+    @Column(name = "total_received_wei", nullable = false, columnDefinition = "numeric")
+    private String totalReceivedWei;
+
+    // First and last block the address appeared in; null when only known from transactions without block context
+    @Column(name = "first_block")
+    private Long firstBlock;
+
+    @Column(name = "last_block")
+    private Long lastBlock;
+}
@@ -0,0 +1,44 @@
+package org.example.hacken.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// A range of blocks [rangeStart, rangeEnd] to be ingested by one of several instances. Ranges are created PENDING,
+// CLAIMED by an instance for a limited time (renewed while it works on them) and marked DONE once their blocks are
+// committed. A CLAIMED range whose lease has expired can be claimed by any other instance. The rows are written
+// with plain SQL by BlockRangeLeaseStore; the entity defines the table.
+@Entity
+@Table(name = "block_range_leases",
+        indexes = @Index(name = "idx_block_range_leases_status", columnList = "status, range_start"))
+@Data
+@NoArgsConstructor
+public class BlockRangeLease {
+
+    public static final String PENDING = "PENDING";
+    public static final String CLAIMED = "CLAIMED";
+    public static final String DONE = "DONE";
+
+    @Id
+    @Column(name = "range_start", nullable = false)
+    private long rangeStart;
+
+    @Column(name = "range_end", nullable = false)
+    private long rangeEnd;
+
+    @Column(name = "status", nullable = false, length = 16)
+    private String status;
+
+    // Instance holding or having completed the range
+    @Column(name = "owner")
+    private String owner;
+
+    @Column(name = "lease_expires_at")
+    private Instant leaseExpiresAt;
+
+    // Number of times the range has been claimed; more than one means an instance gave up or died on it
+    @Column(name = "claims", nullable = false)
+    private int claims;
+}
@@ -0,0 +1,72 @@
+package org.example.hacken.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+// An event log emitted by a transaction, taken from the transaction receipts when receipt ingestion is enabled
+// (sync.receipts.enabled). A log is identified by its block and its index within the block, which is also the order
+// of the keyset pages; the address and topic0 (the event signature) indexes carry the same order so that a page is a
+// single index range scan. The rows are written with plain SQL by EventLogWriter; the entity defines the table.
+@Entity
+@Table(name = "event_logs", indexes = {
+        @Index(name = "idx_event_logs_address", columnList = "address, block_number, log_index"),
+        @Index(name = "idx_event_logs_topic0", columnList = "topic0, block_number, log_index")
+})
+@IdClass(EventLog.Key.class)
+@Data
+@NoArgsConstructor
+public class EventLog {
+
+    @Id
+    @Column(name = "block_number", nullable = false)
+    private Long blockNumber;
+
+    // Position of the log within its block
+    @Id
+    @Column(name = "log_index", nullable = false)
+    private Integer logIndex;
+
+    @Convert(converter = HexBytesConverter.class)
+    @Column(name = "transaction_hash", nullable = false, columnDefinition = "bytea")
+    private String transactionHash;
+
+    // Contract that emitted the log
+    @Convert(converter = HexBytesConverter.class)
+    @Column(name = "address", nullable = false, columnDefinition = "bytea")
+    private String address;
+
+    // Indexed topics; null where the event has fewer (anonymous events have no topic0)
+    @Convert(converter = HexBytesConverter.class)
+    @Column(name = "topic0", columnDefinition = "bytea")
+    private String topic0;
+
+    @Convert(converter = HexBytesConverter.class)
+    @Column(name = "topic1", columnDefinition = "bytea")
+    private String topic1;
+
+    @Convert(converter = HexBytesConverter.class)
+    @Column(name = "topic2", columnDefinition = "bytea")
+    private String topic2;
+
+    @Convert(converter = HexBytesConverter.class)
+    @Column(name = "topic3", columnDefinition = "bytea")
+    private String topic3;
+
+    // Non-indexed event data
+    @Convert(converter = HexBytesConverter.class)
+    @Column(name = "data", nullable = false, columnDefinition = "bytea")
+    private String data;
+
+    // Primary key of a log
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long blockNumber;
+        private Integer logIndex;
+    }
+}
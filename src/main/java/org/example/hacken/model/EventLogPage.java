@@ -0,0 +1,20 @@
+package org.example.hacken.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// One page of a keyset-paginated event log listing
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventLogPage {
+
+    // Logs of this page, ordered by block number and log index
+    private List<EventLog> items;
+
+    // Cursor to pass as `after` to get the next page, or null if this is the last page
+    private String nextCursor;
+}
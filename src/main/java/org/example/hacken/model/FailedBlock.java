@@ -0,0 +1,29 @@
+package org.example.hacken.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// A block the persist stage could not commit, even on its own. The row is written by the next commit of the
+// pipeline, so a checkpoint never moves past the block without it, and deleted once FailedBlocksRetrier (or the
+// sync itself) has written the block. The rows are written with plain SQL by FailedBlockRepository; the entity
+// defines the table.
+@Entity
+@Table(name = "failed_blocks")
+@Data
+@NoArgsConstructor
+public class FailedBlock {
+
+    @Id
+    @Column(name = "block_number", nullable = false)
+    private long blockNumber;
+
+    // Number of times the block could not be committed
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "failed_at", nullable = false)
+    private Instant failedAt;
+}
@@ -0,0 +1,41 @@
+package org.example.hacken.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.HexFormat;
+
+// Stores `0x`-prefixed hex strings (hashes, addresses) as raw bytes. Input is case-insensitive and always read back
+// in lower case, so lookups match regardless of how the client spelled the address.
+@Converter
+public class HexBytesConverter implements AttributeConverter<String, byte[]> {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    @Override
+    public byte[] convertToDatabaseColumn(String hex) {
+        return toBytes(hex);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] bytes) {
+        return toHex(bytes);
+    }
+
+    // Decode a hex string with or without `0x` prefix; an odd number of digits is padded with a leading zero
+    public static byte[] toBytes(String hex) {
+        if (hex == null) {
+            return null;
+        }
+        String digits = hex.startsWith("0x") || hex.startsWith("0X") ? hex.substring(2) : hex;
+        if (digits.length() % 2 != 0) {
+            digits = "0" + digits;
+        }
+        return HEX.parseHex(digits.toLowerCase());
+    }
+
+    // Encode bytes as a lower-case `0x`-prefixed hex string
+    public static String toHex(byte[] bytes) {
+        return bytes == null ? null : "0x" + HEX.formatHex(bytes);
+    }
+}
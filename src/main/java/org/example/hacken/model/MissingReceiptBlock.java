@@ -0,0 +1,29 @@
+package org.example.hacken.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// A block whose transactions were written without receipts because every attempt to fetch them failed. The row is
+// written in the transaction that stores the block, so the checkpoint can move past it, and deleted once
+// MissingReceiptsRetrier has written the block again with its receipts. The rows are written with plain SQL by
+// MissingReceiptBlockRepository; the entity defines the table.
+@Entity
+@Table(name = "missing_receipt_blocks")
+@Data
+@NoArgsConstructor
+public class MissingReceiptBlock {
+
+    @Id
+    @Column(name = "block_number", nullable = false)
+    private long blockNumber;
+
+    // Number of times the receipts of the block could not be fetched
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "failed_at", nullable = false)
+    private Instant failedAt;
+}
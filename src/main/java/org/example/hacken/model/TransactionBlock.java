@@ -0,0 +1,27 @@
+package org.example.hacken.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Type;
+
+// The block a stored transaction hash is filed under. The partitioned transactions table can only enforce
+// uniqueness together with the block number, so the writers claim a hash here first; by-hash reads join through
+// this table to read only the partition that holds the row. Rows migrated without block information have block 0
+// until the transaction is ingested with its real block. The table is created by schema.sql.
+@Entity
+@Table(name = "transaction_blocks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionBlock {
+
+    @Id
+    @Type(HexBytesType.class)
+    @Column(name = "transaction_hash", nullable = false, columnDefinition = "bytea")
+    private String transactionHash;
+
+    @Column(name = "block_number", nullable = false)
+    private Long blockNumber;
+}
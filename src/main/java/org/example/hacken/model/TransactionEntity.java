@@ -3,27 +3,56 @@ package org.example.hacken.model;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Type;
 
+import java.time.Instant;
+
+// Hashes and addresses are exposed as hex strings but stored as bytea, and values as numeric(78,0) wei.
+// On PostgreSQL the table is range-partitioned by block number (see schema.sql and TransactionPartitionManager), so
+// its primary key is (transaction_hash, block_number); the entity is still identified by the hash alone. The index
+// names differ from the older layouts so that a renamed legacy table can sit next to this one during migration.
 @Entity
 @Table(name = "transactions", indexes = {
-        @Index(name = "idx_transaction_hash", columnList = "transaction_hash"),
-        @Index(name = "idx_from_address", columnList = "from_address"),
-        @Index(name = "idx_to_address", columnList = "to_address")
+        @Index(name = "idx_transactions_block_number", columnList = "block_number"),
+        // By address, in the hash order of the keyset pages, so a page reads only its own rows
+        @Index(name = "idx_transactions_from_address_hash", columnList = "from_address, transaction_hash"),
+        @Index(name = "idx_transactions_to_address_hash", columnList = "to_address, transaction_hash"),
+        @Index(name = "idx_transactions_value", columnList = "tx_value, transaction_hash")
 })
 @Data
 @NoArgsConstructor
 public class TransactionEntity {
 
     @Id
-    @Column(name = "transaction_hash", nullable = false, unique = true)
+    @Type(HexBytesType.class)
+    @Column(name = "transaction_hash", nullable = false, columnDefinition = "bytea")
     private String transactionHash;
 
-    @Column(name = "from_address", nullable = false)
+    // Number of the block containing the transaction; 0 for rows migrated without block information
+    @Column(name = "block_number", nullable = false)
+    private Long blockNumber;
+
+    // Timestamp of the containing block; null when the transaction was fetched on its own
+    @Column(name = "block_timestamp")
+    private Instant blockTimestamp;
+
+    @Convert(converter = HexBytesConverter.class)
+    @Column(name = "from_address", nullable = false, columnDefinition = "bytea")
     private String fromAddress;
 
-    @Column(name = "to_address")
+    @Convert(converter = HexBytesConverter.class)
+    @Column(name = "to_address", columnDefinition = "bytea")
     private String toAddress;
 
-    @Column(name = "tx_value", nullable = false)
+    @Convert(converter = WeiConverter.class)
+    @Column(name = "tx_value", nullable = false, columnDefinition = "numeric(78,0)")
     private String value;
+
+    // Gas used and status (1 = success, 0 = reverted) from the receipt; null unless receipts are ingested, and the
+    // status is also null for blocks before Byzantium
+    @Column(name = "gas_used")
+    private Long gasUsed;
+
+    @Column(name = "status", columnDefinition = "smallint")
+    private Integer status;
 }
@@ -0,0 +1,21 @@
+package org.example.hacken.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Result for one hash of a batch lookup
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionLookupResult {
+
+    // The hash as given in the request
+    private String hash;
+
+    // False if neither the database nor the node knows the transaction
+    private boolean found;
+
+    // The transaction, or null if it was not found
+    private TransactionEntity transaction;
+}
@@ -0,0 +1,20 @@
+package org.example.hacken.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// One page of a keyset-paginated transaction listing
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionPage {
+
+    // Transactions of this page, ordered by transaction hash
+    private List<TransactionEntity> items;
+
+    // Cursor to pass as `after` to get the next page, or null if this is the last page
+    private String nextCursor;
+}
@@ -0,0 +1,21 @@
+package org.example.hacken.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.math.BigDecimal;
+
+// Stores decimal wei strings in a numeric column so that values can be compared and sorted in the database
+@Converter
+public class WeiConverter implements AttributeConverter<String, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(String wei) {
+        return wei == null ? null : new BigDecimal(wei);
+    }
+
+    @Override
+    public String convertToEntityAttribute(BigDecimal wei) {
+        return wei == null ? null : wei.toPlainString();
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.hacken.persistence;
+
+import org.example.hacken.model.TransactionEntity;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Per-address increments collected from newly inserted transactions, written by AddressStatsWriter in one go.
+// Addresses are kept sorted so that concurrent writers always lock the rows in the same order.
+public class AddressStatsBatch {
+
+    private final Map<String, Delta> deltas = new TreeMap<>();
+
+    // Count inserted transactions; block 0 marks rows without block information and is left out of first/last block
+    public void add(List<TransactionEntity> inserted) {
+        for (TransactionEntity entity : inserted) {
+            Long block = entity.getBlockNumber() != null && entity.getBlockNumber() > 0 ? entity.getBlockNumber() : null;
+            BigDecimal value = new BigDecimal(entity.getValue());
+            Delta sender = delta(entity.getFromAddress());
+            sender.sentCount++;
+            sender.sentWei = sender.sentWei.add(value);
+            sender.seenIn(block);
+            if (entity.getToAddress() != null) {
+                // Contract creations have no recipient
+                Delta recipient = delta(entity.getToAddress());
+                recipient.receivedCount++;
+                recipient.receivedWei = recipient.receivedWei.add(value);
+                recipient.seenIn(block);
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return deltas.isEmpty();
+    }
+
+    Collection<Map.Entry<String, Delta>> entries() {
+        return deltas.entrySet();
+    }
+
+    private Delta delta(String address) {
+        return deltas.computeIfAbsent(address.toLowerCase(Locale.ROOT), key -> new Delta());
+    }
+
+    static final class Delta {
+        long sentCount;
+        long receivedCount;
+        BigDecimal sentWei = BigDecimal.ZERO;
+        BigDecimal receivedWei = BigDecimal.ZERO;
+        Long firstBlock;
+        Long lastBlock;
+
+        private void seenIn(Long block) {
+            if (block == null) {
+                return;
+            }
+            firstBlock = firstBlock == null ? block : Math.min(firstBlock, block);
+            lastBlock = lastBlock == null ? block : Math.max(lastBlock, block);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.hacken.persistence;
+
+import org.example.hacken.model.HexBytesConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Applies AddressStatsBatch increments to the address_stats table with multi-row
+// `INSERT ... ON CONFLICT DO UPDATE` statements. Callers run it in the transaction that inserted the
+// transactions, so the totals always match the stored rows.
+@Component
+public class AddressStatsWriter implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(AddressStatsWriter.class);
+
+    // Columns written per row; PostgreSQL allows at most 65535 bind parameters per statement
+    private static final int COLUMNS = 7;
+
+    private static final String UPSERT_PREFIX = "INSERT INTO address_stats (address, sent_count, received_count,"
+            + " total_sent_wei, total_received_wei, first_block, last_block) VALUES ";
+
+    // LEAST/GREATEST ignore NULLs, so increments without block context leave first/last block untouched
+    private static final String UPSERT_SUFFIX = " ON CONFLICT (address) DO UPDATE SET"
+            + " sent_count = address_stats.sent_count + EXCLUDED.sent_count,"
+            + " received_count = address_stats.received_count + EXCLUDED.received_count,"
+            + " total_sent_wei = address_stats.total_sent_wei + EXCLUDED.total_sent_wei,"
+            + " total_received_wei = address_stats.total_received_wei + EXCLUDED.total_received_wei,"
+            + " first_block = LEAST(address_stats.first_block, EXCLUDED.first_block),"
+            + " last_block = GREATEST(address_stats.last_block, EXCLUDED.last_block)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Whether address statistics are maintained at all
+    @Value("${stats.address.enabled:true}")
+    private boolean enabled;
+
+    // Recompute the whole table from the transactions table on startup (e.g. after enabling it on existing data)
+    @Value("${stats.address.rebuild-on-startup:false}")
+    private boolean rebuildOnStartup;
+
+    // Maximum number of addresses in a single statement
+    @Value("${stats.address.rows-per-statement:1000}")
+    private int rowsPerStatement;
+
+    public void write(AddressStatsBatch batch) {
+        if (!enabled || batch.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<String, AddressStatsBatch.Delta>> rows = new ArrayList<>(batch.entries());
+        for (int from = 0; from < rows.size(); from += rowsPerStatement) {
+            upsertChunk(rows.subList(from, Math.min(from + rowsPerStatement, rows.size())));
+        }
+    }
+
+    private void upsertChunk(List<Map.Entry<String, AddressStatsBatch.Delta>> chunk) {
+        StringBuilder sql = new StringBuilder(UPSERT_PREFIX);
+        Object[] params = new Object[chunk.size() * COLUMNS];
+        int i = 0;
+        for (Map.Entry<String, AddressStatsBatch.Delta> row : chunk) {
+            AddressStatsBatch.Delta delta = row.getValue();
+            sql.append(i == 0 ? "(?, ?, ?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?, ?, ?)");
+            params[i++] = HexBytesConverter.toBytes(row.getKey());
+            params[i++] = delta.sentCount;
+            params[i++] = delta.receivedCount;
+            params[i++] = delta.sentWei;
+            params[i++] = delta.receivedWei;
+            params[i++] = delta.firstBlock;
+            params[i++] = delta.lastBlock;
+        }
+        sql.append(UPSERT_SUFFIX);
+        jdbcTemplate.update(sql.toString(), params);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (enabled && rebuildOnStartup) {
+            rebuild();
+        }
+    }
+
+    // Replace the statistics with totals computed from the stored transactions
+    public void rebuild() {
+        long startedAt = System.currentTimeMillis();
+        Integer addresses = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("TRUNCATE address_stats");
+            // Block 0 marks rows without block information; NULLIF keeps it out of first/last block
+            return jdbcTemplate.update("INSERT INTO address_stats (address, sent_count, received_count,"
+                    + " total_sent_wei, total_received_wei, first_block, last_block)"
+                    + " SELECT address, sum(sent_count), sum(received_count), sum(sent_wei), sum(received_wei),"
+                    + " min(first_block), max(last_block) FROM ("
+                    + " SELECT from_address AS address, count(*) AS sent_count, 0 AS received_count,"
+                    + " sum(tx_value) AS sent_wei, 0 AS received_wei, min(NULLIF(block_number, 0)) AS first_block,"
+                    + " max(NULLIF(block_number, 0)) AS last_block FROM transactions GROUP BY from_address"
+                    + " UNION ALL"
+                    + " SELECT to_address, 0, count(*), 0, sum(tx_value), min(NULLIF(block_number, 0)),"
+                    + " max(NULLIF(block_number, 0)) FROM transactions WHERE to_address IS NOT NULL GROUP BY to_address"
+                    + ") totals GROUP BY address");
+        });
+        log.info("Address statistics rebuilt: addresses={} seconds={}", addresses,
+                (System.currentTimeMillis() - startedAt) / 1000);
+    }
+}
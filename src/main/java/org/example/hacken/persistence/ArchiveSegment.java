@@ -0,0 +1,729 @@
+package org.example.hacken.persistence;
+
+import org.example.hacken.model.HexBytesConverter;
+import org.example.hacken.model.TransactionEntity;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+// One immutable file of the transaction archive: the transactions of a block range [fromBlock, toBlock), ordered by
+// hash. The file is memory-mapped and laid out so that a query touches as little of it as possible:
+//   header   magic, version, block range, row count, lowest and highest block and value with rows
+//   filters  Bloom filters over the addresses and over the hashes of the segment
+//   hashes   the 32-byte transaction hashes, sorted, uncompressed (random bytes do not compress); lookups and
+//            hash-ordered pages binary-search them in place
+//   body     Deflate-compressed columns: the address dictionary (sorted 20-byte addresses), then per row a flags
+//            byte, the block offset, the from/to dictionary indexes, the value and the gas used, each as its own
+//            column, the block timestamps once per block, and the rows in (value, hash) order, so that value-ordered
+//            pages start at their cursor instead of scanning the segment (not in version 1 files, where it is
+//            computed when the body is decoded)
+// Segments whose header or filters rule out a query are skipped without reading the rest; the body is only
+// inflated for segments that may hold matching rows.
+final class ArchiveSegment {
+
+    private static final int MAGIC = 0x484b5453; // "HKTS"
+    private static final int VERSION = 2;
+    private static final int HASH_BYTES = 32;
+    private static final int ADDRESS_BYTES = 20;
+    private static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+
+    // Row flags
+    private static final int HAS_TIMESTAMP = 1;
+    private static final int HAS_TO = 2;
+    private static final int HAS_GAS_USED = 4;
+    private static final int HAS_STATUS = 8;
+    private static final int STATUS_SUCCESS = 16;
+
+    private final Path file;
+    private final int version;
+    private final long fromBlock;
+    private final long toBlock;
+    private final int rows;
+    private final long minBlock;
+    private final long maxBlock;
+    private final BigInteger minValue;
+    private final BigInteger maxValue;
+    private final BloomFilter addressFilter;
+    private final BloomFilter hashFilter;
+    private final MappedByteBuffer mapped;
+    private final int hashesOffset;
+    private final int bodyOffset;
+    private final int bodyLength;
+    private final int rawLength;
+
+    private ArchiveSegment(Path file, MappedByteBuffer mapped) throws IOException {
+        this.file = file;
+        this.mapped = mapped;
+        ByteBuffer in = mapped.duplicate();
+        if (in.remaining() < 8 || in.getInt() != MAGIC) {
+            throw new IOException("Not an archive segment: " + file);
+        }
+        version = in.getInt();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported archive segment version " + version + ": " + file);
+        }
+        fromBlock = in.getLong();
+        toBlock = in.getLong();
+        rows = in.getInt();
+        minBlock = in.getLong();
+        maxBlock = in.getLong();
+        minValue = readUnsigned(in);
+        maxValue = readUnsigned(in);
+        addressFilter = readFilter(in);
+        hashFilter = readFilter(in);
+        hashesOffset = in.position();
+        in.position(hashesOffset + rows * HASH_BYTES);
+        bodyLength = in.getInt();
+        rawLength = in.getInt();
+        bodyOffset = in.position();
+        if (bodyOffset + bodyLength != in.limit()) {
+            throw new IOException("Truncated archive segment: " + file);
+        }
+    }
+
+    // Map an existing segment file
+    static ArchiveSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new ArchiveSegment(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // Write the rows, all of blocks [fromBlock, toBlock), to a new segment file. The file is written under a
+    // temporary name, synced and then renamed, so a segment file is either complete or absent.
+    static ArchiveSegment write(Path file, long fromBlock, long toBlock, List<TransactionEntity> rows)
+            throws IOException {
+        List<TransactionEntity> sorted = new ArrayList<>(rows);
+        sorted.sort(Comparator.comparing((TransactionEntity entity) -> entity.getTransactionHash().toLowerCase())
+                .thenComparing(TransactionEntity::getBlockNumber, Comparator.reverseOrder()));
+        Writer writer = new Writer(fromBlock, toBlock);
+        for (TransactionEntity entity : sorted) {
+            writer.add(HexBytesConverter.toBytes(entity.getTransactionHash()), entity.getBlockNumber(),
+                    entity.getBlockTimestamp(), HexBytesConverter.toBytes(entity.getFromAddress()),
+                    HexBytesConverter.toBytes(entity.getToAddress()), new BigInteger(entity.getValue()),
+                    entity.getGasUsed(), entity.getStatus());
+        }
+        return writer.finish(file);
+    }
+
+    // Builds a segment from rows added in ascending hash order, e.g. straight from a database cursor. Only the
+    // encoded columns are kept in memory, about 60 bytes per row plus the distinct addresses; the address indexes
+    // are renumbered to the sorted dictionary when the segment is finished.
+    static final class Writer {
+
+        private final long fromBlock;
+        private final long toBlock;
+        private final Map<ByteBuffer, Integer> addressIds = new HashMap<>();
+        private final List<byte[]> addresses = new ArrayList<>();
+        private final ByteArrayOutputStream hashes = new ByteArrayOutputStream();
+        private final ColumnWriter flags = new ColumnWriter();
+        private final ColumnWriter blocks = new ColumnWriter();
+        private final ColumnWriter values = new ColumnWriter();
+        private final ColumnWriter gasUsed = new ColumnWriter();
+        private final TreeMap<Long, Long> timestamps = new TreeMap<>();
+        // Address ids in order of first appearance, per row and per row with a recipient
+        private int[] fromIds = new int[1024];
+        private int[] toIds = new int[1024];
+        private int rowCount;
+        private int toCount;
+        private long minBlock = Long.MAX_VALUE;
+        private long maxBlock = Long.MIN_VALUE;
+        private BigInteger minValue;
+        private BigInteger maxValue;
+        private byte[] previousHash;
+
+        Writer(long fromBlock, long toBlock) {
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+        }
+
+        int rows() {
+            return rowCount;
+        }
+
+        // Add a row; a hash equal to the previous one is skipped, so the first row of a hash wins (add the rows of
+        // a hash latest block first to keep the latest, as lookups do)
+        void add(byte[] hash, long block, Instant timestamp, byte[] from, byte[] to, BigInteger value, Long gas,
+                 Integer status) {
+            if (block < fromBlock || block >= toBlock) {
+                throw new IllegalArgumentException("Block " + block + " is outside the segment range [" + fromBlock
+                        + ", " + toBlock + ")");
+            }
+            checkLength(hash, HASH_BYTES);
+            if (previousHash != null) {
+                int comparison = Arrays.compareUnsigned(previousHash, hash);
+                if (comparison == 0) {
+                    return;
+                }
+                if (comparison > 0) {
+                    throw new IllegalArgumentException("Rows must be added in hash order: "
+                            + HexBytesConverter.toHex(hash));
+                }
+            }
+            previousHash = hash;
+            hashes.writeBytes(hash);
+
+            int rowFlags = 0;
+            if (timestamp != null) {
+                rowFlags |= HAS_TIMESTAMP;
+                timestamps.put(block, timestamp.getEpochSecond());
+            }
+            if (to != null) {
+                rowFlags |= HAS_TO;
+                if (toCount == toIds.length) {
+                    toIds = Arrays.copyOf(toIds, toCount * 2);
+                }
+                toIds[toCount++] = addressId(to);
+            }
+            if (gas != null) {
+                rowFlags |= HAS_GAS_USED;
+                gasUsed.writeVarLong(gas);
+            }
+            if (status != null) {
+                rowFlags |= HAS_STATUS | (status == 1 ? STATUS_SUCCESS : 0);
+            }
+            flags.write(rowFlags);
+            blocks.writeVarLong(block - fromBlock);
+            if (rowCount == fromIds.length) {
+                fromIds = Arrays.copyOf(fromIds, rowCount * 2);
+            }
+            fromIds[rowCount++] = addressId(from);
+            byte[] magnitude = unsignedBytes(value);
+            values.writeVarLong(magnitude.length);
+            values.writeBytes(magnitude);
+
+            minBlock = Math.min(minBlock, block);
+            maxBlock = Math.max(maxBlock, block);
+            minValue = minValue == null || value.compareTo(minValue) < 0 ? value : minValue;
+            maxValue = maxValue == null || value.compareTo(maxValue) > 0 ? value : maxValue;
+        }
+
+        private int addressId(byte[] address) {
+            checkLength(address, ADDRESS_BYTES);
+            Integer id = addressIds.get(ByteBuffer.wrap(address));
+            if (id == null) {
+                id = addresses.size();
+                addressIds.put(ByteBuffer.wrap(address), id);
+                addresses.add(address);
+            }
+            return id;
+        }
+
+        // Write the segment file and map it. The file is written under a temporary name, synced and then renamed,
+        // so a segment file is either complete or absent.
+        ArchiveSegment finish(Path file) throws IOException {
+            // Sorted dictionary, and the dictionary index of every address id
+            Integer[] sortedIds = new Integer[addresses.size()];
+            for (int id = 0; id < sortedIds.length; id++) {
+                sortedIds[id] = id;
+            }
+            Arrays.sort(sortedIds, (a, b) -> Arrays.compareUnsigned(addresses.get(a), addresses.get(b)));
+            int[] dictionaryIndex = new int[sortedIds.length];
+            BloomFilter addressFilter = new BloomFilter(Math.max(1, sortedIds.length), BLOOM_FALSE_POSITIVE_RATE);
+            ByteArrayOutputStream dictionary = new ByteArrayOutputStream(sortedIds.length * ADDRESS_BYTES);
+            for (int index = 0; index < sortedIds.length; index++) {
+                byte[] address = addresses.get(sortedIds[index]);
+                dictionaryIndex[sortedIds[index]] = index;
+                addressFilter.put(HexBytesConverter.toHex(address));
+                dictionary.writeBytes(address);
+            }
+            ColumnWriter from = new ColumnWriter();
+            for (int row = 0; row < rowCount; row++) {
+                from.writeVarLong(dictionaryIndex[fromIds[row]]);
+            }
+            ColumnWriter to = new ColumnWriter();
+            for (int row = 0; row < toCount; row++) {
+                to.writeVarLong(dictionaryIndex[toIds[row]]);
+            }
+
+            byte[] hashBytes = hashes.toByteArray();
+            BloomFilter hashFilter = new BloomFilter(Math.max(1, rowCount), BLOOM_FALSE_POSITIVE_RATE);
+            for (int row = 0; row < rowCount; row++) {
+                hashFilter.put(HexBytesConverter.toHex(
+                        Arrays.copyOfRange(hashBytes, row * HASH_BYTES, (row + 1) * HASH_BYTES)));
+            }
+
+            ColumnWriter blockTimestamps = new ColumnWriter();
+            blockTimestamps.writeVarLong(timestamps.size());
+            for (Map.Entry<Long, Long> entry : timestamps.entrySet()) {
+                blockTimestamps.writeVarLong(entry.getKey() - fromBlock);
+                blockTimestamps.writeVarLong(entry.getValue());
+            }
+
+            ColumnWriter valueOrder = new ColumnWriter();
+            for (int row : valueOrder()) {
+                valueOrder.writeVarLong(row);
+            }
+
+            ByteArrayOutputStream raw = new ByteArrayOutputStream();
+            DataOutputStream rawOut = new DataOutputStream(raw);
+            rawOut.writeInt(sortedIds.length);
+            dictionary.writeTo(rawOut);
+            for (ColumnWriter column : List.of(flags, blocks, from, to, values, gasUsed, blockTimestamps,
+                    valueOrder)) {
+                column.writeTo(rawOut);
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream(raw.size() / 2);
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try (DeflaterOutputStream compressed = new DeflaterOutputStream(body, deflater)) {
+                raw.writeTo(compressed);
+            } finally {
+                deflater.end();
+            }
+
+            Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                OutputStream stream = Channels.newOutputStream(channel);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(fromBlock);
+                out.writeLong(toBlock);
+                out.writeInt(rowCount);
+                out.writeLong(rowCount > 0 ? minBlock : -1);
+                out.writeLong(rowCount > 0 ? maxBlock : -1);
+                writeUnsigned(out, minValue != null ? minValue : BigInteger.ZERO);
+                writeUnsigned(out, maxValue != null ? maxValue : BigInteger.ZERO);
+                writeFilter(out, addressFilter);
+                writeFilter(out, hashFilter);
+                out.write(hashBytes);
+                out.writeInt(body.size());
+                out.writeInt(raw.size());
+                body.writeTo(out);
+                out.flush();
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Archive segment " + file
+                            + " exceeds 2 GB; use a smaller archive.segment-blocks");
+                }
+                channel.force(true);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(temporary);
+                throw e;
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return open(file);
+        }
+
+        // The rows ordered by value, then by hash (row order), read back from the encoded value column
+        private int[] valueOrder() {
+            byte[] encoded = values.toByteArray();
+            ByteBuffer in = ByteBuffer.wrap(encoded);
+            int[] offsets = new int[rowCount];
+            int[] lengths = new int[rowCount];
+            for (int row = 0; row < rowCount; row++) {
+                lengths[row] = (int) readVarLong(in);
+                offsets[row] = in.position();
+                in.position(in.position() + lengths[row]);
+            }
+            return sortedRows(rowCount, (a, b) -> compareMagnitudes(encoded, offsets[a], lengths[a],
+                    encoded, offsets[b], lengths[b]));
+        }
+    }
+
+    Path file() {
+        return file;
+    }
+
+    long fromBlock() {
+        return fromBlock;
+    }
+
+    long toBlock() {
+        return toBlock;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    long sizeBytes() {
+        return mapped.capacity();
+    }
+
+    // Whether the segment has rows within the inclusive block range
+    boolean overlapsBlocks(long from, long to) {
+        return rows > 0 && minBlock <= to && maxBlock >= from;
+    }
+
+    // Whether every row of the segment lies within the inclusive block range
+    boolean withinBlocks(long from, long to) {
+        return minBlock >= from && maxBlock <= to;
+    }
+
+    // Whether the segment may have rows with a value within the inclusive range
+    boolean overlapsValues(BigInteger min, BigInteger max) {
+        return rows > 0 && minValue.compareTo(max) <= 0 && maxValue.compareTo(min) >= 0;
+    }
+
+    boolean mightContainAddress(String address) {
+        return addressFilter.mightContain(address);
+    }
+
+    boolean mightContainHash(String hash) {
+        return hashFilter.mightContain(hash);
+    }
+
+    // The 32-byte hash of a row, read from the mapping
+    byte[] hash(int row) {
+        byte[] hash = new byte[HASH_BYTES];
+        mapped.get(hashesOffset + row * HASH_BYTES, hash);
+        return hash;
+    }
+
+    // The row of a hash, or -1
+    int findRow(byte[] hash) {
+        int low = 0;
+        int high = rows - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareHash(middle, hash);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    // The first row whose hash sorts after the given bytes (a prefix sorts before everything it starts)
+    int firstRowAfter(byte[] hash) {
+        int low = 0;
+        int high = rows;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareHash(middle, hash) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Compare the hash of a row with the given bytes, as unsigned bytes
+    private int compareHash(int row, byte[] other) {
+        int offset = hashesOffset + row * HASH_BYTES;
+        int length = Math.min(HASH_BYTES, other.length);
+        for (int i = 0; i < length; i++) {
+            int comparison = Byte.compareUnsigned(mapped.get(offset + i), other[i]);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(HASH_BYTES, other.length);
+    }
+
+    // Inflate and decode the body
+    Columns decode() throws IOException {
+        ByteBuffer compressed = mapped.slice(bodyOffset, bodyLength);
+        ByteBuffer raw = ByteBuffer.allocate(rawLength);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            while (raw.hasRemaining() && !inflater.finished()) {
+                if (inflater.inflate(raw) == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Corrupt archive segment: " + file);
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt archive segment: " + file, e);
+        } finally {
+            inflater.end();
+        }
+        if (raw.hasRemaining()) {
+            throw new IOException("Truncated archive segment body: " + file);
+        }
+        raw.flip();
+        return new Columns(raw);
+    }
+
+    // The decoded columns of a segment
+    final class Columns {
+
+        private final byte[] addresses;
+        private final byte[] flags;
+        private final long[] blocks;
+        private final int[] from;
+        private final int[] to;
+        private final byte[][] values;
+        private final long[] gasUsed;
+        private final Map<Long, Long> timestamps;
+        // Rows in (value, hash) order
+        private final int[] valueOrder;
+
+        private Columns(ByteBuffer in) {
+            int addressCount = in.getInt();
+            addresses = new byte[addressCount * ADDRESS_BYTES];
+            in.get(addresses);
+
+            ByteBuffer flagColumn = column(in);
+            ByteBuffer blockColumn = column(in);
+            ByteBuffer fromColumn = column(in);
+            ByteBuffer toColumn = column(in);
+            ByteBuffer valueColumn = column(in);
+            ByteBuffer gasColumn = column(in);
+            ByteBuffer timestampColumn = column(in);
+
+            flags = new byte[rows];
+            blocks = new long[rows];
+            from = new int[rows];
+            to = new int[rows];
+            values = new byte[rows][];
+            gasUsed = new long[rows];
+            flagColumn.get(flags);
+            for (int row = 0; row < rows; row++) {
+                blocks[row] = fromBlock + readVarLong(blockColumn);
+                from[row] = (int) readVarLong(fromColumn);
+                to[row] = (flags[row] & HAS_TO) != 0 ? (int) readVarLong(toColumn) : -1;
+                values[row] = new byte[(int) readVarLong(valueColumn)];
+                valueColumn.get(values[row]);
+                gasUsed[row] = (flags[row] & HAS_GAS_USED) != 0 ? readVarLong(gasColumn) : -1;
+            }
+            int timestampCount = (int) readVarLong(timestampColumn);
+            timestamps = new HashMap<>(timestampCount * 2);
+            for (int i = 0; i < timestampCount; i++) {
+                timestamps.put(fromBlock + readVarLong(timestampColumn), readVarLong(timestampColumn));
+            }
+
+            if (version >= 2) {
+                ByteBuffer valueOrderColumn = column(in);
+                valueOrder = new int[rows];
+                for (int position = 0; position < rows; position++) {
+                    valueOrder[position] = (int) readVarLong(valueOrderColumn);
+                }
+            } else {
+                valueOrder = sortedRows(rows, (a, b) -> compareMagnitudes(values[a], 0, values[a].length,
+                        values[b], 0, values[b].length));
+            }
+        }
+
+        // Approximate heap size, used to bound the cache of decoded segments
+        int weight() {
+            return addresses.length + rows * (HASH_BYTES + 44);
+        }
+
+        // The row at a position of the (value, hash) order
+        int rowInValueOrder(int position) {
+            return valueOrder[position];
+        }
+
+        // The first position in (value, hash) order whose row sorts after the given value and hash, or, with
+        // `after` false, does not sort before them. A null hash sorts after every hash of its value, an empty one
+        // before every hash.
+        int valuePosition(BigInteger value, byte[] hash, boolean after) {
+            int low = 0;
+            int high = rows;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int row = valueOrder[middle];
+                int comparison = value(row).compareTo(value);
+                if (comparison == 0) {
+                    comparison = hash == null ? -1 : compareHash(row, hash);
+                }
+                if (comparison < 0 || (after && comparison == 0)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        // Dictionary index of an address, or -1 if no row of the segment involves it
+        int addressIndex(String address) {
+            byte[] key;
+            try {
+                key = fixedBytes(address, ADDRESS_BYTES);
+            } catch (IllegalArgumentException e) {
+                return -1;
+            }
+            int low = 0;
+            int high = addresses.length / ADDRESS_BYTES - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int offset = middle * ADDRESS_BYTES;
+                int comparison = Arrays.compareUnsigned(addresses, offset, offset + ADDRESS_BYTES,
+                        key, 0, ADDRESS_BYTES);
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -1;
+        }
+
+        long blockNumber(int row) {
+            return blocks[row];
+        }
+
+        int fromIndex(int row) {
+            return from[row];
+        }
+
+        int toIndex(int row) {
+            return to[row];
+        }
+
+        BigInteger value(int row) {
+            return new BigInteger(1, values[row]);
+        }
+
+        TransactionEntity entity(int row) {
+            TransactionEntity entity = new TransactionEntity();
+            entity.setTransactionHash(HexBytesConverter.toHex(hash(row)));
+            entity.setBlockNumber(blocks[row]);
+            if ((flags[row] & HAS_TIMESTAMP) != 0) {
+                entity.setBlockTimestamp(Instant.ofEpochSecond(timestamps.get(blocks[row])));
+            }
+            entity.setFromAddress(address(from[row]));
+            entity.setToAddress(to[row] >= 0 ? address(to[row]) : null);
+            entity.setValue(value(row).toString());
+            entity.setGasUsed((flags[row] & HAS_GAS_USED) != 0 ? gasUsed[row] : null);
+            entity.setStatus((flags[row] & HAS_STATUS) != 0 ? (flags[row] & STATUS_SUCCESS) != 0 ? 1 : 0 : null);
+            return entity;
+        }
+
+        private String address(int index) {
+            return HexBytesConverter.toHex(
+                    Arrays.copyOfRange(addresses, index * ADDRESS_BYTES, (index + 1) * ADDRESS_BYTES));
+        }
+    }
+
+    // Row indexes 0..count-1 sorted by the comparator, ties in row (hash) order
+    private static int[] sortedRows(int count, Comparator<Integer> comparator) {
+        Integer[] rows = new Integer[count];
+        for (int row = 0; row < count; row++) {
+            rows[row] = row;
+        }
+        Arrays.sort(rows, comparator.thenComparing(Comparator.naturalOrder()));
+        int[] sorted = new int[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = rows[i];
+        }
+        return sorted;
+    }
+
+    // Compare two unsigned big-endian magnitudes without leading zero bytes
+    private static int compareMagnitudes(byte[] a, int aOffset, int aLength, byte[] b, int bOffset, int bLength) {
+        if (aLength != bLength) {
+            return Integer.compare(aLength, bLength);
+        }
+        return Arrays.compareUnsigned(a, aOffset, aOffset + aLength, b, bOffset, bOffset + bLength);
+    }
+
+    // A length-prefixed column of the body
+    private static ByteBuffer column(ByteBuffer in) {
+        int length = in.getInt();
+        ByteBuffer column = in.slice(in.position(), length);
+        in.position(in.position() + length);
+        return column;
+    }
+
+    // Byte buffer for one column, with unsigned LEB128 varints
+    private static final class ColumnWriter extends ByteArrayOutputStream {
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7fL) != 0) {
+                write((int) (value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(size());
+            writeTo((OutputStream) out);
+        }
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static void writeFilter(DataOutputStream out, BloomFilter filter) throws IOException {
+        long[] words = filter.words();
+        out.writeLong(filter.bitCount());
+        out.writeInt(filter.hashFunctions());
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    private static BloomFilter readFilter(ByteBuffer in) {
+        long bitCount = in.getLong();
+        int hashFunctions = in.getInt();
+        long[] words = new long[(int) ((bitCount + 63) / 64)];
+        in.asLongBuffer().get(words);
+        in.position(in.position() + words.length * Long.BYTES);
+        return new BloomFilter(bitCount, hashFunctions, words);
+    }
+
+    private static void writeUnsigned(DataOutputStream out, BigInteger value) throws IOException {
+        byte[] magnitude = unsignedBytes(value);
+        out.writeByte(magnitude.length);
+        out.write(magnitude);
+    }
+
+    private static BigInteger readUnsigned(ByteBuffer in) {
+        byte[] magnitude = new byte[in.get() & 0xff];
+        in.get(magnitude);
+        return new BigInteger(1, magnitude);
+    }
+
+    // Big-endian magnitude without the sign byte BigInteger adds for values with the top bit set
+    private static byte[] unsignedBytes(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        return bytes.length > 1 && bytes[0] == 0 ? Arrays.copyOfRange(bytes, 1, bytes.length) : bytes;
+    }
+
+    // Decode a hex hash or address that must have exactly the given number of bytes
+    private static byte[] fixedBytes(String hex, int length) {
+        byte[] bytes = HexBytesConverter.toBytes(hex);
+        checkLength(bytes, length);
+        return bytes;
+    }
+
+    private static void checkLength(byte[] bytes, int length) {
+        if (bytes.length != length) {
+            throw new IllegalArgumentException("Expected " + length + " bytes: " + HexBytesConverter.toHex(bytes));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.example.hacken.persistence;
+
+import org.example.hacken.model.BlockRangeLease;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+// Coordinates several ingesting instances through the block_range_leases table. Every statement is atomic on its
+// own, so instances need no other communication:
+//  - plan: append PENDING ranges up to the chain head (serialised by an advisory lock, so ranges never overlap)
+//  - claim: take the lowest PENDING or expired range (SKIP LOCKED, so concurrent claims never block each other)
+//  - renew / complete / release: only succeed for the current owner of the range
+//  - advanceWatermark: move the processed_block checkpoint to the end of the contiguous run of DONE ranges and
+//    delete those ranges; the checkpoint is where planning resumes when the table is empty
+@Component
+public class BlockRangeLeaseStore {
+
+    // Arbitrary key of the transaction-scoped advisory lock taken while planning
+    private static final long PLAN_LOCK = 0x6c65617365L;
+
+    private static final String CLAIM = "UPDATE block_range_leases SET status = '" + BlockRangeLease.CLAIMED + "',"
+            + " owner = ?, lease_expires_at = now() + ? * interval '1 millisecond', claims = claims + 1"
+            + " WHERE range_start = (SELECT range_start FROM block_range_leases"
+            + " WHERE status = '" + BlockRangeLease.PENDING + "'"
+            + " OR (status = '" + BlockRangeLease.CLAIMED + "' AND lease_expires_at < now())"
+            + " ORDER BY range_start LIMIT 1 FOR UPDATE SKIP LOCKED)"
+            + " RETURNING range_start, range_end";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // A claimed range of blocks [fromBlock, toBlock]
+    public record Lease(long fromBlock, long toBlock) {
+    }
+
+    // Append PENDING ranges from the end of the planned ranges (or the checkpoint) up to the chain head. Ranges are
+    // aligned to rangeSize so that ranges planned by different instances line up; the range containing the head
+    // ends at the head and the rest of it is planned once the chain has moved on. If nothing has been planned or
+    // processed yet, ingestion starts after the current head. Returns the number of ranges added.
+    public int plan(long chainHead, long rangeSize) {
+        Integer added = transactionTemplate.execute(status -> {
+            jdbcTemplate.queryForObject("SELECT pg_advisory_xact_lock(?)", Object.class, PLAN_LOCK);
+            Long lastPlanned = jdbcTemplate.queryForObject("SELECT COALESCE((SELECT max(range_end)"
+                    + " FROM block_range_leases), (SELECT block_number FROM processed_block WHERE id = 1))", Long.class);
+            if (lastPlanned == null) {
+                jdbcTemplate.update("INSERT INTO processed_block (id, block_number) VALUES (1, ?)", chainHead);
+                return 0;
+            }
+            int count = 0;
+            for (long start = lastPlanned + 1; start <= chainHead; count++) {
+                long end = Math.min(Math.floorDiv(start, rangeSize) * rangeSize + rangeSize - 1, chainHead);
+                jdbcTemplate.update("INSERT INTO block_range_leases (range_start, range_end, status, claims)"
+                        + " VALUES (?, ?, '" + BlockRangeLease.PENDING + "', 0)", start, end);
+                start = end + 1;
+            }
+            return count;
+        });
+        return added == null ? 0 : added;
+    }
+
+    // Claim the lowest range that is pending or whose lease has expired
+    public Optional<Lease> claim(String owner, long leaseMs) {
+        List<Lease> claimed = jdbcTemplate.query(CLAIM,
+                (row, i) -> new Lease(row.getLong("range_start"), row.getLong("range_end")), owner, leaseMs);
+        return claimed.stream().findFirst();
+    }
+
+    // Extend the lease of a range still held by the owner; false if it has been lost to another instance
+    public boolean renew(Lease lease, String owner, long leaseMs) {
+        return jdbcTemplate.update("UPDATE block_range_leases SET lease_expires_at = now() + ? * interval '1 millisecond'"
+                + " WHERE range_start = ? AND owner = ? AND status = '" + BlockRangeLease.CLAIMED + "'",
+                leaseMs, lease.fromBlock(), owner) == 1;
+    }
+
+    // Mark a range as done; false if it has been lost to another instance in the meantime
+    public boolean complete(Lease lease, String owner) {
+        return jdbcTemplate.update("UPDATE block_range_leases SET status = '" + BlockRangeLease.DONE + "',"
+                + " lease_expires_at = NULL WHERE range_start = ? AND owner = ? AND status = '"
+                + BlockRangeLease.CLAIMED + "'", lease.fromBlock(), owner) == 1;
+    }
+
+    // Give a range back so that any instance can claim it right away
+    public void release(Lease lease, String owner) {
+        jdbcTemplate.update("UPDATE block_range_leases SET status = '" + BlockRangeLease.PENDING + "',"
+                + " owner = NULL, lease_expires_at = NULL WHERE range_start = ? AND owner = ? AND status = '"
+                + BlockRangeLease.CLAIMED + "'", lease.fromBlock(), owner);
+    }
+
+    // Move the checkpoint to the last block below the first range that is not done, drop the ranges behind it and
+    // return the new checkpoint (null if nothing has been planned yet)
+    public Long advanceWatermark() {
+        return transactionTemplate.execute(status -> {
+            Long watermark = jdbcTemplate.queryForObject("SELECT COALESCE((SELECT min(range_start) - 1"
+                    + " FROM block_range_leases WHERE status <> '" + BlockRangeLease.DONE + "'),"
+                    + " (SELECT max(range_end) FROM block_range_leases))", Long.class);
+            if (watermark == null) {
+                return jdbcTemplate.queryForObject("SELECT max(block_number) FROM processed_block", Long.class);
+            }
+            // Never moves backwards, e.g. when the checkpoint was set by a dump import
+            jdbcTemplate.update("INSERT INTO processed_block (id, block_number) VALUES (1, ?) ON CONFLICT (id)"
+                    + " DO UPDATE SET block_number = GREATEST(processed_block.block_number, EXCLUDED.block_number)",
+                    BigDecimal.valueOf(watermark));
+            // The highest range is always kept, so that planning continues after it even if the checkpoint was
+            // moved further by someone else
+            jdbcTemplate.update("DELETE FROM block_range_leases WHERE status = '" + BlockRangeLease.DONE + "'"
+                    + " AND range_end <= ? AND range_end < (SELECT max(range_end) FROM block_range_leases)", watermark);
+            return watermark;
+        });
+    }
+}
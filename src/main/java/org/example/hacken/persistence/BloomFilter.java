@@ -0,0 +1,102 @@
+package org.example.hacken.persistence;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Minimal thread-safe Bloom filter for transaction hashes. Transaction hashes are Keccak-256 outputs and therefore
+// already uniformly distributed, so the two base hashes for double hashing are taken directly from the hash digits.
+// Addresses are derived from Keccak-256 as well and work the same way. A filter can be written out (bitCount,
+// hashFunctions, words) and restored, as done for the archive segments.
+class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashFunctions;
+
+    BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long optimalBits = (long) (-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitCount = Math.max(64, optimalBits);
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        this.bits = new AtomicLongArray((int) ((bitCount + 63) / 64));
+    }
+
+    // Restore a written filter
+    BloomFilter(long bitCount, int hashFunctions, long[] words) {
+        if (words.length != (bitCount + 63) / 64) {
+            throw new IllegalArgumentException("Bloom filter of " + bitCount + " bits needs " + (bitCount + 63) / 64
+                    + " words, got " + words.length);
+        }
+        this.bitCount = bitCount;
+        this.hashFunctions = hashFunctions;
+        this.bits = new AtomicLongArray(words);
+    }
+
+    long bitCount() {
+        return bitCount;
+    }
+
+    int hashFunctions() {
+        return hashFunctions;
+    }
+
+    long[] words() {
+        long[] words = new long[bits.length()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = bits.get(i);
+        }
+        return words;
+    }
+
+    void put(String hash) {
+        long h1 = baseHash1(hash);
+        long h2 = baseHash2(hash);
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = bits.get(word);
+            } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    boolean mightContain(String hash) {
+        long h1 = baseHash1(hash);
+        long h2 = baseHash2(hash);
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long baseHash1(String hash) {
+        return isHexHash(hash) ? parseHexLong(hash, 2) : mix(hash.hashCode());
+    }
+
+    private static long baseHash2(String hash) {
+        // Force the step to be odd so that it never degenerates to zero
+        return (isHexHash(hash) ? parseHexLong(hash, 18) : mix(hash.hashCode() * 31L + 17)) | 1L;
+    }
+
+    private static boolean isHexHash(String hash) {
+        return hash.length() >= 34 && hash.startsWith("0x");
+    }
+
+    private static long parseHexLong(String hash, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 16; i++) {
+            value = (value << 4) | Character.digit(hash.charAt(i), 16) & 0xF;
+        }
+        return value;
+    }
+
+    // Finalizer of SplitMix64, used for inputs that are not hex hashes
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
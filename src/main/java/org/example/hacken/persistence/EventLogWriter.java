@@ -0,0 +1,57 @@
+package org.example.hacken.persistence;
+
+import org.example.hacken.model.EventLog;
+import org.example.hacken.model.HexBytesConverter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Writes event logs with multi-row `INSERT ... ON CONFLICT DO NOTHING` statements. The persist stage calls it once
+// per block group, in the transaction that inserts the transactions of those blocks, so that replayed blocks are
+// skipped and the logs are never committed without their transactions.
+@Component
+public class EventLogWriter {
+
+    // Columns written per row; PostgreSQL allows at most 65535 bind parameters per statement
+    private static final int COLUMNS = 9;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Maximum number of rows in a single INSERT statement
+    @Value("${sync.receipts.rows-per-statement:1000}")
+    private int rowsPerStatement;
+
+    // Store the logs and return the number of rows that did not exist yet
+    public int write(List<EventLog> logs) {
+        int inserted = 0;
+        for (int from = 0; from < logs.size(); from += rowsPerStatement) {
+            inserted += insertChunk(logs.subList(from, Math.min(from + rowsPerStatement, logs.size())));
+        }
+        return inserted;
+    }
+
+    private int insertChunk(List<EventLog> chunk) {
+        StringBuilder sql = new StringBuilder("INSERT INTO event_logs (block_number, log_index, transaction_hash,"
+                + " address, topic0, topic1, topic2, topic3, data) VALUES ");
+        Object[] params = new Object[chunk.size() * COLUMNS];
+        int i = 0;
+        for (EventLog eventLog : chunk) {
+            sql.append(i == 0 ? "(?, ?, ?, ?, ?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            params[i++] = eventLog.getBlockNumber();
+            params[i++] = eventLog.getLogIndex();
+            params[i++] = HexBytesConverter.toBytes(eventLog.getTransactionHash());
+            params[i++] = HexBytesConverter.toBytes(eventLog.getAddress());
+            params[i++] = HexBytesConverter.toBytes(eventLog.getTopic0());
+            params[i++] = HexBytesConverter.toBytes(eventLog.getTopic1());
+            params[i++] = HexBytesConverter.toBytes(eventLog.getTopic2());
+            params[i++] = HexBytesConverter.toBytes(eventLog.getTopic3());
+            params[i++] = HexBytesConverter.toBytes(eventLog.getData());
+        }
+        sql.append(" ON CONFLICT (block_number, log_index) DO NOTHING");
+        return jdbcTemplate.update(sql.toString(), params);
+    }
+}
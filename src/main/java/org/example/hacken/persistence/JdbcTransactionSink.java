@@ -0,0 +1,132 @@
+package org.example.hacken.persistence;
+
+import org.example.hacken.model.HexBytesConverter;
+import org.example.hacken.model.TransactionEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Bulk writer using multi-row `INSERT ... ON CONFLICT` statements, so that the duplicate check and the insert of a
+// whole block happen in a single set-based round trip. The hashes are claimed in transaction_blocks, which is unique
+// by hash: a hash that is already stored under a block is skipped, and a row migrated without a block (block 0) is
+// replaced by the row with the real block, without being reported as inserted again. Gas used and status a stored
+// row lacks are filled in when the transaction is written again with its receipt.
+@Component
+@ConditionalOnProperty(name = "sync.sink", havingValue = "jdbc", matchIfMissing = true)
+public class JdbcTransactionSink implements TransactionSink {
+
+    // Columns written per row; PostgreSQL allows at most 65535 bind parameters per statement
+    private static final int COLUMNS = 8;
+
+    // Typed placeholders of one row; the types of a VALUES list are not taken from the target table
+    private static final String ROW = "(CAST(? AS bytea), CAST(? AS bigint), CAST(? AS timestamptz), CAST(? AS bytea),"
+            + " CAST(? AS bytea), CAST(? AS numeric), CAST(? AS bigint), CAST(? AS smallint))";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private RecentTransactionHashFilter hashFilter;
+
+    // Maximum number of rows in a single INSERT statement
+    @Value("${sync.sink.jdbc.rows-per-statement:1000}")
+    private int rowsPerStatement;
+
+    @Override
+    public List<TransactionEntity> write(List<TransactionEntity> entities) {
+        if (entities.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // Drop hashes known to be stored (e.g. a replayed block) unless they bring receipt data the stored row may
+        // lack; the conflict clause handles everything else
+        Set<String> knownHashes = hashFilter.findExisting(
+                entities.stream().map(TransactionEntity::getTransactionHash).toList(), null);
+        // One row per hash: a statement cannot claim the same hash twice
+        Map<String, TransactionEntity> unique = new LinkedHashMap<>();
+        for (TransactionEntity entity : entities) {
+            if (!knownHashes.contains(entity.getTransactionHash()) || hasReceipt(entity)) {
+                unique.putIfAbsent(entity.getTransactionHash(), entity);
+            }
+        }
+        List<TransactionEntity> candidates = new ArrayList<>(unique.values());
+
+        Set<String> insertedHashes = new HashSet<>();
+        for (int from = 0; from < candidates.size(); from += rowsPerStatement) {
+            List<TransactionEntity> chunk =
+                    candidates.subList(from, Math.min(from + rowsPerStatement, candidates.size()));
+            insertedHashes.addAll(insertChunk(chunk));
+        }
+        // Every candidate is stored now, whether it was inserted here or already existed
+        hashFilter.record(candidates.stream().map(TransactionEntity::getTransactionHash).toList());
+
+        List<TransactionEntity> inserted = new ArrayList<>(insertedHashes.size());
+        for (TransactionEntity entity : candidates) {
+            if (insertedHashes.contains(entity.getTransactionHash())) {
+                inserted.add(entity);
+            }
+        }
+        return inserted;
+    }
+
+    private static boolean hasReceipt(TransactionEntity entity) {
+        return entity.getGasUsed() != null || entity.getStatus() != null;
+    }
+
+    // Insert one chunk and return the hashes of the rows that did not exist yet
+    private List<String> insertChunk(List<TransactionEntity> chunk) {
+        StringBuilder sql = new StringBuilder("WITH v (transaction_hash, block_number, block_timestamp, from_address,"
+                + " to_address, tx_value, gas_used, status) AS (VALUES ");
+        Object[] params = new Object[chunk.size() * COLUMNS];
+        int i = 0;
+        for (TransactionEntity entity : chunk) {
+            sql.append(i == 0 ? ROW : ", " + ROW);
+            params[i++] = HexBytesConverter.toBytes(entity.getTransactionHash());
+            params[i++] = entity.getBlockNumber();
+            params[i++] = entity.getBlockTimestamp() != null ? entity.getBlockTimestamp().atOffset(ZoneOffset.UTC) : null;
+            params[i++] = HexBytesConverter.toBytes(entity.getFromAddress());
+            params[i++] = HexBytesConverter.toBytes(entity.getToAddress());
+            params[i++] = new BigDecimal(entity.getValue());
+            params[i++] = entity.getGasUsed();
+            params[i++] = entity.getStatus();
+        }
+        // Claim the hashes; xmax = 0 tells a new claim from a block-0 claim that has been moved to the real block
+        sql.append("), claimed AS (INSERT INTO transaction_blocks (transaction_hash, block_number)"
+                + " SELECT transaction_hash, block_number FROM v"
+                + " ON CONFLICT (transaction_hash) DO UPDATE SET block_number = EXCLUDED.block_number"
+                + " WHERE transaction_blocks.block_number = 0 AND EXCLUDED.block_number <> 0"
+                + " RETURNING transaction_hash, xmax = 0 AS fresh)"
+                // The migrated copy of a moved claim goes; block_number = 0 limits this to one partition
+                + ", replaced AS (DELETE FROM transactions t USING claimed c WHERE NOT c.fresh AND t.block_number = 0"
+                + " AND t.transaction_hash = c.transaction_hash)"
+                + ", inserted AS (INSERT INTO transactions (transaction_hash, block_number, block_timestamp,"
+                + " from_address, to_address, tx_value, gas_used, status)"
+                + " SELECT v.transaction_hash, v.block_number, v.block_timestamp, v.from_address, v.to_address,"
+                + " v.tx_value, v.gas_used, v.status FROM v JOIN claimed c ON c.transaction_hash = v.transaction_hash"
+                + " ON CONFLICT (transaction_hash, block_number) DO UPDATE SET"
+                + " gas_used = COALESCE(transactions.gas_used, EXCLUDED.gas_used),"
+                + " status = COALESCE(transactions.status, EXCLUDED.status))"
+                // Rows stored before their receipts were known (e.g. a block retried from missing_receipt_blocks,
+                // or written before receipt ingestion was enabled) get the receipt data now
+                + ", completed AS (UPDATE transactions t SET gas_used = COALESCE(t.gas_used, v.gas_used),"
+                + " status = COALESCE(t.status, v.status) FROM v WHERE t.transaction_hash = v.transaction_hash"
+                + " AND t.block_number = v.block_number AND ((t.gas_used IS NULL AND v.gas_used IS NOT NULL)"
+                + " OR (t.status IS NULL AND v.status IS NOT NULL)))"
+                + " SELECT transaction_hash FROM claimed WHERE fresh");
+        return jdbcTemplate.queryForList(sql.toString(), byte[].class, params).stream()
+                .map(HexBytesConverter::toHex)
+                .toList();
+    }
+}
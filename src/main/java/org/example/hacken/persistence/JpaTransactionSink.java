@@ -0,0 +1,104 @@
+package org.example.hacken.persistence;
+
+import org.example.hacken.model.TransactionBlock;
+import org.example.hacken.model.TransactionEntity;
+import org.example.hacken.repository.TransactionBlockRepository;
+import org.example.hacken.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Fallback writer going through JPA: looks up the existing hashes first and saves the new entities in batches, with
+// their transaction_blocks claims. A row migrated without a block (block 0) is replaced by the row with the real
+// block, without being reported as inserted again. Gas used and status a stored row lacks are filled in when the
+// transaction is written again with its receipt.
+@Component
+@ConditionalOnProperty(name = "sync.sink", havingValue = "jpa")
+public class JpaTransactionSink implements TransactionSink {
+
+    private static final Logger log = LoggerFactory.getLogger(JpaTransactionSink.class);
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionBlockRepository transactionBlockRepository;
+
+    @Autowired
+    private RecentTransactionHashFilter hashFilter;
+
+    @Override
+    public List<TransactionEntity> write(List<TransactionEntity> entities) {
+        if (entities.isEmpty()) {
+            return entities;
+        }
+
+        // Find existing transaction hashes to avoid duplicates; the database is only asked about probable hits
+        List<String> txHashes = entities.stream()
+                .map(TransactionEntity::getTransactionHash)
+                .collect(Collectors.toList());
+        Set<String> existingTxHashSet =
+                hashFilter.findExisting(txHashes, transactionRepository::findExistingTransactionHashes);
+
+        // Filter out transactions that are already in the database, one entity per hash
+        Map<String, TransactionEntity> unique = new LinkedHashMap<>();
+        for (TransactionEntity entity : entities) {
+            if (!existingTxHashSet.contains(entity.getTransactionHash())) {
+                unique.putIfAbsent(entity.getTransactionHash(), entity);
+            } else if (entity.getBlockNumber() != 0) {
+                replaceMigrated(entity);
+                if (entity.getGasUsed() != null || entity.getStatus() != null) {
+                    transactionRepository.completeReceipt(entity.getTransactionHash(), entity.getBlockNumber(),
+                            entity.getGasUsed(), entity.getStatus());
+                }
+            }
+        }
+        List<TransactionEntity> newEntities = new ArrayList<>(unique.values());
+
+        int batchSize = 100;  // You can adjust the batch size based on the database performance
+        List<TransactionEntity> saved = new ArrayList<>(newEntities.size());
+        for (List<TransactionEntity> batch : partitionList(newEntities, batchSize)) {
+            try {
+                transactionBlockRepository.saveAll(batch.stream()
+                        .map(entity -> new TransactionBlock(entity.getTransactionHash(), entity.getBlockNumber()))
+                        .toList());
+                transactionRepository.saveAll(batch);  // Save the batch of transactions
+                saved.addAll(batch);
+                hashFilter.record(batch.stream().map(TransactionEntity::getTransactionHash).toList());
+            } catch (Exception e) {
+                log.error("Error saving batch: size={}", batch.size(), e);
+            }
+        }
+        return saved;
+    }
+
+    // Move a transaction stored without its block (block 0) to its real block
+    private void replaceMigrated(TransactionEntity entity) {
+        transactionBlockRepository.findById(entity.getTransactionHash())
+                .filter(claim -> claim.getBlockNumber() == 0)
+                .ifPresent(claim -> {
+                    transactionRepository.deleteMigrated(entity.getTransactionHash());
+                    claim.setBlockNumber(entity.getBlockNumber());
+                    transactionBlockRepository.save(claim);
+                    transactionRepository.save(entity);
+                });
+    }
+
+    // Helper method to partition the list into smaller batches (package-private for the benchmarks)
+    static <T> List<List<T>> partitionList(List<T> list, int size) {
+        List<List<T>> partitions = new ArrayList<>();
+        for (int i = 0; i < list.size(); i += size) {
+            partitions.add(list.subList(i, Math.min(i + size, list.size())));
+        }
+        return partitions;
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.hacken.persistence;
+
+import org.example.hacken.model.HexBytesConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.regex.Pattern;
+
+// Copies rows from an older transactions table into the current partitioned layout. Two source layouts are
+// understood: the original text-based one (hex strings and decimal strings) and the unpartitioned bytea/numeric one.
+// Before upgrading, rename the old table, e.g.
+//   ALTER TABLE transactions RENAME TO transactions_legacy;
+// and start the application with storage.migration.enabled=true. Rows are converted inside the database in
+// hash-ordered chunks, each committed on its own, so the migration can be stopped and re-run at any time.
+// Neither layout recorded blocks, so migrated rows get block number 0 until the sync reaches the transaction and the
+// sink moves it to its real block (see transaction_blocks).
+@Component
+@ConditionalOnProperty(name = "storage.migration.enabled", havingValue = "true")
+public class LegacyTransactionMigrator implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(LegacyTransactionMigrator.class);
+
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionPartitionManager partitionManager;
+
+    // Name of the table holding the rows in the old layout
+    @Value("${storage.migration.source-table:transactions_legacy}")
+    private String sourceTable;
+
+    // Number of rows converted per statement
+    @Value("${storage.migration.chunk-size:10000}")
+    private int chunkSize;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!TABLE_NAME.matcher(sourceTable).matches()) {
+            throw new IllegalStateException("Invalid storage.migration.source-table: " + sourceTable);
+        }
+
+        boolean textLayout = !"bytea".equals(jdbcTemplate.queryForObject("SELECT data_type FROM information_schema.columns"
+                + " WHERE table_name = ? AND column_name = 'transaction_hash'", String.class, sourceTable));
+        String hash = textLayout ? "decode(substr(lower(c.transaction_hash), 3), 'hex')" : "c.transaction_hash";
+        String from = textLayout ? "decode(substr(lower(c.from_address), 3), 'hex')" : "c.from_address";
+        String to = textLayout ? "decode(substr(lower(c.to_address), 3), 'hex')" : "c.to_address";
+
+        // Convert one chunk and return the last source key it covered, or NULL when the source is exhausted
+        String sql = "WITH chunk AS ("
+                + " SELECT transaction_hash, from_address, to_address, tx_value FROM " + sourceTable
+                + " WHERE transaction_hash > ? ORDER BY transaction_hash LIMIT ?"
+                // Skip hashes the sync has already stored under their real block; the claim with block 0 lets the
+                // sinks replace the migrated row once the transaction is ingested with its block
+                + "), claimed AS ("
+                + " INSERT INTO transaction_blocks (transaction_hash, block_number) SELECT " + hash + ", 0 FROM chunk c"
+                + " ON CONFLICT (transaction_hash) DO NOTHING RETURNING transaction_hash"
+                + "), inserted AS ("
+                + " INSERT INTO transactions (transaction_hash, block_number, from_address, to_address, tx_value)"
+                + " SELECT " + hash + ", 0, " + from + ", " + to + ", CAST(c.tx_value AS numeric) FROM chunk c"
+                + " JOIN claimed k ON k.transaction_hash = " + hash
+                + " ON CONFLICT (transaction_hash, block_number) DO NOTHING"
+                + ") SELECT (SELECT transaction_hash FROM chunk ORDER BY transaction_hash DESC LIMIT 1)";
+
+        partitionManager.ensureCovered(0, 0);
+        // The key has the type of the source column: a string for the text layout, bytes otherwise
+        Object lastKey = textLayout ? "" : new byte[0];
+        long chunks = 0;
+        long startedAt = System.currentTimeMillis();
+        while (true) {
+            Object next = jdbcTemplate.queryForObject(sql, Object.class, lastKey, chunkSize);
+            if (next == null) {
+                break;
+            }
+            lastKey = next;
+            if (++chunks % 10 == 0) {
+                log.info("Legacy migration progress: chunks={} lastKey={}", chunks,
+                        lastKey instanceof byte[] bytes ? HexBytesConverter.toHex(bytes) : lastKey);
+            }
+        }
+        log.info("Legacy migration finished: sourceTable={} textLayout={} chunks={} seconds={}", sourceTable,
+                textLayout, chunks, (System.currentTimeMillis() - startedAt) / 1000);
+    }
+}
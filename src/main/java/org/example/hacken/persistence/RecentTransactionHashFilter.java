@@ -0,0 +1,176 @@
+package org.example.hacken.persistence;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.example.hacken.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+// In-process duplicate check for recently ingested transaction hashes. A bounded set of the most recent hashes
+// answers exact hits, and a Bloom filter answers "definitely new" for everything else, so the database only has
+// to be asked about probable hits. Hashes written outside the sinks (or older than the warm-up window) may be
+// missing from the filter; the sinks tolerate that because they never rely on the filter alone for correctness.
+@Component
+public class RecentTransactionHashFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(RecentTransactionHashFilter.class);
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Whether the filter is consulted at all
+    @Value("${sync.dedup.enabled:true}")
+    private boolean enabled;
+
+    // Number of hashes a Bloom filter generation is sized for before it is rotated
+    @Value("${sync.dedup.expected-insertions:2000000}")
+    private long expectedInsertions;
+
+    // Target false-positive rate of a Bloom filter generation
+    @Value("${sync.dedup.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    // Number of most recent hashes kept exactly
+    @Value("${sync.dedup.recent-size:100000}")
+    private int recentSize;
+
+    // Two filter generations: new hashes go into `current`; when it is full, it becomes `previous` and a fresh
+    // filter takes its place, which keeps the false-positive rate bounded without ever clearing recent hashes
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+    private long currentInsertions;
+
+    private Set<String> recentHashes;
+
+    private Counter recentHits;
+    private Counter probableHits;
+    private Counter confirmedHits;
+    private Counter falsePositives;
+    private Counter definitelyNew;
+
+    @PostConstruct
+    public void init() {
+        current = new BloomFilter(expectedInsertions, falsePositiveRate);
+        previous = new BloomFilter(1, falsePositiveRate);
+        // Insertion-ordered map that drops the eldest hash once the bound is reached
+        recentHashes = Collections.newSetFromMap(new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > recentSize;
+            }
+        });
+
+        recentHits = counter("recent", "Hashes found in the exact recent-hash set");
+        probableHits = counter("probable", "Hashes the Bloom filter reported as possibly stored");
+        confirmedHits = counter("confirmed", "Probable hits confirmed by the database");
+        falsePositives = counter("false_positive", "Probable hits the database did not know");
+        definitelyNew = counter("new", "Hashes the Bloom filter reported as definitely new");
+
+        if (enabled) {
+            warmUp();
+        }
+    }
+
+    // Return the hashes among `hashes` that are already stored. Probable hits are resolved with `databaseLookup`;
+    // when it is null they are reported as new and left for the caller's own conflict handling.
+    public Set<String> findExisting(List<String> hashes, Function<List<String>, List<String>> databaseLookup) {
+        if (!enabled) {
+            return databaseLookup == null ? Collections.emptySet() : new HashSet<>(databaseLookup.apply(hashes));
+        }
+
+        Set<String> existing = new HashSet<>();
+        List<String> candidates = new ArrayList<>();
+        synchronized (recentHashes) {
+            for (String hash : hashes) {
+                if (recentHashes.contains(hash)) {
+                    existing.add(hash);
+                } else if (current.mightContain(hash) || previous.mightContain(hash)) {
+                    candidates.add(hash);
+                }
+            }
+        }
+        recentHits.increment(existing.size());
+        probableHits.increment(candidates.size());
+        definitelyNew.increment(hashes.size() - existing.size() - candidates.size());
+
+        if (!candidates.isEmpty() && databaseLookup != null) {
+            List<String> stored = databaseLookup.apply(candidates);
+            confirmedHits.increment(stored.size());
+            falsePositives.increment(candidates.size() - stored.size());
+            existing.addAll(stored);
+        }
+        return existing;
+    }
+
+    // Remember hashes that have just been stored. Inside a database transaction this is deferred until the commit,
+    // so that a rollback never leaves hashes in the filter that are not actually stored.
+    public void record(Collection<String> storedHashes) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(storedHashes);
+                }
+            });
+        } else {
+            add(storedHashes);
+        }
+    }
+
+    private void add(Collection<String> storedHashes) {
+        synchronized (recentHashes) {
+            for (String hash : storedHashes) {
+                if (currentInsertions >= expectedInsertions) {
+                    previous = current;
+                    current = new BloomFilter(expectedInsertions, falsePositiveRate);
+                    currentInsertions = 0;
+                }
+                current.put(hash);
+                currentInsertions++;
+                recentHashes.add(hash);
+            }
+        }
+    }
+
+    // Load the most recently stored hashes so that a restart does not start with an empty filter
+    private void warmUp() {
+        try {
+            List<String> latest = transactionRepository.findLatestTransactionHashes(recentSize);
+            // The query returns the newest hash first; record oldest first so the newest stay in the recent set
+            Collections.reverse(latest);
+            record(latest);
+            log.info("Dedup filter warmed up: hashes={}", latest.size());
+        } catch (Exception e) {
+            log.warn("Error warming up dedup filter", e);
+        }
+    }
+
+    private Counter counter(String result, String description) {
+        return Counter.builder("sync.dedup.lookups")
+                .tag("result", result)
+                .description(description)
+                .register(meterRegistry);
+    }
+}
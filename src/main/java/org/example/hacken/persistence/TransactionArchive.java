@@ -0,0 +1,584 @@
+package org.example.hacken.persistence;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.example.hacken.model.HexBytesConverter;
+import org.example.hacken.model.ProcessedBlock;
+import org.example.hacken.model.TransactionEntity;
+import org.example.hacken.repository.ProcessedBlockRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.function.Consumer;
+
+// Cold storage tier of the transactions table. Partitions lying entirely below the last processed block minus
+// archive.older-than-blocks are copied into immutable ArchiveSegment files and then dropped from the database.
+// Everything below the archive boundary (archivedBelow, kept in the MANIFEST file of the archive directory) is served
+// from the segments, everything at or above it from the database, so the two tiers never overlap. The query methods
+// take inclusive block ranges, are meant to be called with the part of a request below the boundary, and skip
+// segments whose block range, value range or Bloom filters rule out a match.
+@Component
+public class TransactionArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionArchive.class);
+
+    private static final String MANIFEST = "MANIFEST";
+    private static final String ARCHIVED_BELOW = "archivedBelow";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    // Rows fetched per round trip when reading a partition
+    private static final int FETCH_SIZE = 5000;
+
+    // Matches any row in a RowFilter
+    private static final int ANY = -2;
+
+    private static final Comparator<Hit> HASH_ORDER = (a, b) -> Arrays.compareUnsigned(a.hash(), b.hash());
+    private static final Comparator<Hit> VALUE_ORDER = Comparator.comparing(Hit::value).thenComparing(HASH_ORDER);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TransactionPartitionManager partitionManager;
+
+    @Autowired
+    private ProcessedBlockRepository processedBlockRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Whether the archive is used at all
+    @Value("${archive.enabled:false}")
+    private boolean enabled;
+
+    // Directory of the segment files and the manifest
+    @Value("${archive.path:archive}")
+    private String path;
+
+    // Whether this instance archives old partitions on a schedule; instances sharing the directory only reload it,
+    // and check the manifest before every query
+    @Value("${archive.scheduled:true}")
+    private boolean scheduled;
+
+    // Partitions are archived once they lie entirely this many blocks below the last processed block
+    @Value("${archive.older-than-blocks:1000000}")
+    private long olderThanBlocks;
+
+    // Number of blocks per segment file; a segment is built in memory at about 60 bytes per transaction
+    @Value("${archive.segment-blocks:10000}")
+    private long segmentBlocks;
+
+    // Upper bound of the memory used by decoded segment bodies
+    @Value("${archive.cache.max-bytes:268435456}")
+    private long cacheMaxBytes;
+
+    private Path directory;
+
+    // Boundary and segments are replaced together, so readers always see a consistent pair
+    private volatile State state = new State(0, List.of());
+
+    // Manifest file the current state was loaded from, compared on every query by instances that do not archive
+    private volatile ManifestVersion loadedManifest;
+
+    // Decoded segment bodies, keyed by segment instance
+    private Cache<ArchiveSegment, ArchiveSegment.Columns> decoded;
+
+    // A segment file as listed by the admin endpoint; blocks [fromBlock, toBlock)
+    public record Segment(String file, long fromBlock, long toBlock, int rows, long sizeBytes) {
+    }
+
+    // Segments in block order and the boundary below which they hold every transaction
+    private record State(long archivedBelow, List<ArchiveSegment> segments) {
+    }
+
+    // Identifies a version of the manifest; it is replaced by a rename, so the file key changes with every write even
+    // when the modification time has a coarse resolution
+    private record ManifestVersion(FileTime modified, Object fileKey) {
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        directory = Path.of(path);
+        Files.createDirectories(directory);
+        decoded = Caffeine.newBuilder()
+                .maximumWeight(cacheMaxBytes)
+                .weigher((ArchiveSegment segment, ArchiveSegment.Columns columns) -> columns.weight())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, decoded, "archive-segments");
+        Gauge.builder("archive.segments", this, archive -> archive.state.segments().size())
+                .description("Segment files of the transaction archive")
+                .register(meterRegistry);
+        Gauge.builder("archive.size", this,
+                        archive -> archive.state.segments().stream().mapToLong(ArchiveSegment::sizeBytes).sum())
+                .description("Size of the segment files of the transaction archive")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("archive.archived.below", this, archive -> archive.state.archivedBelow())
+                .description("Block below which transactions are served from the archive")
+                .register(meterRegistry);
+        reload(true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Block below which transactions are read from the archive instead of the database; 0 while nothing is archived
+    public long archivedBelow() {
+        return currentState().archivedBelow();
+    }
+
+    // The segment files in block order
+    public List<Segment> segments() {
+        return currentState().segments().stream()
+                .map(segment -> new Segment(segment.file().getFileName().toString(), segment.fromBlock(),
+                        segment.toBlock(), segment.rows(), segment.sizeBytes()))
+                .toList();
+    }
+
+    // Archive old partitions, or pick up the segments written by the archiving instance
+    @Scheduled(fixedDelayString = "${archive.interval-ms:3600000}",
+            initialDelayString = "${archive.interval-ms:3600000}")
+    public void runScheduled() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            if (scheduled) {
+                archiveOldPartitions();
+            } else {
+                reload(false);
+            }
+        } catch (Exception e) {
+            log.error("Error archiving transactions partitions", e);
+        }
+    }
+
+    // Archive every partition that is old enough, oldest first, and return the archived partitions
+    public synchronized List<TransactionPartitionManager.Partition> archiveOldPartitions() throws IOException {
+        if (!enabled) {
+            throw new IllegalStateException("The transaction archive is disabled");
+        }
+        BigInteger checkpoint = processedBlockRepository.findById(1).map(ProcessedBlock::getBlockNumber).orElse(null);
+        if (checkpoint == null) {
+            return List.of();
+        }
+        long threshold = checkpoint.longValueExact() - olderThanBlocks;
+        List<TransactionPartitionManager.Partition> archived = new ArrayList<>();
+        for (TransactionPartitionManager.Partition partition : partitionManager.partitions()) {
+            if (partition.toBlock() > threshold) {
+                break;
+            }
+            long archivedBelow = state.archivedBelow();
+            if (partition.toBlock() <= archivedBelow) {
+                // Already archived by a run that stopped before dropping it
+                log.info("Dropping already archived transactions partition: name={}", partition.name());
+                partitionManager.drop(partition);
+                continue;
+            }
+            if (partition.fromBlock() < archivedBelow) {
+                throw new IllegalStateException("Partition " + partition.name() + " straddles the archive boundary "
+                        + archivedBelow);
+            }
+            archive(partition);
+            archived.add(partition);
+        }
+        return archived;
+    }
+
+    // Copy a partition into segments, move the boundary past it and drop it. A failure before the manifest is
+    // written leaves the boundary and the partition untouched; the partial segments are deleted.
+    private void archive(TransactionPartitionManager.Partition partition) throws IOException {
+        long started = System.nanoTime();
+        List<ArchiveSegment> written = new ArrayList<>();
+        try {
+            // Segment boundaries are aligned to the segment size, like the partition boundaries
+            long from = partition.fromBlock();
+            while (from < partition.toBlock()) {
+                long to = Math.min(partition.toBlock(),
+                        Math.floorDiv(from, segmentBlocks) * segmentBlocks + segmentBlocks);
+                ArchiveSegment.Writer writer = readRows(partition.name(), from, to);
+                if (writer.rows() > 0) {
+                    written.add(writer.finish(directory.resolve(segmentName(from, to))));
+                }
+                from = to;
+            }
+            writeManifest(partition.toBlock());
+        } catch (IOException | RuntimeException e) {
+            for (ArchiveSegment segment : written) {
+                Files.deleteIfExists(segment.file());
+            }
+            throw e;
+        }
+        List<ArchiveSegment> segments = new ArrayList<>(state.segments());
+        segments.addAll(written);
+        state = new State(partition.toBlock(), List.copyOf(segments));
+
+        // Queries now read these blocks from the archive, so the partition can go
+        partitionManager.drop(partition);
+        log.info("Transactions partition archived: name={} segments={} rows={} bytes={} durationMs={}",
+                partition.name(), written.size(), written.stream().mapToInt(ArchiveSegment::rows).sum(),
+                written.stream().mapToLong(ArchiveSegment::sizeBytes).sum(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // Stream the rows of blocks [fromBlock, toBlock) of one partition into a segment writer, in hash order and
+    // FETCH_SIZE rows per round trip, so only the encoded columns of the segment are held in memory
+    private ArchiveSegment.Writer readRows(String partition, long fromBlock, long toBlock) {
+        ArchiveSegment.Writer writer = new ArchiveSegment.Writer(fromBlock, toBlock);
+        // The driver only honours the fetch size inside a transaction
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("SELECT transaction_hash, block_number,"
+                    + " block_timestamp, from_address, to_address, tx_value, gas_used, status FROM " + partition
+                    + " WHERE block_number >= ? AND block_number < ? ORDER BY transaction_hash, block_number DESC");
+            statement.setFetchSize(FETCH_SIZE);
+            statement.setLong(1, fromBlock);
+            statement.setLong(2, toBlock);
+            return statement;
+        }, (RowCallbackHandler) row -> addRow(writer, row)));
+        return writer;
+    }
+
+    private static void addRow(ArchiveSegment.Writer writer, ResultSet row) throws SQLException {
+        OffsetDateTime timestamp = row.getObject(3, OffsetDateTime.class);
+        long gasUsed = row.getLong(7);
+        Long gas = row.wasNull() ? null : gasUsed;
+        int status = row.getInt(8);
+        writer.add(row.getBytes(1), row.getLong(2), timestamp != null ? timestamp.toInstant() : null,
+                row.getBytes(4), row.getBytes(5), row.getBigDecimal(6).toBigIntegerExact(), gas,
+                row.wasNull() ? null : status);
+    }
+
+    // The boundary and segments to query. An instance that does not archive checks the manifest first: the
+    // archiving instance drops a partition right after moving the boundary past it, so waiting for the next
+    // scheduled reload would make its rows disappear from queries until then.
+    private State currentState() {
+        if (enabled && !scheduled) {
+            try {
+                if (!Objects.equals(manifestVersion(), loadedManifest)) {
+                    reload(false);
+                }
+            } catch (IOException e) {
+                log.warn("Error reloading the transaction archive: path={}", directory, e);
+            }
+        }
+        return state;
+    }
+
+    // Read the manifest and the segment files. On startup, files of an interrupted run (temporary files and segments
+    // beyond the boundary) are deleted; a reload only picks up what another instance has archived.
+    private synchronized void reload(boolean startup) throws IOException {
+        ManifestVersion version = manifestVersion();
+        long archivedBelow = readManifest();
+        loadedManifest = version;
+        if (!startup && archivedBelow == state.archivedBelow()) {
+            return;
+        }
+        Map<Path, ArchiveSegment> known = new HashMap<>();
+        state.segments().forEach(segment -> known.put(segment.file(), segment));
+        List<ArchiveSegment> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX + "*")) {
+            for (Path file : files) {
+                if (!file.getFileName().toString().endsWith(SEGMENT_SUFFIX)) {
+                    if (startup) {
+                        Files.deleteIfExists(file);
+                    }
+                    continue;
+                }
+                ArchiveSegment segment = known.containsKey(file) ? known.get(file) : ArchiveSegment.open(file);
+                if (segment.toBlock() <= archivedBelow) {
+                    segments.add(segment);
+                } else if (startup) {
+                    log.warn("Deleting archive segment beyond the archive boundary: file={}", file);
+                    Files.delete(file);
+                }
+            }
+        }
+        segments.sort(Comparator.comparingLong(ArchiveSegment::fromBlock));
+        state = new State(archivedBelow, List.copyOf(segments));
+        log.info("Transaction archive loaded: path={} archivedBelow={} segments={}", directory.toAbsolutePath(),
+                archivedBelow, segments.size());
+    }
+
+    // The version of the manifest file, or null while there is none
+    private ManifestVersion manifestVersion() throws IOException {
+        try {
+            BasicFileAttributes attributes =
+                    Files.readAttributes(directory.resolve(MANIFEST), BasicFileAttributes.class);
+            return new ManifestVersion(attributes.lastModifiedTime(), attributes.fileKey());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private long readManifest() throws IOException {
+        Properties manifest = new Properties();
+        try (InputStream in = Files.newInputStream(directory.resolve(MANIFEST))) {
+            manifest.load(in);
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+        return Long.parseLong(manifest.getProperty(ARCHIVED_BELOW, "0"));
+    }
+
+    // Replace the manifest atomically; the segments it covers have already been synced
+    private void writeManifest(long archivedBelow) throws IOException {
+        Properties manifest = new Properties();
+        manifest.setProperty(ARCHIVED_BELOW, Long.toString(archivedBelow));
+        Path temporary = directory.resolve(MANIFEST + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temporary)) {
+            manifest.store(out, "Transactions below archivedBelow are stored in the segment files");
+        }
+        Files.move(temporary, directory.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String segmentName(long fromBlock, long toBlock) {
+        return String.format("transactions-%012d-%012d%s", fromBlock, toBlock, SEGMENT_SUFFIX);
+    }
+
+    // Look up a transaction by hash; newer segments first, like the database lookup prefers the latest block
+    public Optional<TransactionEntity> findByHash(String hash) {
+        byte[] key = hashBytes(hash);
+        if (key == null) {
+            return Optional.empty();
+        }
+        List<ArchiveSegment> segments = currentState().segments();
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            ArchiveSegment segment = segments.get(i);
+            if (!segment.mightContainHash(hash.toLowerCase())) {
+                continue;
+            }
+            int row = segment.findRow(key);
+            if (row >= 0) {
+                return Optional.of(columns(segment).entity(row));
+            }
+        }
+        return Optional.empty();
+    }
+
+    // Look up many hashes; returns the transactions found, each hash at most once
+    public List<TransactionEntity> findByHashes(Collection<String> hashes) {
+        List<TransactionEntity> found = new ArrayList<>();
+        if (currentState().segments().isEmpty()) {
+            return found;
+        }
+        for (String hash : hashes) {
+            findByHash(hash).ifPresent(found::add);
+        }
+        return found;
+    }
+
+    // Up to `limit` transactions of blocks [fromBlock, toBlock] with a hash greater than `after`, ordered by hash;
+    // null address filters match everything
+    public List<TransactionEntity> findPage(String fromAddress, String toAddress, long fromBlock, long toBlock,
+                                            String after, int limit) {
+        byte[] afterBytes = HexBytesConverter.toBytes(after);
+        // The `limit` smallest hashes seen so far, largest on top
+        PriorityQueue<Hit> best = new PriorityQueue<>(HASH_ORDER.reversed());
+        for (ArchiveSegment segment : candidates(fromAddress, toAddress, fromBlock, toBlock)) {
+            // Unfiltered pages over whole segments only need the uncompressed hash section
+            boolean filtered = fromAddress != null || toAddress != null || !segment.withinBlocks(fromBlock, toBlock);
+            ArchiveSegment.Columns columns = filtered ? columns(segment) : null;
+            RowFilter filter = filtered ? RowFilter.of(columns, fromAddress, toAddress, fromBlock, toBlock) : null;
+            if (filter != null && filter.empty()) {
+                continue;
+            }
+            for (int row = segment.firstRowAfter(afterBytes); row < segment.rows(); row++) {
+                if (filter != null && !filter.matches(columns, row)) {
+                    continue;
+                }
+                byte[] hash = segment.hash(row);
+                // Hashes ascend within a segment, so nothing further can make it into the page
+                if (best.size() == limit && Arrays.compareUnsigned(hash, best.peek().hash()) >= 0) {
+                    break;
+                }
+                best.add(new Hit(segment, row, hash, null));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        return materialize(best, HASH_ORDER);
+    }
+
+    // Up to `limit` transactions of blocks [fromBlock, toBlock] with a value in [minValue, maxValue] after the cursor
+    // (value, hash), ordered by value and hash, descending if requested
+    public List<TransactionEntity> findValuePage(BigInteger minValue, BigInteger maxValue, long fromBlock, long toBlock,
+                                                 BigInteger cursorValue, String cursorHash, boolean descending,
+                                                 int limit) {
+        byte[] cursorBytes = HexBytesConverter.toBytes(cursorHash);
+        Comparator<Hit> order = descending ? VALUE_ORDER.reversed() : VALUE_ORDER;
+        PriorityQueue<Hit> best = new PriorityQueue<>(order.reversed());
+        for (ArchiveSegment segment : candidates(null, null, fromBlock, toBlock)) {
+            if (!segment.overlapsValues(minValue, maxValue)) {
+                continue;
+            }
+            ArchiveSegment.Columns columns = columns(segment);
+            RowFilter filter = RowFilter.of(columns, null, null, fromBlock, toBlock);
+            // Walk the segment's value order from the cursor: the rows come in page order, so the walk ends at the
+            // value bound or as soon as a row cannot make it into the page
+            int start;
+            int end;
+            int step;
+            if (descending) {
+                start = Math.min(columns.valuePosition(maxValue, null, true),
+                        columns.valuePosition(cursorValue, cursorBytes, false)) - 1;
+                end = -1;
+                step = -1;
+            } else {
+                start = Math.max(columns.valuePosition(minValue, new byte[0], false),
+                        columns.valuePosition(cursorValue, cursorBytes, true));
+                end = segment.rows();
+                step = 1;
+            }
+            for (int position = start; position != end; position += step) {
+                int row = columns.rowInValueOrder(position);
+                BigInteger value = columns.value(row);
+                if (value.compareTo(minValue) < 0 || value.compareTo(maxValue) > 0) {
+                    break;
+                }
+                if (!filter.matches(columns, row)) {
+                    continue;
+                }
+                Hit hit = new Hit(segment, row, segment.hash(row), value);
+                if (best.size() == limit && order.compare(hit, best.peek()) >= 0) {
+                    break;
+                }
+                best.add(hit);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+        }
+        return materialize(best, order);
+    }
+
+    // Pass every transaction of blocks [fromBlock, toBlock] matching the address filters to the action, segment by
+    // segment
+    public void forEach(String fromAddress, String toAddress, long fromBlock, long toBlock,
+                        Consumer<TransactionEntity> action) {
+        for (ArchiveSegment segment : candidates(fromAddress, toAddress, fromBlock, toBlock)) {
+            ArchiveSegment.Columns columns = columns(segment);
+            RowFilter filter = RowFilter.of(columns, fromAddress, toAddress, fromBlock, toBlock);
+            if (filter.empty()) {
+                continue;
+            }
+            for (int row = 0; row < segment.rows(); row++) {
+                if (filter.matches(columns, row)) {
+                    action.accept(columns.entity(row));
+                }
+            }
+        }
+    }
+
+    // Segments that may hold matching rows, judged by their header and address filters only
+    private List<ArchiveSegment> candidates(String fromAddress, String toAddress, long fromBlock, long toBlock) {
+        List<ArchiveSegment> candidates = new ArrayList<>();
+        for (ArchiveSegment segment : currentState().segments()) {
+            if (segment.overlapsBlocks(fromBlock, toBlock)
+                    && (fromAddress == null || segment.mightContainAddress(fromAddress.toLowerCase()))
+                    && (toAddress == null || segment.mightContainAddress(toAddress.toLowerCase()))) {
+                candidates.add(segment);
+            }
+        }
+        return candidates;
+    }
+
+    private ArchiveSegment.Columns columns(ArchiveSegment segment) {
+        return decoded.get(segment, key -> {
+            try {
+                return key.decode();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private List<TransactionEntity> materialize(PriorityQueue<Hit> hits, Comparator<Hit> order) {
+        List<Hit> sorted = new ArrayList<>(hits);
+        sorted.sort(order);
+        return sorted.stream().map(hit -> columns(hit.segment()).entity(hit.row())).toList();
+    }
+
+    // The 32 bytes of a hash, or null if it is not one
+    private static byte[] hashBytes(String hash) {
+        try {
+            byte[] bytes = HexBytesConverter.toBytes(hash);
+            return bytes.length == 32 ? bytes : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // A candidate row of a page
+    private record Hit(ArchiveSegment segment, int row, byte[] hash, BigInteger value) {
+    }
+
+    // Row predicate on the decoded columns: block range and address dictionary indexes (ANY matches every row)
+    private record RowFilter(long fromBlock, long toBlock, int fromIndex, int toIndex) {
+
+        static RowFilter of(ArchiveSegment.Columns columns, String fromAddress, String toAddress, long fromBlock,
+                            long toBlock) {
+            return new RowFilter(fromBlock, toBlock,
+                    fromAddress != null ? columns.addressIndex(fromAddress) : ANY,
+                    toAddress != null ? columns.addressIndex(toAddress) : ANY);
+        }
+
+        // Whether an address filter names an address the segment does not have (a Bloom filter false positive)
+        boolean empty() {
+            return fromIndex == -1 || toIndex == -1;
+        }
+
+        boolean matches(ArchiveSegment.Columns columns, int row) {
+            long block = columns.blockNumber(row);
+            return block >= fromBlock && block <= toBlock
+                    && (fromIndex == ANY || columns.fromIndex(row) == fromIndex)
+                    && (toIndex == ANY || columns.toIndex(row) == toIndex);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.example.hacken.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Maintains the block-range partitions of the transactions table. Writers call ensureCovered before they open
+// their transaction, so that partitions are created in a short transaction of their own rather than while rows
+// of the parent table are locked. Old partitions can be detached, which is instant compared to deleting their rows;
+// the detached tables keep the data until they are dropped. TransactionArchive moves old partitions into archive
+// segments and drops them.
+@Component
+public class TransactionPartitionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionPartitionManager.class);
+
+    private static final Pattern RANGE_BOUND = Pattern.compile("FOR VALUES FROM \\('?(-?\\d+)'?\\) TO \\('?(-?\\d+)'?\\)");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Whether partitions are managed at all (the table must have been created by schema.sql)
+    @Value("${partitions.transactions.enabled:true}")
+    private boolean enabled;
+
+    // Number of blocks per partition
+    @Value("${partitions.transactions.size-blocks:100000}")
+    private long sizeBlocks;
+
+    // Partitions are created this many blocks before they are needed, so that the ingestion rarely waits for one
+    @Value("${partitions.transactions.create-ahead-blocks:10000}")
+    private long createAheadBlocks;
+
+    // Known partitions: lower bound (inclusive) -> upper bound (exclusive); null until loaded
+    private TreeMap<Long, Long> ranges;
+
+    // False if partitioning is disabled or the table turned out not to be partitioned
+    private boolean active;
+
+    // A partition of the transactions table covering [fromBlock, toBlock)
+    public record Partition(String name, long fromBlock, long toBlock) {
+    }
+
+    // Make sure that rows of blocks [fromBlock, toBlock] can be inserted; must not be called inside a transaction
+    public synchronized void ensureCovered(long fromBlock, long toBlock) {
+        if (!load()) {
+            return;
+        }
+        long block = fromBlock;
+        long last = toBlock + createAheadBlocks;
+        while (block <= last) {
+            Map.Entry<Long, Long> containing = ranges.floorEntry(block);
+            if (containing != null && block < containing.getValue()) {
+                block = containing.getValue();
+                continue;
+            }
+            // Aligned to the partition size, but never overlapping a partition created with another size
+            long start = Math.floorDiv(block, sizeBlocks) * sizeBlocks;
+            long end = start + sizeBlocks;
+            if (containing != null) {
+                start = Math.max(start, containing.getValue());
+            }
+            Long next = ranges.higherKey(block);
+            if (next != null) {
+                end = Math.min(end, next);
+            }
+            String name = "transactions_b" + start;
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name
+                    + " PARTITION OF transactions FOR VALUES FROM (" + start + ") TO (" + end + ")");
+            ranges.put(start, end);
+            log.info("Transactions partition created: name={} fromBlock={} toBlock={}", name, start, end);
+            block = end;
+        }
+    }
+
+    // The attached partitions in block order
+    public synchronized List<Partition> partitions() {
+        if (!load()) {
+            return List.of();
+        }
+        return readPartitions();
+    }
+
+    // Detach every partition that lies entirely below the given block and return the detached tables
+    public synchronized List<Partition> detachBefore(long blockNumber) {
+        if (!load()) {
+            throw new IllegalStateException("The transactions table is not partitioned");
+        }
+        List<Partition> detached = new ArrayList<>();
+        for (Partition partition : readPartitions()) {
+            if (partition.toBlock() > blockNumber) {
+                continue;
+            }
+            detach(partition);
+            detached.add(partition);
+        }
+        return detached;
+    }
+
+    // Detach a partition and drop its table, e.g. once its rows have been archived
+    public synchronized void drop(Partition partition) {
+        if (!load()) {
+            throw new IllegalStateException("The transactions table is not partitioned");
+        }
+        detach(partition);
+        jdbcTemplate.execute("DROP TABLE " + partition.name());
+        log.info("Transactions partition dropped: name={}", partition.name());
+    }
+
+    private void detach(Partition partition) {
+        // CONCURRENTLY only waits for running queries instead of blocking the table; it cannot run inside a
+        // transaction block, which is fine because this runs in auto-commit mode
+        jdbcTemplate.execute("ALTER TABLE transactions DETACH PARTITION " + partition.name() + " CONCURRENTLY");
+        ranges.remove(partition.fromBlock());
+        log.info("Transactions partition detached: name={} fromBlock={} toBlock={}", partition.name(),
+                partition.fromBlock(), partition.toBlock());
+    }
+
+    // Load the existing partitions on first use; returns whether partitions are managed
+    private boolean load() {
+        if (ranges != null) {
+            return active;
+        }
+        ranges = new TreeMap<>();
+        if (enabled) {
+            String kind = jdbcTemplate.queryForObject(
+                    "SELECT c.relkind FROM pg_class c WHERE c.oid = to_regclass('transactions')", String.class);
+            active = "p".equals(kind);
+            if (active) {
+                readPartitions().forEach(partition -> ranges.put(partition.fromBlock(), partition.toBlock()));
+                log.info("Transactions partitions loaded: count={}", ranges.size());
+            } else {
+                log.warn("Transactions table is not partitioned; partition management is disabled");
+            }
+        }
+        return active;
+    }
+
+    private List<Partition> readPartitions() {
+        List<Partition> partitions = new ArrayList<>();
+        jdbcTemplate.query("SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) FROM pg_inherits i"
+                + " JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = 'transactions'::regclass", row -> {
+            Matcher bound = RANGE_BOUND.matcher(row.getString(2));
+            if (bound.matches()) {
+                partitions.add(new Partition(row.getString(1), Long.parseLong(bound.group(1)),
+                        Long.parseLong(bound.group(2))));
+            } else {
+                log.warn("Ignoring transactions partition with unexpected bounds: name={} bounds={}",
+                        row.getString(1), row.getString(2));
+            }
+        });
+        partitions.sort((a, b) -> Long.compare(a.fromBlock(), b.fromBlock()));
+        return partitions;
+    }
+}
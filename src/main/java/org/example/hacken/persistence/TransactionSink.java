@@ -0,0 +1,13 @@
+package org.example.hacken.persistence;
+
+import org.example.hacken.model.TransactionEntity;
+
+import java.util.List;
+
+// Writes ingested transactions to storage. Implementations skip transactions that are already stored
+// and report back which ones were actually inserted.
+public interface TransactionSink {
+
+    // Store the given entities and return the subset that was newly inserted
+    List<TransactionEntity> write(List<TransactionEntity> entities);
+}
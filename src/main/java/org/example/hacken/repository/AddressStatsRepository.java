@@ -0,0 +1,7 @@
+package org.example.hacken.repository;
+
+import org.example.hacken.model.AddressStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface AddressStatsRepository extends JpaRepository<AddressStats, String> {
+}
@@ -0,0 +1,39 @@
+package org.example.hacken.repository;
+
+import org.example.hacken.model.EventLog;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface EventLogRepository extends JpaRepository<EventLog, EventLog.Key> {
+
+    // Keyset pages: logs after the cursor (afterBlock, afterIndex) within blocks [fromBlock, toBlock], ordered by
+    // block number and log index, sized by the pageable. The separate lower bound on the block number lets the
+    // index scan start at the cursor instead of filtering everything before it.
+
+    @Query("SELECT l FROM EventLog l WHERE l.blockNumber BETWEEN :fromBlock AND :toBlock "
+            + "AND l.blockNumber >= :afterBlock AND (l.blockNumber > :afterBlock OR l.logIndex > :afterIndex) "
+            + "ORDER BY l.blockNumber, l.logIndex")
+    List<EventLog> findPage(long fromBlock, long toBlock, long afterBlock, int afterIndex, Pageable pageable);
+
+    @Query("SELECT l FROM EventLog l WHERE l.address = :address AND l.blockNumber BETWEEN :fromBlock AND :toBlock "
+            + "AND l.blockNumber >= :afterBlock AND (l.blockNumber > :afterBlock OR l.logIndex > :afterIndex) "
+            + "ORDER BY l.blockNumber, l.logIndex")
+    List<EventLog> findPageByAddress(String address, long fromBlock, long toBlock, long afterBlock, int afterIndex,
+                                     Pageable pageable);
+
+    @Query("SELECT l FROM EventLog l WHERE l.topic0 = :topic0 AND l.blockNumber BETWEEN :fromBlock AND :toBlock "
+            + "AND l.blockNumber >= :afterBlock AND (l.blockNumber > :afterBlock OR l.logIndex > :afterIndex) "
+            + "ORDER BY l.blockNumber, l.logIndex")
+    List<EventLog> findPageByTopic0(String topic0, long fromBlock, long toBlock, long afterBlock, int afterIndex,
+                                    Pageable pageable);
+
+    @Query("SELECT l FROM EventLog l WHERE l.address = :address AND l.topic0 = :topic0 "
+            + "AND l.blockNumber BETWEEN :fromBlock AND :toBlock "
+            + "AND l.blockNumber >= :afterBlock AND (l.blockNumber > :afterBlock OR l.logIndex > :afterIndex) "
+            + "ORDER BY l.blockNumber, l.logIndex")
+    List<EventLog> findPageByAddressAndTopic0(String address, String topic0, long fromBlock, long toBlock,
+                                              long afterBlock, int afterIndex, Pageable pageable);
+}
@@ -0,0 +1,24 @@
+package org.example.hacken.repository;
+
+import org.example.hacken.model.FailedBlock;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface FailedBlockRepository extends JpaRepository<FailedBlock, Long> {
+
+    // Record a block that could not be committed, or count another failed attempt for it
+    @Modifying
+    @Query(value = "INSERT INTO failed_blocks (block_number, attempts, failed_at)"
+            + " VALUES (:blockNumber, 1, now()) ON CONFLICT (block_number)"
+            + " DO UPDATE SET attempts = failed_blocks.attempts + 1, failed_at = EXCLUDED.failed_at",
+            nativeQuery = true)
+    void record(long blockNumber);
+
+    // The oldest blocks still to be written
+    @Query("SELECT b.blockNumber FROM FailedBlock b ORDER BY b.blockNumber")
+    List<Long> findBlockNumbers(Pageable pageable);
+}
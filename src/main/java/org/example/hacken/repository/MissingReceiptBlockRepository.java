@@ -0,0 +1,24 @@
+package org.example.hacken.repository;
+
+import org.example.hacken.model.MissingReceiptBlock;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface MissingReceiptBlockRepository extends JpaRepository<MissingReceiptBlock, Long> {
+
+    // Record a block written without receipts, or count another failed attempt for it
+    @Modifying
+    @Query(value = "INSERT INTO missing_receipt_blocks (block_number, attempts, failed_at)"
+            + " VALUES (:blockNumber, 1, now()) ON CONFLICT (block_number)"
+            + " DO UPDATE SET attempts = missing_receipt_blocks.attempts + 1, failed_at = EXCLUDED.failed_at",
+            nativeQuery = true)
+    void record(long blockNumber);
+
+    // The oldest blocks still missing receipts
+    @Query("SELECT b.blockNumber FROM MissingReceiptBlock b ORDER BY b.blockNumber")
+    List<Long> findBlockNumbers(Pageable pageable);
+}
@@ -2,6 +2,18 @@ package org.example.hacken.repository;
 
 import org.example.hacken.model.ProcessedBlock;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.math.BigInteger;
 
 public interface ProcessedBlockRepository extends JpaRepository<ProcessedBlock, Integer> {
+
+    // Move the checkpoint to `blockNumber` unless it is already further, e.g. after a dump import or when the backfill
+    // of an older range commits after a newer one
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "INSERT INTO processed_block (id, block_number) VALUES (1, :blockNumber) ON CONFLICT (id)"
+            + " DO UPDATE SET block_number = GREATEST(processed_block.block_number, EXCLUDED.block_number)",
+            nativeQuery = true)
+    void advance(BigInteger blockNumber);
 }
@@ -0,0 +1,7 @@
+package org.example.hacken.repository;
+
+import org.example.hacken.model.TransactionBlock;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface TransactionBlockRepository extends JpaRepository<TransactionBlock, String> {
+}
@@ -1,10 +1,18 @@
 package org.example.hacken.repository;
 
+import jakarta.persistence.QueryHint;
 import org.example.hacken.model.TransactionEntity;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface TransactionRepository extends JpaRepository<TransactionEntity, String> {
 
@@ -14,6 +22,89 @@ public interface TransactionRepository extends JpaRepository<TransactionEntity,
 
     List<TransactionEntity> findByFromAddressAndToAddress(String fromAddress, String toAddress);
 
-    @Query("SELECT t.transactionHash FROM TransactionEntity t WHERE t.transactionHash IN :hashes")
+    // By-hash reads take the block of the hash from transaction_blocks, which holds one row per hash, so that only
+    // the partition of that block is read instead of the primary key index of every partition
+
+    @Query("SELECT t FROM TransactionBlock b JOIN TransactionEntity t ON t.transactionHash = b.transactionHash "
+            + "AND t.blockNumber = b.blockNumber WHERE b.transactionHash = :transactionHash")
+    Optional<TransactionEntity> findByTransactionHash(String transactionHash);
+
+    // Set-based lookup of many hashes in one query
+    @Query("SELECT t FROM TransactionBlock b JOIN TransactionEntity t ON t.transactionHash = b.transactionHash "
+            + "AND t.blockNumber = b.blockNumber WHERE b.transactionHash IN :transactionHashes")
+    List<TransactionEntity> findByTransactionHashIn(Collection<String> transactionHashes);
+
+    // All transactions of blocks [fromBlock, toBlock] in block order, read by the change feed in leased mode
+    List<TransactionEntity> findByBlockNumberBetweenOrderByBlockNumberAscTransactionHashAsc(long fromBlock,
+                                                                                         long toBlock);
+
+    @Query("SELECT b.transactionHash FROM TransactionBlock b WHERE b.transactionHash IN :hashes")
     List<String> findExistingTransactionHashes(List<String> hashes);
+
+    // Remove the copy of a transaction migrated without its block, once it is stored under its real block
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM TransactionEntity t WHERE t.transactionHash = :transactionHash AND t.blockNumber = 0")
+    int deleteMigrated(String transactionHash);
+
+    // Fill in the receipt data of a transaction stored without it; values already stored are kept
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE TransactionEntity t SET t.gasUsed = COALESCE(t.gasUsed, :gasUsed), "
+            + "t.status = COALESCE(t.status, :status) WHERE t.transactionHash = :transactionHash "
+            + "AND t.blockNumber = :blockNumber AND (t.gasUsed IS NULL OR t.status IS NULL)")
+    int completeReceipt(String transactionHash, long blockNumber, Long gasUsed, Integer status);
+
+    // Hashes of the newest blocks, newest first; reads the block number index of the latest partitions only
+    @Query(value = "SELECT '0x' || encode(transaction_hash, 'hex') FROM transactions"
+            + " ORDER BY block_number DESC LIMIT :limit", nativeQuery = true)
+    List<String> findLatestTransactionHashes(int limit);
+
+    // Keyset pages: transactions with a hash greater than `after`, ordered by hash, sized by the pageable.
+    // Every query is bounded to blocks [fromBlock, toBlock] so that only the partitions of that range are read.
+
+    @Query("SELECT t FROM TransactionEntity t WHERE t.blockNumber BETWEEN :fromBlock AND :toBlock "
+            + "AND t.transactionHash > :after ORDER BY t.transactionHash")
+    List<TransactionEntity> findPage(long fromBlock, long toBlock, String after, Pageable pageable);
+
+    @Query("SELECT t FROM TransactionEntity t WHERE t.fromAddress = :fromAddress "
+            + "AND t.blockNumber BETWEEN :fromBlock AND :toBlock AND t.transactionHash > :after "
+            + "ORDER BY t.transactionHash")
+    List<TransactionEntity> findPageByFromAddress(String fromAddress, long fromBlock, long toBlock, String after,
+                                                  Pageable pageable);
+
+    @Query("SELECT t FROM TransactionEntity t WHERE t.toAddress = :toAddress "
+            + "AND t.blockNumber BETWEEN :fromBlock AND :toBlock AND t.transactionHash > :after "
+            + "ORDER BY t.transactionHash")
+    List<TransactionEntity> findPageByToAddress(String toAddress, long fromBlock, long toBlock, String after,
+                                                Pageable pageable);
+
+    @Query("SELECT t FROM TransactionEntity t WHERE t.fromAddress = :fromAddress AND t.toAddress = :toAddress "
+            + "AND t.blockNumber BETWEEN :fromBlock AND :toBlock AND t.transactionHash > :after "
+            + "ORDER BY t.transactionHash")
+    List<TransactionEntity> findPageByFromAddressAndToAddress(String fromAddress, String toAddress, long fromBlock,
+                                                              long toBlock, String after, Pageable pageable);
+
+    // Keyset pages over a wei value range, ordered by (value, hash) ascending or descending
+
+    @Query("SELECT t FROM TransactionEntity t WHERE t.value >= :minValue AND t.value <= :maxValue "
+            + "AND t.blockNumber BETWEEN :fromBlock AND :toBlock "
+            + "AND (t.value > :afterValue OR (t.value = :afterValue AND t.transactionHash > :afterHash)) "
+            + "ORDER BY t.value, t.transactionHash")
+    List<TransactionEntity> findValueRangePageAscending(String minValue, String maxValue, long fromBlock,
+                                                        long toBlock, String afterValue, String afterHash,
+                                                        Pageable pageable);
+
+    @Query("SELECT t FROM TransactionEntity t WHERE t.value >= :minValue AND t.value <= :maxValue "
+            + "AND t.blockNumber BETWEEN :fromBlock AND :toBlock "
+            + "AND (t.value < :beforeValue OR (t.value = :beforeValue AND t.transactionHash < :beforeHash)) "
+            + "ORDER BY t.value DESC, t.transactionHash DESC")
+    List<TransactionEntity> findValueRangePageDescending(String minValue, String maxValue, long fromBlock,
+                                                         long toBlock, String beforeValue, String beforeHash,
+                                                         Pageable pageable);
+
+    // Server-side cursor over all matching transactions; null address filters match everything.
+    // Must be consumed inside a transaction so that the fetch size is honoured.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT t FROM TransactionEntity t WHERE (:fromAddress IS NULL OR t.fromAddress = :fromAddress) "
+            + "AND (:toAddress IS NULL OR t.toAddress = :toAddress) AND t.blockNumber BETWEEN :fromBlock AND :toBlock")
+    Stream<TransactionEntity> streamByAddresses(String fromAddress, String toAddress, long fromBlock, long toBlock);
 }
@@ -0,0 +1,15 @@
+package org.example.hacken.rpc;
+
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.TransactionReceipt;
+
+import java.util.List;
+
+// Response of eth_getBlockReceipts, which Web3j has no wrapper for: the receipts of every transaction of a block,
+// or null if the node does not have the block yet
+public class EthBlockReceipts extends Response<List<TransactionReceipt>> {
+
+    public List<TransactionReceipt> getReceipts() {
+        return getResult();
+    }
+}
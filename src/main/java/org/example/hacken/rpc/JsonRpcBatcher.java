@@ -0,0 +1,223 @@
+package org.example.hacken.rpc;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.DefaultBlockParameterNumber;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthGetTransactionReceipt;
+import org.web3j.protocol.core.methods.response.EthTransaction;
+import org.web3j.utils.Numeric;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Collects individual JSON-RPC calls into batch requests. A batch is sent as soon as it reaches the maximum size
+// or when the flush interval after its first call has elapsed; the responses are then matched back to the callers
+// by request id. Web3j decodes the n-th response of a batch with the response type of the n-th request, so when a
+// server reorders a batch of mixed methods a response can arrive decoded as the wrong type; only that call fails.
+@Component
+public class JsonRpcBatcher {
+
+    // Upper bound for await(), also for futures that do not come from a batch (e.g. hedged or cached calls)
+    private static final long AWAIT_TIMEOUT_MS = 300_000;
+
+    // Inject the Web3j instance whose transport is used to send the batches
+    @Autowired
+    private Web3j web3j;
+
+    // Inject the transport, needed to build requests for methods Web3j has no wrapper for
+    @Autowired
+    private Web3jService web3jService;
+
+    // Maximum number of calls in a single batch request
+    @Value("${rpc.batch.max-size:50}")
+    private int maxBatchSize;
+
+    // Maximum time a call waits for other calls to join its batch
+    @Value("${rpc.batch.flush-interval-ms:5}")
+    private long flushIntervalMs;
+
+    // Time after which a queued call fails if its batch has not been answered
+    @Value("${rpc.batch.response-timeout-ms:60000}")
+    private long responseTimeoutMs;
+
+    // Calls waiting for the next batch (guarded by `this`)
+    private List<PendingCall<?>> pending = new ArrayList<>();
+
+    // Timer flush scheduled for the current batch, if any (guarded by `this`)
+    private ScheduledFuture<?> scheduledFlush;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rpc-batch-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Queue an eth_getBlockByNumber call
+    public CompletableFuture<EthBlock> getBlockByNumber(BigInteger blockNumber, boolean fullTransactionObjects) {
+        return enqueue(web3j.ethGetBlockByNumber(new DefaultBlockParameterNumber(blockNumber), fullTransactionObjects));
+    }
+
+    // Queue an eth_getTransactionByHash call
+    public CompletableFuture<EthTransaction> getTransactionByHash(String transactionHash) {
+        return enqueue(web3j.ethGetTransactionByHash(transactionHash));
+    }
+
+    // Queue an eth_getTransactionReceipt call
+    public CompletableFuture<EthGetTransactionReceipt> getTransactionReceipt(String transactionHash) {
+        return enqueue(web3j.ethGetTransactionReceipt(transactionHash));
+    }
+
+    // Queue an eth_getBlockReceipts call; nodes that do not implement it answer with a "method not found" error
+    public CompletableFuture<EthBlockReceipts> getBlockReceipts(BigInteger blockNumber) {
+        return enqueue(new Request<>("eth_getBlockReceipts", List.of(Numeric.encodeQuantity(blockNumber)),
+                web3jService, EthBlockReceipts.class));
+    }
+
+    // Queue any Web3j request; the returned future completes when the batch containing it has been answered
+    public <T extends Response<?>> CompletableFuture<T> enqueue(Request<?, T> request) {
+        // Callers wait without a timeout of their own, so a call that is never answered must not hang them
+        CompletableFuture<T> future = new CompletableFuture<T>().orTimeout(responseTimeoutMs, TimeUnit.MILLISECONDS);
+        List<PendingCall<?>> fullBatch = null;
+
+        synchronized (this) {
+            pending.add(new PendingCall<>(request, future));
+            if (pending.size() >= maxBatchSize) {
+                fullBatch = drainPending();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = scheduler.schedule(this::flush, flushIntervalMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        if (fullBatch != null) {
+            send(fullBatch);
+        }
+        return future;
+    }
+
+    // Send whatever is currently pending
+    public void flush() {
+        List<PendingCall<?>> batch;
+        synchronized (this) {
+            batch = drainPending();
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    // Wait for a queued call, unwrapping failures into the IOException callers of Request.send() expect
+    public static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get(AWAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IOException("No JSON-RPC response within " + AWAIT_TIMEOUT_MS + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for JSON-RPC response", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof TimeoutException) {
+                throw new IOException("No JSON-RPC response within the batch response timeout", e.getCause());
+            }
+            throw new IOException("JSON-RPC call failed", e.getCause());
+        }
+    }
+
+    // Take the pending calls and cancel the timer flush; must be called while holding the lock
+    private List<PendingCall<?>> drainPending() {
+        List<PendingCall<?>> batch = pending;
+        pending = new ArrayList<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    // Send the calls as one JSON-RPC batch and complete the callers' futures from the responses
+    private void send(List<PendingCall<?>> calls) {
+        BatchRequest batchRequest = web3j.newBatch();
+        Map<Long, PendingCall<?>> callsById = new HashMap<>();
+        for (PendingCall<?> call : calls) {
+            batchRequest.add(call.request);
+            callsById.put(call.request.getId(), call);
+        }
+
+        batchRequest.sendAsync().whenComplete((BatchResponse batchResponse, Throwable error) -> {
+            if (error != null) {
+                calls.forEach(call -> call.future.completeExceptionally(error));
+                return;
+            }
+            try {
+                // Servers may answer batch entries in any order, so match them by id
+                for (Response<?> response : batchResponse.getResponses()) {
+                    PendingCall<?> call = callsById.remove(response.getId());
+                    if (call != null) {
+                        call.complete(response);
+                    }
+                }
+            } finally {
+                callsById.values().forEach(call -> call.future.completeExceptionally(
+                        new IOException("No response in batch for " + call.request.getMethod()
+                                + " (id " + call.request.getId() + ")")));
+            }
+        });
+    }
+
+    // Flush the remaining calls and stop the timer thread
+    @PreDestroy
+    public void stop() {
+        flush();
+        scheduler.shutdown();
+    }
+
+    // A queued request and the future handed out to its caller
+    private static final class PendingCall<T extends Response<?>> {
+        private final Request<?, T> request;
+        private final CompletableFuture<T> future;
+
+        private PendingCall(Request<?, T> request, CompletableFuture<T> future) {
+            this.request = request;
+            this.future = future;
+        }
+
+        private void complete(Response<?> response) {
+            Class<T> type = request.getResponseType();
+            if (type.isInstance(response)) {
+                future.complete(type.cast(response));
+            } else {
+                future.completeExceptionally(new IOException("Response to " + request.getMethod() + " (id "
+                        + request.getId() + ") was decoded as " + response.getClass().getSimpleName()
+                        + " because the batch was answered out of order"));
+            }
+        }
+    }
+}
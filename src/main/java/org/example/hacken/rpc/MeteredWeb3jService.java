@@ -0,0 +1,117 @@
+package org.example.hacken.rpc;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.reactivex.Flowable;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.websocket.events.Notification;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+// Decorates a Web3j transport and records the latency of every JSON-RPC round trip, tagged by method.
+// Batches are tagged "batch:" plus the method of their calls (e.g. batch:eth_getBlockByNumber), or batch:mixed when
+// they carry several methods, and the number of calls they carried is recorded alongside.
+public class MeteredWeb3jService implements Web3jService {
+
+    private static final String BATCH_PREFIX = "batch:";
+    private static final String MIXED_BATCH = BATCH_PREFIX + "mixed";
+
+    private final Web3jService delegate;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary batchSize;
+
+    public MeteredWeb3jService(Web3jService delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = DistributionSummary.builder("rpc.client.batch.size")
+                .description("Number of calls carried by a JSON-RPC batch request")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            T response = delegate.send(request, responseType);
+            outcome = outcome(response);
+            return response;
+        } finally {
+            sample.stop(timer(request.getMethod(), outcome));
+        }
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return delegate.sendAsync(request, responseType).whenComplete((response, error) ->
+                sample.stop(timer(request.getMethod(), error != null ? "error" : outcome(response))));
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        batchSize.record(batchRequest.getRequests().size());
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            BatchResponse response = delegate.sendBatch(batchRequest);
+            outcome = "success";
+            return response;
+        } finally {
+            sample.stop(timer(batchMethod(batchRequest), outcome));
+        }
+    }
+
+    @Override
+    public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+        batchSize.record(batchRequest.getRequests().size());
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return delegate.sendBatchAsync(batchRequest).whenComplete((response, error) ->
+                sample.stop(timer(batchMethod(batchRequest), error != null ? "error" : "success")));
+    }
+
+    @Override
+    public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod,
+                                                             Class<T> responseType) {
+        return delegate.subscribe(request, unsubscribeMethod, responseType);
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    // A response carrying a JSON-RPC error object still completed the round trip, but is counted separately
+    private static String outcome(Response<?> response) {
+        return response != null && response.hasError() ? "rpc_error" : "success";
+    }
+
+    // The method tag of a batch: the method of its calls if they all share one
+    private static String batchMethod(BatchRequest batchRequest) {
+        String method = null;
+        for (Request<?, ?> request : batchRequest.getRequests()) {
+            if (method == null) {
+                method = request.getMethod();
+            } else if (!method.equals(request.getMethod())) {
+                return MIXED_BATCH;
+            }
+        }
+        return method != null ? BATCH_PREFIX + method : MIXED_BATCH;
+    }
+
+    private Timer timer(String method, String outcome) {
+        return Timer.builder("rpc.client.requests")
+                .description("Latency of JSON-RPC round trips to the Ethereum node")
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,334 @@
+package org.example.hacken.rpc;
+
+import io.reactivex.Flowable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.Web3jService;
+import org.web3j.protocol.core.BatchRequest;
+import org.web3j.protocol.core.BatchResponse;
+import org.web3j.protocol.core.Request;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.websocket.events.Notification;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// Web3j transport spreading JSON-RPC requests over several providers. Each request goes to the endpoint with the
+// best latency/error score that its circuit breaker and request budget admit; if every endpoint is over budget the
+// request waits for the first one to refill. A request still unanswered after the endpoint's latency percentile is
+// hedged to the next best endpoint and the first response wins. Failed and throttled requests are retried on the
+// remaining endpoints. An empty block or receipt may only mean that the endpoint has not seen the block yet, so it
+// does not win while another endpoint can still answer.
+//
+// Filters (the polling used for live following) only exist on the node that created them, so filter calls stick
+// to one endpoint until it is ejected; web3j re-installs the filter when the next endpoint does not know it.
+public class MultiEndpointWeb3jService implements Web3jService {
+
+    private static final Logger log = LoggerFactory.getLogger(MultiEndpointWeb3jService.class);
+
+    private static final Set<String> FILTER_METHODS = Set.of("eth_newFilter", "eth_newBlockFilter",
+            "eth_newPendingTransactionFilter", "eth_getFilterChanges", "eth_getFilterLogs", "eth_uninstallFilter");
+
+    // Calls with side effects are never sent twice
+    private static final Set<String> NON_IDEMPOTENT_METHODS = Set.of("eth_sendRawTransaction", "eth_sendTransaction");
+
+    // Calls whose null result may come from an endpoint lagging behind the others
+    private static final Set<String> BLOCK_METHODS = Set.of("eth_getBlockByNumber", "eth_getBlockByHash",
+            "eth_getTransactionReceipt", "eth_getBlockReceipts");
+
+    // JSON-RPC error codes with which providers signal that a request was throttled
+    private static final Set<Integer> RATE_LIMIT_CODES = Set.of(429, -32005);
+
+    // How a request may be spread over the endpoints
+    private enum Routing {
+        // Hedged when slow, retried elsewhere on failure
+        HEDGED,
+        // Always the filter endpoint, never retried
+        PINNED,
+        // One endpoint; only retried elsewhere if it was throttled, i.e. certainly not executed
+        SINGLE
+    }
+
+    private final List<RpcEndpoint> endpoints;
+    private final boolean hedgingEnabled;
+    private final double hedgePercentile;
+    private final long hedgeMinDelayNanos;
+    private final long hedgeMaxDelayNanos;
+
+    // Runs the hedge timers and the waits for request budget; the requests themselves are sent asynchronously
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "rpc-endpoint-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile RpcEndpoint filterEndpoint;
+
+    public MultiEndpointWeb3jService(List<RpcEndpoint> endpoints, boolean hedgingEnabled, double hedgePercentile,
+                                     long hedgeMinDelayMs, long hedgeMaxDelayMs) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("At least one JSON-RPC endpoint is required");
+        }
+        this.endpoints = List.copyOf(endpoints);
+        this.hedgingEnabled = hedgingEnabled && endpoints.size() > 1;
+        this.hedgePercentile = hedgePercentile;
+        this.hedgeMinDelayNanos = TimeUnit.MILLISECONDS.toNanos(hedgeMinDelayMs);
+        this.hedgeMaxDelayNanos = TimeUnit.MILLISECONDS.toNanos(hedgeMaxDelayMs);
+    }
+
+    @Override
+    public <T extends Response> T send(Request request, Class<T> responseType) throws IOException {
+        return JsonRpcBatcher.await(sendAsync(request, responseType));
+    }
+
+    @Override
+    public <T extends Response> CompletableFuture<T> sendAsync(Request request, Class<T> responseType) {
+        String method = request.getMethod();
+        return new Exchange<T>(method, 1, routing(Set.of(method)),
+                service -> service.sendAsync(request, responseType), response -> isRateLimited(response),
+                response -> isEmptyBlockResult(method, response)).start();
+    }
+
+    @Override
+    public BatchResponse sendBatch(BatchRequest batchRequest) throws IOException {
+        return JsonRpcBatcher.await(sendBatchAsync(batchRequest));
+    }
+
+    @Override
+    public CompletableFuture<BatchResponse> sendBatchAsync(BatchRequest batchRequest) {
+        Set<String> methods = new HashSet<>();
+        Map<Long, String> methodsById = new HashMap<>();
+        batchRequest.getRequests().forEach(request -> {
+            methods.add(request.getMethod());
+            methodsById.put(request.getId(), request.getMethod());
+        });
+        return new Exchange<BatchResponse>("batch", batchRequest.getRequests().size(), routing(methods),
+                service -> service.sendBatchAsync(batchRequest),
+                batchResponse -> batchResponse.getResponses().stream().anyMatch(this::isRateLimited),
+                batchResponse -> batchResponse.getResponses().stream().anyMatch(response ->
+                        isEmptyBlockResult(methodsById.get(response.getId()), response))).start();
+    }
+
+    // Subscriptions need a WebSocket transport, which the HTTP endpoints reject
+    @Override
+    public <T extends Notification<?>> Flowable<T> subscribe(Request request, String unsubscribeMethod,
+                                                             Class<T> responseType) {
+        return endpoints.get(0).service().subscribe(request, unsubscribeMethod, responseType);
+    }
+
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        for (RpcEndpoint endpoint : endpoints) {
+            endpoint.service().close();
+        }
+    }
+
+    private static Routing routing(Set<String> methods) {
+        if (methods.stream().anyMatch(NON_IDEMPOTENT_METHODS::contains)) {
+            return Routing.SINGLE;
+        }
+        return methods.stream().anyMatch(FILTER_METHODS::contains) ? Routing.PINNED : Routing.HEDGED;
+    }
+
+    private boolean isRateLimited(Response<?> response) {
+        return response != null && response.hasError() && RATE_LIMIT_CODES.contains(response.getError().getCode());
+    }
+
+    // A block or receipt the endpoint does not know (yet); another endpoint may already have it
+    private static boolean isEmptyBlockResult(String method, Response<?> response) {
+        return BLOCK_METHODS.contains(method) && response != null && !response.hasError()
+                && response.getResult() == null;
+    }
+
+    // The endpoint holding the filters; moves to the best available endpoint once the current one is ejected
+    private synchronized RpcEndpoint filterEndpoint() {
+        if (filterEndpoint == null || !filterEndpoint.isAvailable()) {
+            RpcEndpoint next = endpoints.stream()
+                    .filter(RpcEndpoint::isAvailable)
+                    .min(Comparator.comparingDouble(RpcEndpoint::score))
+                    .orElse(null);
+            if (next != null && next != filterEndpoint) {
+                log.info("Filter calls moved to endpoint: endpoint={}", next.name());
+                filterEndpoint = next;
+            }
+        }
+        return filterEndpoint;
+    }
+
+    // One request and its attempts on the endpoints; every endpoint is tried at most once
+    private final class Exchange<R> {
+
+        private final String method;
+        private final int calls;
+        private final Routing routing;
+        private final Function<Web3jService, CompletableFuture<R>> sender;
+        private final Predicate<R> rateLimited;
+        private final Predicate<R> emptyBlockResult;
+        private final CompletableFuture<R> result = new CompletableFuture<>();
+
+        // Guarded by `this`
+        private final Set<RpcEndpoint> tried = new HashSet<>();
+        private int inFlight;
+        private R throttledResponse;
+        private R emptyResponse;
+        private Throwable lastError;
+
+        private Exchange(String method, int calls, Routing routing, Function<Web3jService, CompletableFuture<R>> sender,
+                         Predicate<R> rateLimited, Predicate<R> emptyBlockResult) {
+            this.method = method;
+            this.calls = calls;
+            this.routing = routing;
+            this.sender = sender;
+            this.rateLimited = rateLimited;
+            this.emptyBlockResult = emptyBlockResult;
+        }
+
+        private CompletableFuture<R> start() {
+            dispatch(false);
+            return result;
+        }
+
+        // Send an attempt to the best endpoint not tried yet. A hedge is only sent if an endpoint has budget right
+        // away; a regular attempt waits for budget and fails once no endpoint is left.
+        private void dispatch(boolean hedge) {
+            RpcEndpoint endpoint;
+            synchronized (this) {
+                if (result.isDone()) {
+                    return;
+                }
+                endpoint = acquire();
+                if (endpoint == null) {
+                    if (!hedge) {
+                        waitForBudgetOrFail();
+                    }
+                    return;
+                }
+                tried.add(endpoint);
+                inFlight++;
+            }
+            if (hedge) {
+                endpoint.recordHedge();
+            } else if (routing == Routing.HEDGED && hedgingEnabled) {
+                long delay = endpoint.hedgeDelayNanos(hedgePercentile, hedgeMinDelayNanos, hedgeMaxDelayNanos);
+                schedule(() -> dispatch(true), delay);
+            }
+            send(endpoint);
+        }
+
+        private RpcEndpoint acquire() {
+            return candidates().stream()
+                    .sorted(Comparator.comparingDouble(RpcEndpoint::score))
+                    .filter(endpoint -> endpoint.tryAcquire(calls))
+                    .findFirst()
+                    .orElse(null);
+        }
+
+        // Endpoints this request may still go to, whether or not they have budget right now
+        private List<RpcEndpoint> candidates() {
+            if (routing == Routing.PINNED) {
+                RpcEndpoint pinned = filterEndpoint();
+                return pinned == null || tried.contains(pinned) ? List.of() : List.of(pinned);
+            }
+            return endpoints.stream()
+                    .filter(endpoint -> !tried.contains(endpoint) && endpoint.isAvailable())
+                    .toList();
+        }
+
+        private void waitForBudgetOrFail() {
+            long wait = candidates().stream()
+                    .mapToLong(endpoint -> endpoint.nanosUntilAvailable(calls))
+                    .min()
+                    .orElse(-1);
+            if (wait < 0) {
+                fail();
+                return;
+            }
+            // A zero wait means the endpoint was taken by a concurrent request in between; check again shortly
+            schedule(() -> dispatch(false), Math.max(wait, TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+
+        private void send(RpcEndpoint endpoint) {
+            long start = System.nanoTime();
+            CompletableFuture<R> attempt;
+            try {
+                attempt = sender.apply(endpoint.service());
+            } catch (RuntimeException e) {
+                attempt = CompletableFuture.failedFuture(e);
+            }
+            attempt.whenComplete((response, error) -> onComplete(endpoint, System.nanoTime() - start, response,
+                    error instanceof CompletionException && error.getCause() != null ? error.getCause() : error));
+        }
+
+        private void onComplete(RpcEndpoint endpoint, long latencyNanos, R response, Throwable error) {
+            boolean throttled = error == null && rateLimited.test(response);
+            boolean empty = error == null && !throttled && emptyBlockResult.test(response);
+            if (error == null && !throttled && !empty) {
+                endpoint.recordSuccess(latencyNanos);
+                result.complete(response);
+                return;
+            }
+            if (empty) {
+                // The endpoint answered; it is only behind, which is no reason to eject it
+                endpoint.recordSuccess(latencyNanos);
+            } else if (endpoint.recordFailure(latencyNanos, error == null ? "rate_limited" : "error")) {
+                log.warn("RPC endpoint ejected: endpoint={} method={} error={}", endpoint.name(), method,
+                        error == null ? "rate limited" : error.getMessage());
+            }
+            boolean retry;
+            synchronized (this) {
+                inFlight--;
+                if (empty) {
+                    emptyResponse = response;
+                } else if (throttled) {
+                    throttledResponse = response;
+                } else {
+                    lastError = error;
+                }
+                // While a hedge is still running its answer is awaited instead
+                retry = inFlight == 0 && !result.isDone();
+            }
+            if (!retry) {
+                return;
+            }
+            if (routing == Routing.HEDGED || (routing == Routing.SINGLE && throttled)) {
+                dispatch(false);
+            } else {
+                fail();
+            }
+        }
+
+        // Out of endpoints: an empty or throttled response is handed to the caller as the node's answer
+        private synchronized void fail() {
+            if (emptyResponse != null) {
+                result.complete(emptyResponse);
+            } else if (throttledResponse != null) {
+                result.complete(throttledResponse);
+            } else {
+                result.completeExceptionally(lastError != null ? lastError
+                        : new IOException("No JSON-RPC endpoint available for " + method));
+            }
+        }
+
+        private void schedule(Runnable task, long delayNanos) {
+            try {
+                scheduler.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(new IOException("JSON-RPC client is closed", e));
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.example.hacken.rpc;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.web3j.protocol.Web3jService;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// One JSON-RPC provider behind MultiEndpointWeb3jService, together with its request budget, circuit breaker and
+// the latency statistics used for routing and for the hedge delay.
+public class RpcEndpoint {
+
+    // Weight of the latest sample in the moving averages
+    private static final double SMOOTHING = 0.2;
+    // How strongly recent errors push an endpoint down the routing order
+    private static final double ERROR_PENALTY = 10;
+    // Successful latencies kept for the hedge percentile
+    private static final int LATENCY_WINDOW = 256;
+    // Samples needed before the percentile is trusted, and how often it is recomputed
+    private static final int PERCENTILE_MIN_SAMPLES = 32;
+
+    private final String name;
+    private final Web3jService service;
+    private final TokenBucket tokenBucket;
+    private final CircuitBreaker circuitBreaker;
+    private final MeterRegistry meterRegistry;
+    private final Counter hedges;
+
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private long latencySamples;
+    private double averageLatencyNanos;
+    private double errorRate;
+    private long percentileNanos = -1;
+
+    public RpcEndpoint(String name, Web3jService service, TokenBucket tokenBucket, CircuitBreaker circuitBreaker,
+                       MeterRegistry meterRegistry) {
+        this.name = name;
+        this.service = service;
+        this.tokenBucket = tokenBucket;
+        this.circuitBreaker = circuitBreaker;
+        this.meterRegistry = meterRegistry;
+        this.hedges = Counter.builder("rpc.endpoint.hedges")
+                .description("Hedged requests sent to an endpoint because the first endpoint was slow")
+                .tag("endpoint", name)
+                .register(meterRegistry);
+        Gauge.builder("rpc.endpoint.circuit.open", circuitBreaker,
+                        breaker -> breaker.state() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .description("1 while the endpoint is ejected by its circuit breaker")
+                .tag("endpoint", name)
+                .register(meterRegistry);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public Web3jService service() {
+        return service;
+    }
+
+    // Reserve the endpoint for a request of the given number of calls, if its breaker and budget allow it
+    public synchronized boolean tryAcquire(int calls) {
+        if (!circuitBreaker.isCallPermitted() || !tokenBucket.tryAcquire(calls)) {
+            return false;
+        }
+        circuitBreaker.onCallStarted();
+        return true;
+    }
+
+    // Whether the breaker lets requests through, regardless of the budget
+    public boolean isAvailable() {
+        return circuitBreaker.isCallPermitted();
+    }
+
+    // Time until the budget admits a request of the given number of calls
+    public long nanosUntilAvailable(int calls) {
+        return tokenBucket.nanosUntilAvailable(calls);
+    }
+
+    // Lower is better: the average latency, inflated by the recent error rate
+    public synchronized double score() {
+        return averageLatencyNanos * (1 + ERROR_PENALTY * errorRate);
+    }
+
+    // Delay after which a request still unanswered by this endpoint is hedged, clamped to [minNanos, maxNanos]
+    public synchronized long hedgeDelayNanos(double percentile, long minNanos, long maxNanos) {
+        if (latencySamples < PERCENTILE_MIN_SAMPLES) {
+            return maxNanos;
+        }
+        if (percentileNanos < 0 || latencySamples % PERCENTILE_MIN_SAMPLES == 0) {
+            long[] window = Arrays.copyOf(latencies, (int) Math.min(latencySamples, LATENCY_WINDOW));
+            Arrays.sort(window);
+            percentileNanos = window[(int) Math.min(window.length - 1, Math.floor(percentile * window.length))];
+        }
+        return Math.max(minNanos, Math.min(maxNanos, percentileNanos));
+    }
+
+    public void recordSuccess(long latencyNanos) {
+        synchronized (this) {
+            latencies[(int) (latencySamples++ % LATENCY_WINDOW)] = latencyNanos;
+            averageLatencyNanos = averageLatencyNanos == 0 ? latencyNanos
+                    : averageLatencyNanos + SMOOTHING * (latencyNanos - averageLatencyNanos);
+            errorRate -= SMOOTHING * errorRate;
+        }
+        circuitBreaker.onSuccess();
+        timer("success").record(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // outcome is "error" for transport failures and "rate_limited" for throttling responses; returns true if the
+    // failure ejected the endpoint
+    public boolean recordFailure(long latencyNanos, String outcome) {
+        synchronized (this) {
+            errorRate += SMOOTHING * (1 - errorRate);
+        }
+        timer(outcome).record(latencyNanos, TimeUnit.NANOSECONDS);
+        return circuitBreaker.onFailure();
+    }
+
+    public void recordHedge() {
+        hedges.increment();
+    }
+
+    private Timer timer(String outcome) {
+        return Timer.builder("rpc.endpoint.requests")
+                .description("Latency of JSON-RPC requests per endpoint")
+                .tag("endpoint", name)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,50 @@
+package org.example.hacken.rpc;
+
+import java.util.concurrent.TimeUnit;
+
+// Request budget of one RPC endpoint: refills at a fixed rate up to a burst capacity. A request costs one token per
+// JSON-RPC call, so a batch of 50 calls takes 50 tokens. A batch larger than the capacity is admitted once the
+// bucket is full and leaves it in debt, which delays the following requests accordingly.
+public class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double capacity;
+    private double tokens;
+    private long refilledAt;
+
+    // A rate of zero or less means unlimited
+    public TokenBucket(double tokensPerSecond, double capacity) {
+        this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.refilledAt = System.nanoTime();
+    }
+
+    public synchronized boolean tryAcquire(int permits) {
+        if (tokensPerNano <= 0) {
+            return true;
+        }
+        refill();
+        if (tokens < Math.min(permits, capacity)) {
+            return false;
+        }
+        tokens -= permits;
+        return true;
+    }
+
+    // Time until tryAcquire(permits) can succeed, 0 if it can right away
+    public synchronized long nanosUntilAvailable(int permits) {
+        if (tokensPerNano <= 0) {
+            return 0;
+        }
+        refill();
+        double missing = Math.min(permits, capacity) - tokens;
+        return missing <= 0 ? 0 : (long) Math.ceil(missing / tokensPerNano);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+    }
+}
@@ -0,0 +1,154 @@
+package org.example.hacken.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.example.hacken.rpc.JsonRpcBatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.core.methods.response.EthBlock;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+// Catches up on historical blocks by fetching and decoding fixed-size windows of blocks in parallel,
+// while still handing the results to the caller strictly in block order
+@Service
+public class BlockBackfillService {
+
+    private static final Logger log = LoggerFactory.getLogger(BlockBackfillService.class);
+
+    // Inject the batching RPC layer so that a window is fetched in as few round trips as possible
+    @Autowired
+    private JsonRpcBatcher rpcBatcher;
+
+    // Registry used to publish the backfill throughput
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Number of consecutive blocks fetched by a single worker
+    @Value("${sync.backfill.window-size:50}")
+    private int windowSize;
+
+    // Maximum number of windows fetched at the same time
+    @Value("${sync.backfill.concurrency:4}")
+    private int concurrency;
+
+    // Committed blocks per second of the current (or last) backfill run
+    private volatile double blocksPerSecond;
+
+    @PostConstruct
+    public void init() {
+        // A window of no blocks would never advance and a pool needs at least one thread
+        if (windowSize <= 0) {
+            throw new IllegalStateException("sync.backfill.window-size must be positive, was " + windowSize);
+        }
+        if (concurrency <= 0) {
+            throw new IllegalStateException("sync.backfill.concurrency must be positive, was " + concurrency);
+        }
+        Gauge.builder("sync.backfill.throughput", this, service -> service.blocksPerSecond)
+                .description("Blocks per second committed by the historical backfill")
+                .baseUnit("blocks/s")
+                .register(meterRegistry);
+    }
+
+    // Fetch blocks [fromBlock, toBlock], decode them on worker threads and pass the decoded blocks to the committer
+    // in ascending block order. Returns the number of the last committed block (fromBlock - 1 if nothing was done).
+    public <T> BigInteger backfill(BigInteger fromBlock, BigInteger toBlock,
+                                   Function<EthBlock, T> decoder, BiConsumer<BigInteger, T> committer) {
+        BigInteger lastCommitted = fromBlock.subtract(BigInteger.ONE);
+        if (fromBlock.compareTo(toBlock) > 0) {
+            return lastCommitted;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, workerThreadFactory());
+        // Windows in flight, oldest first, so that results can be committed in block order
+        Deque<Future<List<WindowEntry<T>>>> inFlight = new ArrayDeque<>();
+        BigInteger nextBlock = fromBlock;
+        long committedBlocks = 0;
+        long startedAt = System.nanoTime();
+
+        try {
+            while (nextBlock.compareTo(toBlock) <= 0 || !inFlight.isEmpty()) {
+                // Keep up to `concurrency` windows in flight; this also bounds the memory held by fetched blocks
+                while (nextBlock.compareTo(toBlock) <= 0 && inFlight.size() < concurrency) {
+                    BigInteger windowStart = nextBlock;
+                    BigInteger windowEnd = windowStart.add(BigInteger.valueOf(windowSize - 1)).min(toBlock);
+                    inFlight.add(executor.submit(() -> fetchWindow(windowStart, windowEnd, decoder)));
+                    nextBlock = windowEnd.add(BigInteger.ONE);
+                }
+
+                // Commit the oldest window once it is ready
+                for (WindowEntry<T> entry : inFlight.poll().get()) {
+                    committer.accept(entry.number(), entry.value());
+                    lastCommitted = entry.number();
+                    committedBlocks++;
+                }
+                blocksPerSecond = committedBlocks / Math.max((System.nanoTime() - startedAt) / 1e9, 1e-3);
+            }
+            log.info("Backfill finished: fromBlock={} toBlock={} blocksPerSecond={}", fromBlock, toBlock,
+                    String.format("%.1f", blocksPerSecond));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Backfill interrupted: lastBlock={}", lastCommitted);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error fetching blocks for backfill after block " + lastCommitted, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return lastCommitted;
+    }
+
+    // Fetch and decode every block in [windowStart, windowEnd]
+    private <T> List<WindowEntry<T>> fetchWindow(BigInteger windowStart, BigInteger windowEnd,
+                                                  Function<EthBlock, T> decoder) throws IOException {
+        // Queue all block requests of the window first so that they share JSON-RPC batches
+        List<CompletableFuture<EthBlock>> requests = new ArrayList<>();
+        for (BigInteger number = windowStart; number.compareTo(windowEnd) <= 0; number = number.add(BigInteger.ONE)) {
+            requests.add(rpcBatcher.getBlockByNumber(number, true));
+        }
+
+        List<WindowEntry<T>> window = new ArrayList<>();
+        BigInteger number = windowStart;
+        for (CompletableFuture<EthBlock> request : requests) {
+            EthBlock block = JsonRpcBatcher.await(request);
+            if (block.getBlock() == null) {
+                String reason = block.hasError() ? block.getError().getMessage() : "not available from the node";
+                throw new IOException("Block " + number + ": " + reason);
+            }
+            window.add(new WindowEntry<>(number, decoder.apply(block)));
+            number = number.add(BigInteger.ONE);
+        }
+        return window;
+    }
+
+    // Name the worker threads so they are recognisable in thread dumps
+    private static ThreadFactory workerThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "backfill-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // A block number together with its decoded content
+    private record WindowEntry<T>(BigInteger number, T value) {
+    }
+}
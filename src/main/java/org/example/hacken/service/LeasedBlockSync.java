@@ -0,0 +1,195 @@
+package org.example.hacken.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.example.hacken.ingest.BlockDecoder;
+import org.example.hacken.ingest.DecodedBlock;
+import org.example.hacken.ingest.IngestionPipeline;
+import org.example.hacken.persistence.BlockRangeLeaseStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.Web3j;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Ingestion shared by several instances through block-range leases (sync.coordination.mode=leased). Each instance
+// repeatedly claims the lowest open range, fetches it through the parallel backfill, waits until its blocks are
+// committed and marks it done; the processed_block checkpoint then follows the contiguous run of done ranges.
+// When no range is open the instance plans new ranges up to the chain head, so live following works the same way
+// with small ranges. A range is only marked done if all of its blocks were committed; otherwise it is released and
+// claimed again. Blocks may be written twice when a lease expires while its owner is still working on it,
+// which the idempotent sinks tolerate.
+@Service
+public class LeasedBlockSync {
+
+    private static final Logger log = LoggerFactory.getLogger(LeasedBlockSync.class);
+
+    @Autowired
+    private Web3j web3j;
+
+    @Autowired
+    private BlockRangeLeaseStore leaseStore;
+
+    @Autowired
+    private BlockBackfillService blockBackfillService;
+
+    @Autowired
+    private IngestionPipeline ingestionPipeline;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Blocks per planned range (ranges at the chain head are shorter)
+    @Value("${sync.coordination.range-size:1000}")
+    private long rangeSize;
+
+    // How long a claimed range stays with its instance without being renewed
+    @Value("${sync.coordination.lease-ms:120000}")
+    private long leaseMs;
+
+    // Pause when there is nothing to claim and the chain head has not moved
+    @Value("${sync.coordination.poll-interval-ms:2000}")
+    private long pollIntervalMs;
+
+    // Name of this instance in the lease table; defaults to the JVM name (pid@host) plus a random suffix
+    @Value("${sync.coordination.instance-id:}")
+    private String instanceId;
+
+    private Counter completedRanges;
+    private Counter lostRanges;
+    private Thread worker;
+    private ScheduledExecutorService renewer;
+
+    @PostConstruct
+    public void init() {
+        if (instanceId == null || instanceId.isBlank()) {
+            instanceId = ManagementFactory.getRuntimeMXBean().getName() + "-"
+                    + UUID.randomUUID().toString().substring(0, 8);
+        }
+        completedRanges = Counter.builder("sync.leases.completed")
+                .description("Block ranges ingested and marked done by this instance")
+                .register(meterRegistry);
+        lostRanges = Counter.builder("sync.leases.lost")
+                .description("Block ranges whose lease expired and was taken over before this instance finished")
+                .register(meterRegistry);
+    }
+
+    public void start() {
+        renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lease-renewer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        worker = new Thread(this::run, "leased-sync");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("Leased block sync started: instance={} rangeSize={} leaseMs={}", instanceId, rangeSize, leaseMs);
+    }
+
+    public void stop() {
+        if (worker != null) {
+            worker.interrupt();
+            renewer.shutdownNow();
+        }
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Optional<BlockRangeLeaseStore.Lease> lease = leaseStore.claim(instanceId, leaseMs);
+                if (lease.isPresent()) {
+                    process(lease.get());
+                } else if (leaseStore.plan(web3j.ethBlockNumber().send().getBlockNumber().longValueExact(),
+                        rangeSize) == 0) {
+                    TimeUnit.MILLISECONDS.sleep(pollIntervalMs);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                log.error("Error in leased block sync", e);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(pollIntervalMs);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void process(BlockRangeLeaseStore.Lease lease) throws InterruptedException {
+        ScheduledFuture<?> renewal = renewer.scheduleWithFixedDelay(() -> renew(lease),
+                leaseMs / 3, leaseMs / 3, TimeUnit.MILLISECONDS);
+        try {
+            BigInteger toBlock = BigInteger.valueOf(lease.toBlock());
+            BigInteger last = blockBackfillService.backfill(BigInteger.valueOf(lease.fromBlock()), toBlock,
+                    BlockDecoder::decode, this::submitDecoded);
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+            if (last.compareTo(toBlock) < 0) {
+                throw new IllegalStateException("Backfill stopped at block " + last);
+            }
+            // Only done once the blocks are actually committed, otherwise a crash would lose them
+            ingestionPipeline.awaitPersisted();
+            // A range with holes is handed back so that it is claimed and written again
+            List<BigInteger> failed = ingestionPipeline.failedBlocks(BigInteger.valueOf(lease.fromBlock()), toBlock);
+            if (!failed.isEmpty()) {
+                throw new IllegalStateException("Blocks of the range could not be committed: " + failed);
+            }
+            renewal.cancel(false);
+            if (leaseStore.complete(lease, instanceId)) {
+                completedRanges.increment();
+            } else {
+                lostRanges.increment();
+                log.warn("Block range lease was lost before completion: fromBlock={} toBlock={}",
+                        lease.fromBlock(), lease.toBlock());
+            }
+            leaseStore.advanceWatermark();
+        } catch (InterruptedException | RuntimeException e) {
+            renewal.cancel(false);
+            release(lease);
+            throw e;
+        }
+    }
+
+    // Checkpoints are derived from the leases, so the blocks of a range never move the checkpoint themselves
+    private void submitDecoded(BigInteger blockNumber, DecodedBlock block) {
+        try {
+            ingestionPipeline.submitDecoded(block.withoutCheckpoint());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void renew(BlockRangeLeaseStore.Lease lease) {
+        try {
+            if (!leaseStore.renew(lease, instanceId, leaseMs)) {
+                log.warn("Block range lease could not be renewed: fromBlock={} toBlock={}", lease.fromBlock(),
+                        lease.toBlock());
+            }
+        } catch (Exception e) {
+            log.warn("Error renewing block range lease: fromBlock={} error={}", lease.fromBlock(), e.getMessage());
+        }
+    }
+
+    // Hand an unfinished range back right away instead of letting it wait for the lease to expire
+    private void release(BlockRangeLeaseStore.Lease lease) {
+        try {
+            leaseStore.release(lease, instanceId);
+        } catch (Exception e) {
+            log.warn("Error releasing block range lease: fromBlock={} error={}", lease.fromBlock(), e.getMessage());
+        }
+    }
+}
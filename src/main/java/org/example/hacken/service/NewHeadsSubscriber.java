@@ -0,0 +1,164 @@
+package org.example.hacken.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.reactivex.disposables.Disposable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.websocket.WebSocketService;
+import org.web3j.utils.Numeric;
+
+import java.math.BigInteger;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Follows the chain head through an `eth_subscribe("newHeads")` WebSocket subscription instead of polling filters.
+// A notification only carries the header, so every new head hands the range from the last submitted block up to
+// the head to a RangeHandler, which fetches the full blocks. Normally that is the one new block; after a dropped
+// connection or a failed fetch it is the whole gap. Lost connections are re-established with exponential backoff,
+// and a connection that has been silent for too long is treated as lost.
+public class NewHeadsSubscriber {
+
+    private static final Logger log = LoggerFactory.getLogger(NewHeadsSubscriber.class);
+
+    // Fetches and submits blocks [fromBlock, toBlock] in order and returns the last block submitted
+    @FunctionalInterface
+    public interface RangeHandler {
+        BigInteger handle(BigInteger fromBlock, BigInteger toBlock) throws Exception;
+    }
+
+    private final String url;
+    private final long minReconnectDelayMs;
+    private final long maxReconnectDelayMs;
+    private final long staleAfterMs;
+    private final RangeHandler rangeHandler;
+    private final Counter reconnects;
+
+    // Connection handling and block fetching run on this thread, one step at a time
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "new-heads");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile boolean running;
+    private volatile long lastHeadAt;
+    private BigInteger lastSubmittedBlock;
+    private WebSocketService service;
+    private Disposable subscription;
+    // Incremented per connection, so that late callbacks of a closed connection are ignored
+    private int connection;
+    private long reconnectDelayMs;
+
+    public NewHeadsSubscriber(String url, long minReconnectDelayMs, long maxReconnectDelayMs, long staleAfterMs,
+                              RangeHandler rangeHandler, MeterRegistry meterRegistry) {
+        this.url = url;
+        this.minReconnectDelayMs = minReconnectDelayMs;
+        this.maxReconnectDelayMs = maxReconnectDelayMs;
+        this.staleAfterMs = staleAfterMs;
+        this.rangeHandler = rangeHandler;
+        this.reconnectDelayMs = minReconnectDelayMs;
+        this.reconnects = Counter.builder("sync.live.reconnects")
+                .description("WebSocket reconnects of the newHeads subscription")
+                .register(meterRegistry);
+    }
+
+    // Start following; blocks after lastSubmittedBlock are handed to the range handler
+    public void start(BigInteger lastSubmittedBlock) {
+        running = true;
+        executor.execute(() -> {
+            this.lastSubmittedBlock = lastSubmittedBlock;
+            connect();
+        });
+        executor.scheduleWithFixedDelay(this::checkStale, staleAfterMs, staleAfterMs / 2, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        running = false;
+        executor.execute(this::disconnect);
+        executor.shutdown();
+    }
+
+    private void connect() {
+        if (!running) {
+            return;
+        }
+        int current = ++connection;
+        try {
+            service = new WebSocketService(url, false);
+            service.connect();
+            lastHeadAt = System.currentTimeMillis();
+            subscription = Web3j.build(service).newHeadsNotifications().subscribe(
+                    notification -> {
+                        lastHeadAt = System.currentTimeMillis();
+                        BigInteger head = Numeric.decodeQuantity(notification.getParams().getResult().getNumber());
+                        runOnExecutor(() -> onHead(current, head));
+                    },
+                    error -> runOnExecutor(() -> reconnect(current, error.getMessage())),
+                    () -> runOnExecutor(() -> reconnect(current, "subscription completed")));
+            log.info("newHeads subscription started: url={}", url);
+        } catch (Exception e) {
+            reconnect(current, e.getMessage());
+        }
+    }
+
+    private void onHead(int from, BigInteger head) {
+        if (from != connection) {
+            return;
+        }
+        // Reset the backoff only once the connection has proven to deliver heads
+        reconnectDelayMs = minReconnectDelayMs;
+        if (head.compareTo(lastSubmittedBlock) <= 0) {
+            // A head we already have, e.g. a re-emitted or reorganised block
+            return;
+        }
+        BigInteger fromBlock = lastSubmittedBlock.add(BigInteger.ONE);
+        if (head.compareTo(fromBlock) > 0) {
+            log.info("Filling gap before new head: fromBlock={} toBlock={}", fromBlock, head);
+        }
+        try {
+            lastSubmittedBlock = rangeHandler.handle(fromBlock, head);
+        } catch (Exception e) {
+            // The blocks are retried as part of the range of the next head
+            log.warn("Error fetching blocks for new head: fromBlock={} toBlock={} error={}", fromBlock, head,
+                    e.getMessage());
+        }
+    }
+
+    private void checkStale() {
+        if (subscription != null && System.currentTimeMillis() - lastHeadAt > staleAfterMs) {
+            reconnect(connection, "no new head for " + staleAfterMs + " ms");
+        }
+    }
+
+    // Callbacks of the WebSocket client may still arrive while stopping
+    private void runOnExecutor(Runnable task) {
+        if (running) {
+            executor.execute(task);
+        }
+    }
+
+    private void reconnect(int from, String reason) {
+        if (from != connection || !running) {
+            return;
+        }
+        disconnect();
+        log.warn("newHeads subscription lost, reconnecting: delayMs={} reason={}", reconnectDelayMs, reason);
+        reconnects.increment();
+        // Invalidate the callbacks of the old connection right away, not only when the new one is opened
+        connection++;
+        executor.schedule(this::connect, reconnectDelayMs, TimeUnit.MILLISECONDS);
+        reconnectDelayMs = Math.min(reconnectDelayMs * 2, maxReconnectDelayMs);
+    }
+
+    // Closing the socket ends the subscription on the node as well, so no eth_unsubscribe is sent
+    private void disconnect() {
+        subscription = null;
+        if (service != null) {
+            service.close();
+            service = null;
+        }
+    }
+}
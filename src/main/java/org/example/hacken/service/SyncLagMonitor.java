@@ -0,0 +1,72 @@
+package org.example.hacken.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.example.hacken.ingest.IngestionPipeline;
+import org.example.hacken.model.ProcessedBlock;
+import org.example.hacken.repository.ProcessedBlockRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.Web3j;
+
+import java.math.BigInteger;
+
+// Periodically compares the chain head reported by the node with the last block committed by the ingestion
+// pipeline and publishes both, plus the difference, as gauges
+@Service
+public class SyncLagMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(SyncLagMonitor.class);
+
+    @Autowired
+    private Web3j web3j;
+
+    @Autowired
+    private IngestionPipeline ingestionPipeline;
+
+    @Autowired
+    private ProcessedBlockRepository processedBlockRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Last observed values; NaN until the first successful poll
+    private volatile double chainHead = Double.NaN;
+    private volatile double lastProcessedBlock = Double.NaN;
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("sync.chain.head", this, monitor -> monitor.chainHead)
+                .description("Latest block number reported by the Ethereum node")
+                .register(meterRegistry);
+        Gauge.builder("sync.last.processed.block", this, monitor -> monitor.lastProcessedBlock)
+                .description("Latest block whose transactions have been committed")
+                .register(meterRegistry);
+        Gauge.builder("sync.lag.blocks", this, monitor -> monitor.chainHead - monitor.lastProcessedBlock)
+                .description("Number of blocks the ingestion is behind the chain head")
+                .baseUnit("blocks")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${sync.lag.poll-interval-ms:15000}")
+    public void poll() {
+        try {
+            chainHead = web3j.ethBlockNumber().send().getBlockNumber().doubleValue();
+        } catch (Exception e) {
+            log.warn("Error fetching chain head for sync lag: error={}", e.getMessage());
+        }
+
+        BigInteger committed = ingestionPipeline.getLastCommittedBlock();
+        if (committed == null) {
+            // Nothing committed since startup yet, fall back to the stored checkpoint
+            committed = processedBlockRepository.findById(1).map(ProcessedBlock::getBlockNumber).orElse(null);
+        }
+        if (committed != null) {
+            lastProcessedBlock = committed.doubleValue();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.hacken.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import org.example.hacken.model.TransactionEntity;
+import org.example.hacken.persistence.TransactionArchive;
+import org.example.hacken.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+// Streams matching transactions as newline-delimited JSON without materialising the result set: first the rows of
+// the database, then those of the archive segments, one decoded segment at a time
+@Service
+public class TransactionExportService {
+
+    // Number of rows written between flushes of the output stream
+    private static final int FLUSH_INTERVAL = 1000;
+
+    @Autowired
+    private TransactionRepository repository;
+
+    @Autowired
+    private TransactionArchive archive;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Write one JSON object per line; null address filters match every transaction of blocks [fromBlock, toBlock]
+    @Transactional(readOnly = true)
+    public void exportNdjson(String fromAddress, String toAddress, long fromBlock, long toBlock, OutputStream out)
+            throws IOException {
+        long archivedBelow = archive.archivedBelow();
+        try (Stream<TransactionEntity> stream = repository.streamByAddresses(fromAddress, toAddress,
+                Math.max(fromBlock, archivedBelow), toBlock);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Lines are separated explicitly below, and flushing is done in chunks rather than after every row
+            generator.setRootValueSeparator(null);
+            ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+            int[] written = new int[1];
+            Iterator<TransactionEntity> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                TransactionEntity entity = iterator.next();
+                write(generator, writer, entity, ++written[0]);
+                // Detach written rows so the persistence context does not grow with the result
+                entityManager.detach(entity);
+            }
+            if (fromBlock < archivedBelow) {
+                try {
+                    archive.forEach(fromAddress, toAddress, fromBlock, Math.min(toBlock, archivedBelow - 1),
+                            entity -> {
+                                try {
+                                    write(generator, writer, entity, ++written[0]);
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+            generator.flush();
+        }
+    }
+
+    private static void write(JsonGenerator generator, ObjectWriter writer, TransactionEntity entity, int written)
+            throws IOException {
+        writer.writeValue(generator, entity);
+        generator.writeRaw('\n');
+        if (written % FLUSH_INTERVAL == 0) {
+            generator.flush();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package org.example.hacken.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.example.hacken.ingest.BlockDecoder;
+import org.example.hacken.model.TransactionEntity;
+import org.example.hacken.persistence.TransactionArchive;
+import org.example.hacken.repository.TransactionRepository;
+import org.example.hacken.rpc.JsonRpcBatcher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.web3j.protocol.core.methods.response.EthTransaction;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Read-through cache for transaction-by-hash lookups: memory first, then the database and the archive, then the node.
+// Concurrent misses for the same hash share one load, batch lookups load all their misses together, not-found
+// answers are remembered briefly, and transactions fetched from the node are persisted through the write-behind
+// queue.
+@Service
+public class TransactionLookupService {
+
+    @Autowired
+    private TransactionRepository repository;
+
+    @Autowired
+    private TransactionArchive archive;
+
+    @Autowired
+    private JsonRpcBatcher rpcBatcher;
+
+    @Autowired
+    private TransactionWriteBehind writeBehind;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Maximum number of cached lookups
+    @Value("${cache.transactions.max-size:100000}")
+    private long maxSize;
+
+    // How long a "not found" (or pending) answer is cached; mined transactions are immutable and only evicted by size
+    @Value("${cache.transactions.not-found-ttl-seconds:5}")
+    private long notFoundTtlSeconds;
+
+    // Hashes that are kept in memory permanently once loaded (e.g. hashes polled by dashboards)
+    @Value("${cache.transactions.pinned:}")
+    private List<String> pinnedHashes;
+
+    private Set<String> pinnedHashSet;
+
+    private AsyncLoadingCache<String, Optional<TransactionEntity>> cache;
+
+    // Loaded pinned transactions; never evicted
+    private final Map<String, TransactionEntity> pinned = new ConcurrentHashMap<>();
+
+    private Counter pinnedHits;
+
+    @PostConstruct
+    public void init() {
+        long notFoundTtlNanos = TimeUnit.SECONDS.toNanos(notFoundTtlSeconds);
+        // Size eviction uses Caffeine's frequency-based admission, so frequently polled hashes stay cached
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Optional<TransactionEntity>>() {
+                    @Override
+                    public long expireAfterCreate(String hash, Optional<TransactionEntity> value, long currentTime) {
+                        // Pending transactions expire like "not found" answers, so their block is picked up later
+                        return value.map(TransactionEntity::getBlockNumber).isPresent()
+                                ? Long.MAX_VALUE : notFoundTtlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String hash, Optional<TransactionEntity> value, long currentTime,
+                                                  long currentDuration) {
+                        return expireAfterCreate(hash, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String hash, Optional<TransactionEntity> value, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync(new AsyncCacheLoader<>() {
+                    @Override
+                    public CompletableFuture<Optional<TransactionEntity>> asyncLoad(String hash, Executor executor) {
+                        return load(hash, executor);
+                    }
+
+                    @Override
+                    public CompletableFuture<Map<String, Optional<TransactionEntity>>> asyncLoadAll(
+                            Set<? extends String> hashes, Executor executor) {
+                        return loadAll(hashes, executor);
+                    }
+                });
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "transactions");
+
+        pinnedHits = Counter.builder("cache.transactions.pinned.hits")
+                .description("Lookups answered by pinned transactions")
+                .register(meterRegistry);
+        pinnedHashSet = pinnedHashes.stream()
+                .filter(hash -> !hash.isBlank())
+                .map(TransactionLookupService::normalize)
+                .collect(Collectors.toSet());
+    }
+
+    // Look up a transaction by hash
+    public CompletableFuture<Optional<TransactionEntity>> getTransaction(String hash) {
+        String key = normalize(hash);
+        TransactionEntity pinnedTransaction = pinned.get(key);
+        if (pinnedTransaction != null) {
+            pinnedHits.increment();
+            return CompletableFuture.completedFuture(Optional.of(pinnedTransaction));
+        }
+        return cache.get(key);
+    }
+
+    // Look up many transactions at once; the results are in request order. Cached hashes are answered from memory,
+    // all others are loaded together (see loadAll)
+    public CompletableFuture<List<Optional<TransactionEntity>>> getTransactions(List<String> hashes) {
+        List<String> keys = hashes.stream().map(TransactionLookupService::normalize).toList();
+        Set<String> toLoad = keys.stream().filter(key -> !pinned.containsKey(key)).collect(Collectors.toSet());
+        return cache.getAll(toLoad).thenApply(loaded -> keys.stream()
+                .map(key -> {
+                    TransactionEntity pinnedTransaction = pinned.get(key);
+                    if (pinnedTransaction != null) {
+                        pinnedHits.increment();
+                        return Optional.of(pinnedTransaction);
+                    }
+                    return loaded.getOrDefault(key, Optional.empty());
+                })
+                .toList());
+    }
+
+    // Load a cache miss from the database or the archive, falling back to the node
+    private CompletableFuture<Optional<TransactionEntity>> load(String hash, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> repository.findByTransactionHash(hash)
+                        .or(() -> archive.findByHash(hash)), executor)
+                .thenCompose(stored -> stored.isPresent()
+                        ? CompletableFuture.completedFuture(stored)
+                        : rpcBatcher.getTransactionByHash(hash).thenApply(response -> {
+                            Optional<TransactionEntity> fetched = fetched(hash, response);
+                            // Pending transactions are returned but not stored; they have no block to be filed under
+                            fetched.filter(entity -> entity.getBlockNumber() != null).ifPresent(writeBehind::enqueue);
+                            return fetched;
+                        }))
+                .thenApply(result -> {
+                    pin(hash, result);
+                    return result;
+                });
+    }
+
+    // Load several cache misses: one set-based database query for all of them and archive lookups for the rest,
+    // then the hashes that are not stored are queued on the batcher together, so they reach the node in as few batch
+    // requests as possible. The mined transactions among them are handed to the write-behind queue as one batch.
+    private CompletableFuture<Map<String, Optional<TransactionEntity>>> loadAll(Set<? extends String> hashes,
+                                                                                Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+                    Map<String, Optional<TransactionEntity>> stored = new HashMap<>();
+                    for (TransactionEntity entity : repository.findByTransactionHashIn(List.copyOf(hashes))) {
+                        stored.put(entity.getTransactionHash(), Optional.of(entity));
+                    }
+                    // Hashes not in the database may have been archived
+                    if (stored.size() < hashes.size()) {
+                        List<String> missing = new ArrayList<>(hashes);
+                        missing.removeAll(stored.keySet());
+                        archive.findByHashes(missing).forEach(entity ->
+                                stored.put(entity.getTransactionHash(), Optional.of(entity)));
+                    }
+                    return stored;
+                }, executor)
+                .thenCompose(stored -> {
+                    Map<String, CompletableFuture<EthTransaction>> requests = new HashMap<>();
+                    for (String hash : hashes) {
+                        if (!stored.containsKey(hash)) {
+                            requests.put(hash, rpcBatcher.getTransactionByHash(hash));
+                        }
+                    }
+                    return CompletableFuture.allOf(requests.values().toArray(CompletableFuture[]::new))
+                            .thenApply(done -> {
+                                Map<String, Optional<TransactionEntity>> result = new HashMap<>(stored);
+                                List<TransactionEntity> mined = new ArrayList<>();
+                                requests.forEach((hash, request) -> {
+                                    Optional<TransactionEntity> fetched = fetched(hash, request.join());
+                                    fetched.filter(entity -> entity.getBlockNumber() != null).ifPresent(mined::add);
+                                    result.put(hash, fetched);
+                                });
+                                if (!mined.isEmpty()) {
+                                    writeBehind.enqueueAll(mined);
+                                }
+                                result.forEach(this::pin);
+                                return result;
+                            });
+                });
+    }
+
+    // The transaction in a node response. An error response fails the load instead of reading as "not found", so it
+    // is not cached and the next lookup asks the node again
+    private static Optional<TransactionEntity> fetched(String hash, EthTransaction response) {
+        if (response.hasError()) {
+            throw new CompletionException(new IOException(
+                    "eth_getTransactionByHash failed for " + hash + ": " + response.getError().getMessage()));
+        }
+        return response.getTransaction().map(BlockDecoder::mapTransaction);
+    }
+
+    // Keep a loaded transaction in memory for good if its hash is pinned
+    private void pin(String hash, Optional<TransactionEntity> result) {
+        result.filter(entity -> pinnedHashSet.contains(hash)).ifPresent(entity -> pinned.put(hash, entity));
+    }
+
+    // Hashes are case-insensitive; use one spelling as the cache key
+    private static String normalize(String hash) {
+        return hash.trim().toLowerCase();
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.hacken.service;
+
+import org.example.hacken.model.TransactionEntity;
+import org.example.hacken.persistence.TransactionArchive;
+import org.example.hacken.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Keyset pages over both storage tiers: blocks at or above the archive boundary are read from the database, blocks
+// below it from the archive segments. Each tier returns its own first page for the cursor and the two are merged in
+// page order, so clients page through one sequence whatever tier a row lives in.
+@Service
+public class TransactionQueryService {
+
+    private static final Comparator<TransactionEntity> HASH_ORDER =
+            Comparator.comparing(TransactionEntity::getTransactionHash);
+
+    private static final Comparator<TransactionEntity> VALUE_ORDER = Comparator
+            .comparing((TransactionEntity entity) -> new BigInteger(entity.getValue()))
+            .thenComparing(HASH_ORDER);
+
+    @Autowired
+    private TransactionRepository repository;
+
+    @Autowired
+    private TransactionArchive archive;
+
+    // Up to `limit` transactions of blocks [fromBlock, toBlock] with a hash greater than `after`, ordered by hash;
+    // null address filters match everything
+    public List<TransactionEntity> findPage(String fromAddress, String toAddress, long fromBlock, long toBlock,
+                                            String after, int limit) {
+        long archivedBelow = archive.archivedBelow();
+        List<TransactionEntity> rows = new ArrayList<>();
+        if (toBlock >= archivedBelow) {
+            rows.addAll(databasePage(fromAddress, toAddress, Math.max(fromBlock, archivedBelow), toBlock, after,
+                    PageRequest.of(0, limit)));
+        }
+        if (fromBlock < archivedBelow) {
+            rows.addAll(archive.findPage(fromAddress, toAddress, fromBlock, Math.min(toBlock, archivedBelow - 1),
+                    after, limit));
+            rows.sort(HASH_ORDER);
+        }
+        return rows.size() > limit ? rows.subList(0, limit) : rows;
+    }
+
+    // Up to `limit` transactions of blocks [fromBlock, toBlock] with a value in [minValue, maxValue] after the cursor
+    // (value, hash), ordered by value and hash
+    public List<TransactionEntity> findValuePage(BigInteger minValue, BigInteger maxValue, long fromBlock, long toBlock,
+                                                 BigInteger cursorValue, String cursorHash, boolean descending,
+                                                 int limit) {
+        long archivedBelow = archive.archivedBelow();
+        List<TransactionEntity> rows = new ArrayList<>();
+        if (toBlock >= archivedBelow) {
+            long from = Math.max(fromBlock, archivedBelow);
+            Pageable page = PageRequest.of(0, limit);
+            rows.addAll(descending
+                    ? repository.findValueRangePageDescending(minValue.toString(), maxValue.toString(), from, toBlock,
+                    cursorValue.toString(), cursorHash, page)
+                    : repository.findValueRangePageAscending(minValue.toString(), maxValue.toString(), from, toBlock,
+                    cursorValue.toString(), cursorHash, page));
+        }
+        if (fromBlock < archivedBelow) {
+            rows.addAll(archive.findValuePage(minValue, maxValue, fromBlock, Math.min(toBlock, archivedBelow - 1),
+                    cursorValue, cursorHash, descending, limit));
+            rows.sort(descending ? VALUE_ORDER.reversed() : VALUE_ORDER);
+        }
+        return rows.size() > limit ? rows.subList(0, limit) : rows;
+    }
+
+    private List<TransactionEntity> databasePage(String fromAddress, String toAddress, long fromBlock, long toBlock,
+                                                 String after, Pageable page) {
+        if (fromAddress != null && toAddress != null) {
+            return repository.findPageByFromAddressAndToAddress(fromAddress, toAddress, fromBlock, toBlock, after,
+                    page);
+        } else if (fromAddress != null) {
+            return repository.findPageByFromAddress(fromAddress, fromBlock, toBlock, after, page);
+        } else if (toAddress != null) {
+            return repository.findPageByToAddress(toAddress, fromBlock, toBlock, after, page);
+        } else {
+            return repository.findPage(fromBlock, toBlock, after, page);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.example.hacken.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.hacken.ingest.TransactionFeed;
+import org.example.hacken.model.TransactionEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Pushes newly ingested transactions to server-sent event subscribers. Each subscriber has its own sender thread
+// reading the TransactionFeed ring buffer at its own pace, so a slow client only delays itself; if it falls behind
+// the buffer it gets a "gap" event naming the blocks it missed, which can be fetched with the block-range search.
+// Every "transactions" event carries the transactions of one block and has the block number as its id, which
+// clients pass back (Last-Event-ID or `after`) to resume.
+@Service
+public class TransactionStreamService {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionStreamService.class);
+
+    // Blocks taken from the buffer per read
+    private static final int READ_BLOCKS = 64;
+
+    @Autowired
+    private TransactionFeed feed;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Largest number of concurrent subscribers (one sender thread each)
+    @Value("${api.stream.max-subscribers:100}")
+    private int maxSubscribers;
+
+    // Idle time after which a comment is sent to keep the connection open and to notice closed clients
+    @Value("${api.stream.heartbeat-ms:15000}")
+    private long heartbeatMs;
+
+    private Semaphore slots;
+    private ExecutorService senders;
+    private Counter gaps;
+
+    @PostConstruct
+    public void init() {
+        slots = new Semaphore(maxSubscribers);
+        AtomicInteger threadNumber = new AtomicInteger();
+        senders = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "transaction-stream-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("api.stream.subscribers", slots, s -> maxSubscribers - s.availablePermits())
+                .description("Clients subscribed to the transaction stream")
+                .register(meterRegistry);
+        gaps = Counter.builder("api.stream.gaps")
+                .description("Gap events sent to subscribers that fell behind the stream buffer")
+                .register(meterRegistry);
+    }
+
+    // Open a stream of the transactions matching the (optional) address filters, starting after the given block,
+    // or with the next committed block if none is given
+    public SseEmitter subscribe(String fromAddress, String toAddress, Long afterBlock) {
+        if (!feed.isEnabled()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "The transaction stream is disabled");
+        }
+        if (!slots.tryAcquire()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many stream subscribers");
+        }
+        // Uses the MVC async request timeout; clients reconnect with Last-Event-ID
+        SseEmitter emitter = new SseEmitter();
+        AtomicBoolean open = new AtomicBoolean(true);
+        emitter.onCompletion(() -> open.set(false));
+        emitter.onTimeout(() -> open.set(false));
+        emitter.onError(error -> open.set(false));
+        try {
+            senders.execute(() -> {
+                try {
+                    send(emitter, open, fromAddress, toAddress, afterBlock);
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            slots.release();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Transaction stream is shutting down");
+        }
+        return emitter;
+    }
+
+    private void send(SseEmitter emitter, AtomicBoolean open, String fromAddress, String toAddress, Long afterBlock) {
+        try {
+            TransactionFeed.Position position = feed.position(afterBlock);
+            long sequence = position.sequence();
+            // Last block the client has seen or skipped
+            long cursor = position.afterBlock();
+            if (position.missedThroughBlock() > cursor) {
+                sendGap(emitter, cursor + 1, position.missedThroughBlock());
+                cursor = position.missedThroughBlock();
+            }
+            while (open.get()) {
+                TransactionFeed.Read read = feed.read(sequence, READ_BLOCKS, heartbeatMs);
+                if (read.blocks().isEmpty()) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                    continue;
+                }
+                if (read.missedThroughBlock() > cursor) {
+                    sendGap(emitter, cursor + 1, read.missedThroughBlock());
+                }
+                for (TransactionFeed.Block block : read.blocks()) {
+                    List<TransactionEntity> matching = filter(block.transactions(), fromAddress, toAddress);
+                    if (!matching.isEmpty()) {
+                        emitter.send(SseEmitter.event()
+                                .id(Long.toString(block.number()))
+                                .name("transactions")
+                                .data(matching, MediaType.APPLICATION_JSON));
+                    }
+                    cursor = Math.max(cursor, block.number());
+                }
+                sequence = read.nextSequence();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The client went away or the response timed out
+            log.debug("Transaction stream closed: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            emitter.complete();
+        }
+    }
+
+    private void sendGap(SseEmitter emitter, long fromBlock, long toBlock) throws IOException {
+        gaps.increment();
+        emitter.send(SseEmitter.event()
+                .name("gap")
+                .data(Map.of("fromBlock", fromBlock, "toBlock", toBlock), MediaType.APPLICATION_JSON));
+    }
+
+    private static List<TransactionEntity> filter(List<TransactionEntity> transactions, String fromAddress,
+                                                  String toAddress) {
+        if (fromAddress == null && toAddress == null) {
+            return transactions;
+        }
+        List<TransactionEntity> matching = new ArrayList<>();
+        for (TransactionEntity transaction : transactions) {
+            if ((fromAddress == null || fromAddress.equalsIgnoreCase(transaction.getFromAddress()))
+                    && (toAddress == null || toAddress.equalsIgnoreCase(transaction.getToAddress()))) {
+                matching.add(transaction);
+            }
+        }
+        return matching;
+    }
+
+    // Interrupt the sender threads so that their streams are completed
+    @PreDestroy
+    public void stop() {
+        senders.shutdownNow();
+    }
+}
@@ -1,152 +1,210 @@
 package org.example.hacken.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import io.reactivex.disposables.Disposable;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import org.example.hacken.ingest.BlockDecoder;
+import org.example.hacken.ingest.DecodedBlock;
+import org.example.hacken.ingest.IngestionPipeline;
 import org.example.hacken.model.ProcessedBlock;
 import org.example.hacken.repository.ProcessedBlockRepository;
-import org.example.hacken.model.TransactionEntity;
-import org.example.hacken.repository.TransactionRepository;
-import org.hibernate.exception.ConstraintViolationException;
+import org.example.hacken.rpc.JsonRpcBatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.web3j.protocol.Web3j;
 import org.web3j.protocol.core.DefaultBlockParameterNumber;
 import org.web3j.protocol.core.methods.response.*;
 
+import java.io.IOException;
 import java.math.BigInteger;
 import java.util.*;
-import java.util.stream.Collectors;
 
 // Mark this class as a service, making it a Spring component
 @Service
 public class TransactionSyncService {
 
+    private static final Logger log = LoggerFactory.getLogger(TransactionSyncService.class);
+
     // Inject the Web3j instance to interact with the Ethereum blockchain
     @Autowired
     private Web3j web3j;
 
-    // Inject the repository to manage transaction entities in the database
+    // Inject the staged pipeline that decodes and persists blocks
     @Autowired
-    private TransactionRepository transactionRepository;
+    private IngestionPipeline ingestionPipeline;
 
     // Inject the repository to manage processed blocks in the database
     @Autowired
     private ProcessedBlockRepository processedBlockRepository;
 
+    // Inject the batching RPC layer used to fetch the blocks announced by the newHeads subscription
+    @Autowired
+    private JsonRpcBatcher rpcBatcher;
+
+    // Inject the backfill engine used to catch up on blocks missed during downtime
+    @Autowired
+    private BlockBackfillService blockBackfillService;
+
+    // Registry for the metrics of the newHeads subscription
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Inject the lease-based sync used instead when several instances share the ingestion
+    @Autowired
+    private LeasedBlockSync leasedBlockSync;
+
+    // "single" (this instance follows the chain from the processed_block checkpoint) or "leased" (instances share
+    // the work through block-range leases, see LeasedBlockSync)
+    @Value("${sync.coordination.mode:single}")
+    private String coordinationMode;
+
+    // Whether the gap between the last processed block and the chain head is filled by the parallel backfill
+    @Value("${sync.backfill.enabled:true}")
+    private boolean backfillEnabled;
+
+    // How new blocks are discovered: "poll" (HTTP block filters) or "websocket" (newHeads subscription)
+    @Value("${sync.live.mode:poll}")
+    private String liveMode;
+
+    // WebSocket endpoint of the node, used in websocket mode
+    @Value("${sync.live.ws-url:wss://mainnet.infura.io/ws/v3/${infura.project.id}}")
+    private String wsUrl;
+
+    // Backoff between reconnect attempts, doubled after every failed attempt up to the maximum
+    @Value("${sync.live.reconnect-min-delay-ms:1000}")
+    private long reconnectMinDelayMs;
+
+    @Value("${sync.live.reconnect-max-delay-ms:30000}")
+    private long reconnectMaxDelayMs;
+
+    // A subscription without a new head for this long is considered dead and reconnected
+    @Value("${sync.live.stale-after-ms:60000}")
+    private long staleAfterMs;
+
     // Disposable to manage the blockchain subscription lifecycle
-    private Disposable subscription;
+    private volatile Disposable subscription;
+
+    // The newHeads subscription in websocket mode
+    private volatile NewHeadsSubscriber newHeadsSubscriber;
+
+    // Whether a block dump is imported on startup; the sync is then started by BlockDumpImporter once the dump is
+    // written, so that it resumes behind the dump instead of fetching the same blocks over RPC
+    @Value("${import.dump.enabled:false}")
+    private boolean importDumpEnabled;
 
-    // Store the last processed block number to ensure continuity
-    private BigInteger lastProcessedBlock;
+    // Thread running the backfill before handing over to live following
+    private Thread backfillThread;
+
+    // The last block handed to the pipeline, used to continue live following after the backfill
+    private BigInteger lastSubmittedBlock;
 
     // This method is executed after the service is initialized (post-construction)
     @PostConstruct
-    public void start() {
-        lastProcessedBlock = loadLastProcessedBlock();  // Load last processed block from the DB
-
-        subscription = web3j.replayPastAndFutureBlocksFlowable(
-                        new DefaultBlockParameterNumber(lastProcessedBlock), true)
-                .subscribe(block -> {
-                    try {
-                        processBlock(block);  // Process each new block
-                        lastProcessedBlock = block.getBlock().getNumber();  // Update last processed block number
-                        saveLastProcessedBlock(lastProcessedBlock);  // Save to DB after processing each block
-                    } catch (Exception e) {
-                        System.err.println("Error processing block: " + e.getMessage());
-                    }
-                }, error -> {
-                    System.err.println("Error in block subscription: " + error.getMessage());
-                });
+    public void init() {
+        if (importDumpEnabled) {
+            log.info("Sync deferred until the block dump import has finished");
+            return;
+        }
+        start();
     }
 
+    // Start following the chain from the checkpoint
+    public synchronized void start() {
+        if ("leased".equalsIgnoreCase(coordinationMode)) {
+            leasedBlockSync.start();
+            return;
+        }
 
-    // Process a single Ethereum block
-    private void processBlock(EthBlock block) {
-        // Convert the block's transactions into a list of Transaction objects
-        List<Transaction> transactions = block.getBlock().getTransactions().stream()
-                .map(txResult -> (Transaction) txResult.get())
-                .collect(Collectors.toList());
+        lastSubmittedBlock = loadLastProcessedBlock();  // Load last processed block from the DB
 
-        // If no transactions are present, skip further processing
-        if (transactions.isEmpty()) {
+        if (!backfillEnabled) {
+            followFrom(lastSubmittedBlock);
             return;
         }
 
-        // Extract the transaction hashes from the block
-        List<String> txHashes = transactions.stream()
-                .map(Transaction::getHash)
-                .collect(Collectors.toList());
+        // Catch up in the background so that the application startup is not blocked by the backfill
+        backfillThread = new Thread(this::backfillAndFollow, "block-backfill");
+        backfillThread.setDaemon(true);
+        backfillThread.start();
+    }
 
+    // Backfill the blocks between the last processed block and the chain head, then switch to live following
+    private void backfillAndFollow() {
         try {
-            // Fetch existing transaction hashes from the database to avoid duplicates
-            List<String> existingTxHashes = transactionRepository.findExistingTransactionHashes(txHashes);
-            Set<String> existingTxHashSet = new HashSet<>(existingTxHashes);
-
-            // Filter out transactions that are already in the database
-            List<TransactionEntity> newEntities = transactions.stream()
-                    .filter(tx -> !existingTxHashSet.contains(tx.getHash()))
-                    .map(this::mapTransaction) // Convert each transaction into a TransactionEntity
-                    .collect(Collectors.toList());
-
-            // Save the new transactions with error handling
-            saveNewTransactions(newEntities);
+            BigInteger chainHead = web3j.ethBlockNumber().send().getBlockNumber();
+            lastSubmittedBlock = blockBackfillService.backfill(
+                    lastSubmittedBlock.add(BigInteger.ONE), chainHead, BlockDecoder::decode, this::submitDecoded);
         } catch (Exception e) {
-            // Log any errors during the transaction processing of this block
-            System.err.println("Error processing transactions in block " + block.getBlock().getNumber() + ": " + e.getMessage());
+            log.error("Error during backfill, continuing with live following", e);
         }
-    }
 
-    // Save the new transactions into the database with exception handling for constraint violations
-    public void saveNewTransactions(List<TransactionEntity> newEntities) {
-        int batchSize = 100;  // You can adjust the batch size based on the database performance
-        List<List<TransactionEntity>> batches = partitionList(newEntities, batchSize);
-
-        for (List<TransactionEntity> batch : batches) {
-            try {
-                transactionRepository.saveAll(batch);  // Save the batch of transactions
-                // Print each transaction's details after it's saved
-                batch.forEach(entity -> {
-                    System.out.println("Transaction saved: From Address: " + entity.getFromAddress() +
-                            " To Address: " + entity.getToAddress());
-                });
-            } catch (Exception e) {
-                System.err.println("Error saving batch: " + e.getMessage());
-            }
+        if (!Thread.currentThread().isInterrupted()) {
+            // Blocks mined while the backfill was running are replayed by the live subscription
+            followFrom(lastSubmittedBlock.add(BigInteger.ONE));
         }
     }
 
-    // Helper method to partition the list into smaller batches
-    private <T> List<List<T>> partitionList(List<T> list, int size) {
-        List<List<T>> partitions = new ArrayList<>();
-        for (int i = 0; i < list.size(); i += size) {
-            partitions.add(list.subList(i, Math.min(i + size, list.size())));
+    // Subscribe to past and future blocks starting at the given block number
+    private void followFrom(BigInteger startBlock) {
+        if ("websocket".equalsIgnoreCase(liveMode)) {
+            // Each new head is fetched over HTTP together with any blocks missed before it (see fetchRange)
+            newHeadsSubscriber = new NewHeadsSubscriber(wsUrl, reconnectMinDelayMs, reconnectMaxDelayMs, staleAfterMs,
+                    this::fetchRange, meterRegistry);
+            newHeadsSubscriber.start(startBlock.subtract(BigInteger.ONE));
+            return;
         }
-        return partitions;
+        subscription = web3j.replayPastAndFutureBlocksFlowable(
+                        new DefaultBlockParameterNumber(startBlock), true)
+                .subscribe(block -> {
+                    // Blocks while the pipeline is saturated, which throttles the subscription
+                    ingestionPipeline.submit(block);
+                }, error -> {
+                    log.error("Error in block subscription", error);
+                });
     }
 
+    // Fetch blocks [fromBlock, toBlock] for the newHeads subscription: a single new head with one request,
+    // a gap through the parallel backfill. Returns the last block handed to the pipeline.
+    private BigInteger fetchRange(BigInteger fromBlock, BigInteger toBlock) throws Exception {
+        if (fromBlock.compareTo(toBlock) < 0) {
+            return blockBackfillService.backfill(fromBlock, toBlock, BlockDecoder::decode, this::submitDecoded);
+        }
+        EthBlock block = JsonRpcBatcher.await(rpcBatcher.getBlockByNumber(toBlock, true));
+        if (block.getBlock() == null) {
+            throw new IOException("Block " + toBlock + " is not available from the node yet");
+        }
+        ingestionPipeline.submit(block);
+        return toBlock;
+    }
 
-    // Convert a Transaction object to a TransactionEntity for database storage
-    private TransactionEntity mapTransaction(Transaction tx) {
-        TransactionEntity entity = new TransactionEntity();
-        entity.setTransactionHash(tx.getHash()); // Set the transaction hash
-        entity.setFromAddress(tx.getFrom()); // Set the sender's address
-        entity.setToAddress(tx.getTo()); // Set the recipient's address
-        entity.setValue(tx.getValue() != null ? tx.getValue().toString() : "0"); // Set the transaction value (or 0 if null)
-        return entity; // Return the populated TransactionEntity
+    // Pass a block decoded by the backfill workers to the persist stage; called in ascending block order
+    private void submitDecoded(BigInteger blockNumber, DecodedBlock block) {
+        try {
+            ingestionPipeline.submitDecoded(block);
+        } catch (InterruptedException e) {
+            // Stops the backfill loop, which checks the interrupt flag while waiting for the next window
+            Thread.currentThread().interrupt();
+        }
     }
 
     // This method is executed before the service is destroyed (pre-destruction)
     @PreDestroy
     public void stop() {
+        if (backfillThread != null) {
+            backfillThread.interrupt();
+        }
         if (subscription != null && !subscription.isDisposed()) {
             subscription.dispose();
         }
-        // Ensure the last processed block is saved before the service shuts down
-        if (lastProcessedBlock != null) {
-            saveLastProcessedBlock(lastProcessedBlock);
+        if (newHeadsSubscriber != null) {
+            newHeadsSubscriber.stop();
         }
+        leasedBlockSync.stop();
+        // The pipeline drains its queues and writes the checkpoint with its last group on shutdown
     }
 
 
@@ -167,12 +225,4 @@ public class TransactionSyncService {
             }
         }
     }
-
-    // Save the last processed block number to the database
-    private void saveLastProcessedBlock(BigInteger blockNumber) {
-        // Create a new ProcessedBlock object with the block number
-        ProcessedBlock processedBlock = new ProcessedBlock(blockNumber);
-        // Save the ProcessedBlock to the database
-        processedBlockRepository.save(processedBlock);
-    }
 }
@@ -0,0 +1,143 @@
+package org.example.hacken.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.example.hacken.model.TransactionEntity;
+import org.example.hacken.persistence.AddressStatsBatch;
+import org.example.hacken.persistence.AddressStatsWriter;
+import org.example.hacken.persistence.TransactionArchive;
+import org.example.hacken.persistence.TransactionPartitionManager;
+import org.example.hacken.persistence.TransactionSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Persists transactions fetched on demand (e.g. by hash lookups) in the background, so that request threads do not
+// wait for the database write. Writes are grouped into batches and go through the regular transaction sink.
+// Only mined transactions are queued, since rows are filed under their block number.
+@Service
+public class TransactionWriteBehind {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionWriteBehind.class);
+
+    @Autowired
+    private TransactionSink transactionSink;
+
+    @Autowired
+    private AddressStatsWriter addressStatsWriter;
+
+    @Autowired
+    private TransactionPartitionManager partitionManager;
+
+    @Autowired
+    private TransactionArchive archive;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Maximum number of transactions waiting to be written
+    @Value("${cache.write-behind.capacity:10000}")
+    private int capacity;
+
+    // Maximum number of transactions written in one batch
+    @Value("${cache.write-behind.batch-size:500}")
+    private int batchSize;
+
+    private BlockingQueue<TransactionEntity> queue;
+    private Thread writer;
+    private volatile boolean running = true;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(capacity);
+        Gauge.builder("cache.write-behind.queue.size", queue, BlockingQueue::size)
+                .description("Transactions waiting to be persisted by the write-behind queue")
+                .register(meterRegistry);
+
+        writer = new Thread(this::drainLoop, "transaction-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Queue a transaction for persistence; when the queue is full the caller writes it directly instead
+    public void enqueue(TransactionEntity entity) {
+        if (!queue.offer(entity)) {
+            write(List.of(entity));
+        }
+    }
+
+    // Queue several transactions; whatever does not fit into the queue is written directly in one batch
+    public void enqueueAll(List<TransactionEntity> entities) {
+        List<TransactionEntity> overflow = new ArrayList<>();
+        for (TransactionEntity entity : entities) {
+            if (!queue.offer(entity)) {
+                overflow.add(entity);
+            }
+        }
+        write(overflow);
+    }
+
+    private void drainLoop() {
+        while (running || !queue.isEmpty()) {
+            try {
+                TransactionEntity first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<TransactionEntity> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                // Interrupted during shutdown: write what is left and exit
+                List<TransactionEntity> rest = new ArrayList<>();
+                queue.drainTo(rest);
+                write(rest);
+                return;
+            }
+        }
+    }
+
+    private void write(List<TransactionEntity> entities) {
+        // Transactions of archived blocks are already in the archive; writing them would bring back a dropped partition
+        long archivedBelow = archive.archivedBelow();
+        List<TransactionEntity> batch = archivedBelow == 0 ? entities
+                : entities.stream().filter(entity -> entity.getBlockNumber() >= archivedBelow).toList();
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            partitionManager.ensureCovered(
+                    batch.stream().mapToLong(TransactionEntity::getBlockNumber).min().getAsLong(),
+                    batch.stream().mapToLong(TransactionEntity::getBlockNumber).max().getAsLong());
+            transactionTemplate.executeWithoutResult(status -> {
+                AddressStatsBatch addressStats = new AddressStatsBatch();
+                addressStats.add(transactionSink.write(batch));
+                addressStatsWriter.write(addressStats);
+            });
+        } catch (Exception e) {
+            log.error("Error persisting fetched transactions: count={}", batch.size(), e);
+        }
+    }
+
+    // Let the writer drain the queue before shutting down
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+}
@@ -0,0 +1,55 @@
+-- Runs before Hibernate's schema update (spring.sql.init.mode=always), because Hibernate cannot create partitioned
+-- tables. Partitions themselves are created on demand by TransactionPartitionManager. A transactions table from an
+-- older, unpartitioned layout has to be renamed before upgrading; see "Partitioning by block range" in the README.
+CREATE TABLE IF NOT EXISTS transactions (
+    transaction_hash bytea NOT NULL,
+    block_number bigint NOT NULL,
+    block_timestamp timestamp(6) with time zone,
+    from_address bytea NOT NULL,
+    to_address bytea,
+    tx_value numeric(78,0) NOT NULL,
+    gas_used bigint,
+    status smallint,
+    -- A primary key on a partitioned table must contain the partition key
+    CONSTRAINT pk_transactions_hash_block PRIMARY KEY (transaction_hash, block_number)
+) PARTITION BY RANGE (block_number);
+
+-- Receipt columns added after the first partitioned layout; adding nullable columns does not rewrite the table
+ALTER TABLE transactions ADD COLUMN IF NOT EXISTS gas_used bigint;
+ALTER TABLE transactions ADD COLUMN IF NOT EXISTS status smallint;
+
+CREATE INDEX IF NOT EXISTS idx_transactions_block_number ON transactions (block_number);
+-- The address indexes are ordered by hash like the keyset pages, so a page of an address reads only its own rows
+-- instead of sorting all of them. They replace the single-column indexes of earlier versions, which are dropped
+-- once the new ones exist.
+CREATE INDEX IF NOT EXISTS idx_transactions_from_address_hash ON transactions (from_address, transaction_hash);
+CREATE INDEX IF NOT EXISTS idx_transactions_to_address_hash ON transactions (to_address, transaction_hash);
+DROP INDEX IF EXISTS idx_transactions_from_address;
+DROP INDEX IF EXISTS idx_transactions_to_address;
+CREATE INDEX IF NOT EXISTS idx_transactions_value ON transactions (tx_value, transaction_hash);
+
+-- One row per stored transaction hash: the partitioned table only enforces uniqueness per block, so the writers claim
+-- a hash here first, and by-hash reads look up its block here to read a single partition. Rows migrated without a
+-- block (block 0) are replaced once the transaction is ingested with its real block.
+CREATE TABLE IF NOT EXISTS transaction_blocks (
+    transaction_hash bytea PRIMARY KEY,
+    block_number bigint NOT NULL
+);
+
+-- One-off upgrade of a database written before transaction_blocks existed; both statements are no-ops once the
+-- table has rows. Migrated block-0 copies of transactions that have since been stored under their real block are
+-- removed, then the table is filled from the stored transactions.
+DELETE FROM transactions t
+WHERE t.block_number = 0
+  AND NOT EXISTS (SELECT 1 FROM transaction_blocks)
+  AND EXISTS (SELECT 1 FROM transactions r WHERE r.transaction_hash = t.transaction_hash AND r.block_number <> 0);
+INSERT INTO transaction_blocks (transaction_hash, block_number)
+SELECT DISTINCT ON (transaction_hash) transaction_hash, block_number FROM transactions
+WHERE NOT EXISTS (SELECT 1 FROM transaction_blocks)
+ORDER BY transaction_hash, block_number DESC;
+
+-- Addresses of the optional ingestion watchlist (watchlist.source=db). Created here rather than by Hibernate because
+-- the watchlist is loaded before the ingestion starts, which may be before Hibernate has updated the schema.
+CREATE TABLE IF NOT EXISTS watched_addresses (
+    address bytea PRIMARY KEY
+);
@@ -0,0 +1,69 @@
+package org.example.hacken.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AddressSetTest {
+
+    @Test
+    void containsExactlyTheAddedAddressesAcrossResizes() {
+        Random random = new Random(42);
+        Set<String> added = new HashSet<>();
+        // Starts small so that the table is resized several times
+        AddressSet set = new AddressSet(4);
+        for (int i = 0; i < 20_000; i++) {
+            String address = randomAddress(random);
+            assertTrue(set.add(address));
+            added.add(address);
+        }
+        // Sequential addresses as used by precompiles and test networks
+        for (int i = 1; i <= 1000; i++) {
+            String address = String.format("0x%040x", i);
+            set.add(address);
+            added.add(address);
+        }
+
+        assertEquals(added.size(), set.size());
+        for (String address : added) {
+            assertTrue(set.contains(address), address);
+        }
+        for (int i = 0; i < 20_000; i++) {
+            String address = randomAddress(random);
+            assertEquals(added.contains(address), set.contains(address));
+        }
+        assertFalse(set.contains(String.format("0x%040x", 1001)));
+    }
+
+    @Test
+    void matchesRegardlessOfCaseAndRejectsMalformedInput() {
+        AddressSet set = new AddressSet(16);
+        assertTrue(set.add("0xAbCdEf0123456789aBcDeF0123456789AbCdEf01"));
+        assertFalse(set.add("0x1234"));
+        assertFalse(set.add("0xzzcdef0123456789abcdef0123456789abcdef01"));
+        // Adding the same address again does not grow the set
+        assertTrue(set.add(" 0xabcdef0123456789abcdef0123456789abcdef01 "));
+
+        assertEquals(1, set.size());
+        assertTrue(set.contains("0xabcdef0123456789abcdef0123456789abcdef01"));
+        assertTrue(set.contains("0XABCDEF0123456789ABCDEF0123456789ABCDEF01"));
+        assertFalse(set.contains("0xabcdef0123456789abcdef0123456789abcdef02"));
+        assertFalse(set.contains("0xabcdef0123456789abcdef0123456789abcdef0"));
+        assertFalse(set.contains("0xffffffffffffffffabcdef0123456789abcdeg01"));
+        assertFalse(set.contains(null));
+    }
+
+    private static String randomAddress(Random random) {
+        StringBuilder address = new StringBuilder("0x");
+        for (int i = 0; i < 40; i++) {
+            address.append(Character.forDigit(random.nextInt(16), 16));
+        }
+        return address.toString();
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.hacken.ingest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.web3j.protocol.core.methods.response.EthBlock;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BlockDumpReaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsResponsesAndBareBlocksFromGzipDump() throws Exception {
+        Path dump = directory.resolve("blocks.ndjson.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(dump))) {
+            out.write((response(7) + "\n" + block(8) + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        List<EthBlock> blocks = new ArrayList<>();
+        assertEquals(2, BlockDumpReader.read(dump, blocks::add));
+
+        assertEquals(BigInteger.valueOf(7), blocks.get(0).getBlock().getNumber());
+        assertEquals(BigInteger.valueOf(8), blocks.get(1).getBlock().getNumber());
+        DecodedBlock decoded = BlockDecoder.decode(blocks.get(1));
+        assertEquals(hash(8), decoded.transactions().get(0).getTransactionHash());
+        assertEquals("255", decoded.transactions().get(0).getValue());
+        assertEquals(8L, decoded.transactions().get(0).getBlockNumber());
+    }
+
+    @Test
+    void listsDumpFilesOfDirectoryInNameOrder() throws Exception {
+        Files.writeString(directory.resolve("b.jsonl"), block(2));
+        Files.writeString(directory.resolve("a.ndjson.gz"), "");
+        Files.writeString(directory.resolve("notes.txt"), "");
+
+        assertEquals(List.of(directory.resolve("a.ndjson.gz"), directory.resolve("b.jsonl")),
+                BlockDumpReader.dumpFiles(directory));
+    }
+
+    @Test
+    void rejectsBlocksWithoutTransactionObjects() throws Exception {
+        Path dump = directory.resolve("hashes.ndjson");
+        Files.writeString(dump, "{\"number\":\"0x1\",\"transactions\":[\"" + hash(1) + "\"]}\n");
+
+        assertThrows(IOException.class, () -> BlockDumpReader.read(dump, block -> {
+        }));
+    }
+
+    private static String response(long number) {
+        return "{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":" + block(number) + "}";
+    }
+
+    private static String block(long number) {
+        return "{\"number\":\"0x" + Long.toHexString(number) + "\",\"transactions\":[{"
+                + "\"hash\":\"" + hash(number) + "\","
+                + "\"from\":\"0x" + "1".repeat(40) + "\","
+                + "\"to\":\"0x" + "2".repeat(40) + "\","
+                + "\"value\":\"0xff\"}]}";
+    }
+
+    private static String hash(long number) {
+        return String.format("0x%064x", number);
+    }
+}
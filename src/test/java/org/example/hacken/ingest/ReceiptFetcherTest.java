@@ -0,0 +1,183 @@
+package org.example.hacken.ingest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.hacken.model.EventLog;
+import org.example.hacken.model.TransactionEntity;
+import org.example.hacken.rpc.JsonRpcBatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.http.HttpService;
+
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ReceiptFetcherTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+    private HttpServer server;
+    private Web3j web3j;
+    private JsonRpcBatcher batcher;
+
+    @AfterEach
+    void tearDown() {
+        batcher.stop();
+        web3j.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void blockReceiptsAreFetchedWithOneCall() throws Exception {
+        ReceiptFetcher fetcher = start(true);
+
+        DecodedBlock block = JsonRpcBatcher.await(fetcher.attach(block(7, 3)));
+
+        assertEquals(1, calls.get("eth_getBlockReceipts").get());
+        assertNull(calls.get("eth_getTransactionReceipt"));
+        assertReceipts(block, 7, 3);
+    }
+
+    @Test
+    void nodesWithoutBlockReceiptsAreAskedPerTransaction() throws Exception {
+        ReceiptFetcher fetcher = start(false);
+
+        DecodedBlock first = JsonRpcBatcher.await(fetcher.attach(block(7, 3)));
+        DecodedBlock second = JsonRpcBatcher.await(fetcher.attach(block(8, 2)));
+
+        // Only the first block tries eth_getBlockReceipts; afterwards the fallback is used right away
+        assertEquals(1, calls.get("eth_getBlockReceipts").get());
+        assertEquals(5, calls.get("eth_getTransactionReceipt").get());
+        assertReceipts(first, 7, 3);
+        assertReceipts(second, 8, 2);
+    }
+
+    private static void assertReceipts(DecodedBlock block, long number, int transactions) {
+        for (int i = 0; i < transactions; i++) {
+            TransactionEntity transaction = block.transactions().get(i);
+            assertEquals(21000L + i, transaction.getGasUsed());
+            // Every other transaction reverted
+            assertEquals(i % 2 == 0 ? 1 : 0, transaction.getStatus());
+        }
+        // One log per transaction, in log index order
+        assertEquals(transactions, block.logs().size());
+        for (int i = 0; i < transactions; i++) {
+            EventLog eventLog = block.logs().get(i);
+            assertEquals(number, eventLog.getBlockNumber());
+            assertEquals(i, eventLog.getLogIndex());
+            assertEquals(hash(number, i), eventLog.getTransactionHash());
+            assertEquals(topic(1), eventLog.getTopic0());
+            assertEquals(topic(i), eventLog.getTopic1());
+            assertNull(eventLog.getTopic2());
+        }
+    }
+
+    // Start a stub node and a fetcher using it; the node answers eth_getBlockReceipts only if supported
+    private ReceiptFetcher start(boolean blockReceiptsSupported) throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            JsonNode payload = objectMapper.readTree(exchange.getRequestBody());
+            ArrayNode body = objectMapper.createArrayNode();
+            for (JsonNode request : payload) {
+                String method = request.get("method").asText();
+                calls.computeIfAbsent(method, key -> new AtomicInteger()).incrementAndGet();
+                ObjectNode response = body.addObject();
+                response.put("jsonrpc", "2.0");
+                response.put("id", request.get("id").asLong());
+                String param = request.get("params").get(0).asText();
+                if (method.equals("eth_getTransactionReceipt")) {
+                    long number = Long.parseLong(param.substring(2, 58), 16);
+                    int index = Integer.parseInt(param.substring(58), 16);
+                    response.set("result", receipt(number, index));
+                } else if (blockReceiptsSupported) {
+                    long number = Long.parseLong(param.substring(2), 16);
+                    ArrayNode receipts = response.putArray("result");
+                    // Three transactions in every block; the node answers in reverse order
+                    for (int i = 2; i >= 0; i--) {
+                        receipts.add(receipt(number, i));
+                    }
+                } else {
+                    ObjectNode error = response.putObject("error");
+                    error.put("code", -32601);
+                    error.put("message", "the method eth_getBlockReceipts does not exist/is not available");
+                }
+            }
+            byte[] bytes = objectMapper.writeValueAsBytes(body);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+
+        HttpService service = new HttpService("http://localhost:" + server.getAddress().getPort());
+        web3j = Web3j.build(service);
+        batcher = new JsonRpcBatcher();
+        ReflectionTestUtils.setField(batcher, "web3j", web3j);
+        ReflectionTestUtils.setField(batcher, "web3jService", service);
+        ReflectionTestUtils.setField(batcher, "maxBatchSize", 10);
+        ReflectionTestUtils.setField(batcher, "flushIntervalMs", 5L);
+        ReflectionTestUtils.setField(batcher, "responseTimeoutMs", 5000L);
+        batcher.init();
+
+        ReceiptFetcher fetcher = new ReceiptFetcher();
+        ReflectionTestUtils.setField(fetcher, "rpcBatcher", batcher);
+        ReflectionTestUtils.setField(fetcher, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(fetcher, "enabled", true);
+        ReflectionTestUtils.setField(fetcher, "blockReceipts", true);
+        ReflectionTestUtils.setField(fetcher, "maxBlocksInFlight", 4);
+        ReflectionTestUtils.setField(fetcher, "maxAttempts", 1);
+        fetcher.init();
+        return fetcher;
+    }
+
+    private ObjectNode receipt(long number, int index) {
+        ObjectNode receipt = objectMapper.createObjectNode();
+        receipt.put("transactionHash", hash(number, index));
+        receipt.put("blockNumber", "0x" + Long.toHexString(number));
+        receipt.put("gasUsed", "0x" + Long.toHexString(21000 + index));
+        receipt.put("status", index % 2 == 0 ? "0x1" : "0x0");
+        ObjectNode entry = receipt.putArray("logs").addObject();
+        entry.put("logIndex", "0x" + Integer.toHexString(index));
+        entry.put("transactionHash", hash(number, index));
+        entry.put("address", String.format("0x%040x", 0xabc));
+        entry.put("data", "0x");
+        entry.putArray("topics").add(topic(1)).add(topic(index));
+        return receipt;
+    }
+
+    private static DecodedBlock block(long number, int transactions) {
+        List<TransactionEntity> entities = new ArrayList<>();
+        for (int i = 0; i < transactions; i++) {
+            TransactionEntity entity = new TransactionEntity();
+            entity.setTransactionHash(hash(number, i));
+            entity.setBlockNumber(number);
+            entities.add(entity);
+        }
+        return new DecodedBlock(BigInteger.valueOf(number), entities);
+    }
+
+    private static String hash(long number, int index) {
+        return String.format("0x%056x%08x", number, index);
+    }
+
+    private static String topic(int i) {
+        return String.format("0x%064x", i);
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.hacken.ingest;
+
+import org.example.hacken.model.TransactionEntity;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionFeedTest {
+
+    @Test
+    void readersGetCommittedBlocksInOrder() throws Exception {
+        TransactionFeed feed = feed(8);
+        TransactionFeed.Position position = feed.position(null);
+        assertEquals(-1, position.afterBlock());
+
+        // One commit covering three blocks
+        List<TransactionEntity> inserted = new ArrayList<>(transactions(10, 2));
+        inserted.addAll(transactions(11, 1));
+        inserted.addAll(transactions(12, 3));
+        feed.publish(inserted);
+
+        TransactionFeed.Read read = feed.read(position.sequence(), 10, 0);
+        assertEquals(List.of(10L, 11L, 12L), read.blocks().stream().map(TransactionFeed.Block::number).toList());
+        assertEquals(3, read.blocks().get(2).transactions().size());
+        assertEquals(-1, read.missedThroughBlock());
+
+        // Nothing new: the read times out empty
+        assertTrue(feed.read(read.nextSequence(), 10, 10).blocks().isEmpty());
+    }
+
+    @Test
+    void resumingReplaysTheBlocksAfterTheCursor() throws Exception {
+        TransactionFeed feed = feed(8);
+        for (long block = 1; block <= 5; block++) {
+            feed.publish(transactions(block, 1));
+        }
+
+        TransactionFeed.Position position = feed.position(3L);
+        assertEquals(-1, position.missedThroughBlock());
+        TransactionFeed.Read read = feed.read(position.sequence(), 10, 0);
+        assertEquals(List.of(4L, 5L), read.blocks().stream().map(TransactionFeed.Block::number).toList());
+
+        // A cursor at the newest block waits for the next one
+        assertEquals(5, feed.position(5L).sequence());
+        assertEquals(5, feed.position(null).afterBlock());
+    }
+
+    @Test
+    void readersThatFallBehindAreToldWhatTheyMissed() throws Exception {
+        TransactionFeed feed = feed(4);
+        long start = feed.position(null).sequence();
+        for (long block = 1; block <= 10; block++) {
+            feed.publish(transactions(block, 1));
+        }
+
+        // Blocks 1-6 have been overwritten
+        TransactionFeed.Read read = feed.read(start, 10, 0);
+        assertEquals(6, read.missedThroughBlock());
+        assertEquals(List.of(7L, 8L, 9L, 10L), read.blocks().stream().map(TransactionFeed.Block::number).toList());
+
+        TransactionFeed.Position resumed = feed.position(2L);
+        assertEquals(6, resumed.missedThroughBlock());
+        assertEquals(7, feed.read(resumed.sequence(), 1, 0).blocks().get(0).number());
+    }
+
+    private static TransactionFeed feed(int capacity) {
+        TransactionFeed feed = new TransactionFeed();
+        ReflectionTestUtils.setField(feed, "capacity", capacity);
+        feed.init();
+        return feed;
+    }
+
+    private static List<TransactionEntity> transactions(long block, int count) {
+        List<TransactionEntity> transactions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            TransactionEntity entity = new TransactionEntity();
+            entity.setTransactionHash(String.format("0x%056x%08x", block, i));
+            entity.setBlockNumber(block);
+            transactions.add(entity);
+        }
+        return transactions;
+    }
+}
@@ -0,0 +1,174 @@
+package org.example.hacken.persistence;
+
+import org.example.hacken.model.HexBytesConverter;
+import org.example.hacken.model.TransactionEntity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArchiveSegmentTest {
+
+    private static final String SENDER = "0x" + "ab".repeat(20);
+    private static final String RECIPIENT = "0x" + "cd".repeat(20);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writtenRowsReadBackSortedByHash() throws Exception {
+        List<TransactionEntity> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(transaction(hash(99 - i), 1000 + i % 10, i % 3 == 0 ? null : RECIPIENT, BigInteger.valueOf(i)));
+        }
+        // A contract creation with the largest possible value, and a failed transaction with receipt fields
+        rows.get(0).setValue(BigInteger.TWO.pow(256).subtract(BigInteger.ONE).toString());
+        rows.get(1).setGasUsed(21000L);
+        rows.get(1).setStatus(0);
+
+        Path file = directory.resolve("segment.seg");
+        ArchiveSegment segment = ArchiveSegment.write(file, 1000, 1010, rows);
+        assertFalse(Files.exists(directory.resolve("segment.seg.tmp")));
+        assertEquals(100, segment.rows());
+
+        ArchiveSegment reopened = ArchiveSegment.open(file);
+        ArchiveSegment.Columns columns = reopened.decode();
+        for (int row = 0; row < reopened.rows(); row++) {
+            assertArrayEquals(HexBytesConverter.toBytes(hash(row)), reopened.hash(row));
+        }
+
+        int row = reopened.findRow(HexBytesConverter.toBytes(hash(99)));
+        TransactionEntity first = columns.entity(row);
+        assertEquals(hash(99), first.getTransactionHash());
+        assertEquals(1000L, first.getBlockNumber());
+        assertEquals(Instant.ofEpochSecond(1_700_000_000L + 1000), first.getBlockTimestamp());
+        assertEquals(SENDER, first.getFromAddress());
+        assertNull(first.getToAddress());
+        assertEquals(BigInteger.TWO.pow(256).subtract(BigInteger.ONE).toString(), first.getValue());
+        assertNull(first.getGasUsed());
+        assertNull(first.getStatus());
+
+        TransactionEntity second = columns.entity(reopened.findRow(HexBytesConverter.toBytes(hash(98))));
+        assertEquals(RECIPIENT, second.getToAddress());
+        assertEquals("1", second.getValue());
+        assertEquals(21000L, second.getGasUsed());
+        assertEquals(0, second.getStatus());
+
+        assertEquals(-1, reopened.findRow(HexBytesConverter.toBytes(hash(100))));
+        assertEquals(0, reopened.firstRowAfter(new byte[0]));
+        assertEquals(51, reopened.firstRowAfter(HexBytesConverter.toBytes(hash(50))));
+    }
+
+    @Test
+    void headerAndFiltersRuleOutSegments() throws Exception {
+        ArchiveSegment segment = ArchiveSegment.write(directory.resolve("segment.seg"), 2000, 3000, List.of(
+                transaction(hash(1), 2100, RECIPIENT, BigInteger.TEN),
+                transaction(hash(2), 2200, RECIPIENT, BigInteger.valueOf(500))));
+
+        assertTrue(segment.overlapsBlocks(2150, 2250));
+        assertFalse(segment.overlapsBlocks(2000, 2099));
+        assertFalse(segment.overlapsBlocks(2201, 3000));
+        assertTrue(segment.withinBlocks(2000, 2999));
+        assertFalse(segment.withinBlocks(2150, 2999));
+        assertTrue(segment.overlapsValues(BigInteger.valueOf(100), BigInteger.valueOf(200)));
+        assertFalse(segment.overlapsValues(BigInteger.valueOf(501), BigInteger.valueOf(1000)));
+
+        assertTrue(segment.mightContainAddress(SENDER));
+        assertTrue(segment.mightContainHash(hash(2)));
+        ArchiveSegment.Columns columns = segment.decode();
+        assertEquals(-1, columns.addressIndex("0x" + "ef".repeat(20)));
+        assertEquals(columns.addressIndex(RECIPIENT), columns.toIndex(0));
+    }
+
+    @Test
+    void duplicateHashesKeepTheLatestBlock() throws Exception {
+        ArchiveSegment segment = ArchiveSegment.write(directory.resolve("segment.seg"), 0, 100, List.of(
+                transaction(hash(1), 10, RECIPIENT, BigInteger.ONE),
+                transaction(hash(1), 20, RECIPIENT, BigInteger.ONE)));
+
+        assertEquals(1, segment.rows());
+        assertEquals(20L, segment.decode().entity(0).getBlockNumber());
+    }
+
+    @Test
+    void writerStreamsRowsInHashOrder() throws Exception {
+        ArchiveSegment.Writer writer = new ArchiveSegment.Writer(0, 100);
+        writer.add(HexBytesConverter.toBytes(hash(1)), 20, null, HexBytesConverter.toBytes(SENDER), null,
+                BigInteger.ONE, null, null);
+        // The rows of a hash come latest block first; the older copy is dropped
+        writer.add(HexBytesConverter.toBytes(hash(1)), 10, null, HexBytesConverter.toBytes(SENDER), null,
+                BigInteger.ONE, null, null);
+        writer.add(HexBytesConverter.toBytes(hash(2)), 30, null, HexBytesConverter.toBytes(RECIPIENT),
+                HexBytesConverter.toBytes(SENDER), BigInteger.TWO, null, null);
+        assertThrows(IllegalArgumentException.class, () -> writer.add(HexBytesConverter.toBytes(hash(0)), 40, null,
+                HexBytesConverter.toBytes(SENDER), null, BigInteger.ONE, null, null));
+        assertEquals(2, writer.rows());
+
+        ArchiveSegment segment = writer.finish(directory.resolve("segment.seg"));
+        ArchiveSegment.Columns columns = segment.decode();
+        assertEquals(20L, columns.entity(0).getBlockNumber());
+        // Address indexes refer to the sorted dictionary, whatever order the addresses first appeared in
+        assertEquals(0, columns.addressIndex(SENDER));
+        assertEquals(1, columns.fromIndex(1));
+        assertEquals(0, columns.toIndex(1));
+        assertEquals(RECIPIENT, columns.entity(1).getFromAddress());
+    }
+
+    @Test
+    void valueOrderSeeksToTheCursor() throws Exception {
+        List<TransactionEntity> rows = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            // Values 0..9, five rows each; large values need more than one magnitude byte
+            rows.add(transaction(hash(i), 100, RECIPIENT, BigInteger.valueOf(i % 10).shiftLeft(i % 10 * 8)));
+        }
+        ArchiveSegment segment = ArchiveSegment.write(directory.resolve("segment.seg"), 100, 101, rows);
+        ArchiveSegment.Columns columns = ArchiveSegment.open(segment.file()).decode();
+
+        BigInteger previousValue = BigInteger.ONE.negate();
+        int previousRow = -1;
+        for (int position = 0; position < segment.rows(); position++) {
+            int row = columns.rowInValueOrder(position);
+            int comparison = columns.value(row).compareTo(previousValue);
+            assertTrue(comparison > 0 || (comparison == 0 && row > previousRow));
+            previousValue = columns.value(row);
+            previousRow = row;
+        }
+
+        BigInteger three = BigInteger.valueOf(3).shiftLeft(24);
+        assertEquals(15, columns.valuePosition(three, new byte[0], false));
+        assertEquals(20, columns.valuePosition(three, null, true));
+        // Cursor on the second row of the value: the page continues with the third
+        byte[] second = segment.hash(columns.rowInValueOrder(16));
+        assertEquals(17, columns.valuePosition(three, second, true));
+        assertEquals(16, columns.valuePosition(three, second, false));
+        assertEquals(0, columns.valuePosition(BigInteger.ONE.negate(), new byte[0], true));
+        assertEquals(50, columns.valuePosition(BigInteger.TWO.pow(256), new byte[0], false));
+    }
+
+    private static TransactionEntity transaction(String hash, long block, String to, BigInteger value) {
+        TransactionEntity entity = new TransactionEntity();
+        entity.setTransactionHash(hash);
+        entity.setBlockNumber(block);
+        entity.setBlockTimestamp(Instant.ofEpochSecond(1_700_000_000L + block));
+        entity.setFromAddress(SENDER);
+        entity.setToAddress(to);
+        entity.setValue(value.toString());
+        return entity;
+    }
+
+    private static String hash(int i) {
+        return String.format("0x%064x", i);
+    }
+}
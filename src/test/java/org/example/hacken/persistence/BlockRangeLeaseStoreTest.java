@@ -0,0 +1,150 @@
+package org.example.hacken.persistence;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Testcontainers(disabledWithoutDocker = true)
+class BlockRangeLeaseStoreTest {
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private JdbcTemplate jdbcTemplate;
+    private BlockRangeLeaseStore store;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource =
+                new DriverManagerDataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        // Both tables are created by Hibernate from their entities in the application
+        jdbcTemplate.execute("DROP TABLE IF EXISTS block_range_leases, processed_block");
+        jdbcTemplate.execute("CREATE TABLE processed_block (id integer PRIMARY KEY, block_number numeric(38, 0))");
+        jdbcTemplate.execute("CREATE TABLE block_range_leases (range_start bigint PRIMARY KEY,"
+                + " range_end bigint NOT NULL, status varchar(16) NOT NULL, owner varchar(255),"
+                + " lease_expires_at timestamp(6) with time zone, claims integer NOT NULL)");
+
+        store = new BlockRangeLeaseStore();
+        ReflectionTestUtils.setField(store, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(store, "transactionTemplate",
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+    }
+
+    @Test
+    void firstPlanStartsAtTheChainHead() {
+        assertEquals(0, store.plan(5000, 1000));
+        assertEquals(5000L, checkpoint());
+        assertEquals(1, store.plan(5001, 1000));
+        assertEquals(List.of(List.of(5001L, 5001L)), ranges());
+    }
+
+    @Test
+    void rangesAreAlignedToTheRangeSize() {
+        setCheckpoint(1234);
+        assertEquals(3, store.plan(3500, 1000));
+        assertEquals(List.of(List.of(1235L, 1999L), List.of(2000L, 2999L), List.of(3000L, 3500L)), ranges());
+
+        // The range cut short at the head is completed by the next plan
+        assertEquals(2, store.plan(4200, 1000));
+        assertEquals(List.of(List.of(3501L, 3999L), List.of(4000L, 4200L)), ranges().subList(3, 5));
+        assertEquals(0, store.plan(4200, 1000));
+    }
+
+    @Test
+    void expiredLeaseIsTakenOverAndLostByItsFormerOwner() {
+        setCheckpoint(999);
+        store.plan(2999, 1000);
+
+        // A lease that has already expired
+        BlockRangeLeaseStore.Lease first = store.claim("a", -1000).orElseThrow();
+        assertEquals(new BlockRangeLeaseStore.Lease(1000, 1999), first);
+        assertEquals(first, store.claim("b", 60_000).orElseThrow());
+        // A live lease is not taken over
+        assertEquals(new BlockRangeLeaseStore.Lease(2000, 2999), store.claim("c", 60_000).orElseThrow());
+        assertTrue(store.claim("d", 60_000).isEmpty());
+
+        assertFalse(store.renew(first, "a", 60_000));
+        assertFalse(store.complete(first, "a"));
+        assertTrue(store.complete(first, "b"));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT claims FROM block_range_leases WHERE range_start = 1000",
+                Integer.class));
+    }
+
+    @Test
+    void releasedRangeCanBeClaimedAgain() {
+        setCheckpoint(999);
+        store.plan(1999, 1000);
+        BlockRangeLeaseStore.Lease lease = store.claim("a", 60_000).orElseThrow();
+        store.release(lease, "b");
+        assertTrue(store.claim("b", 60_000).isEmpty());
+        store.release(lease, "a");
+        assertEquals(lease, store.claim("b", 60_000).orElseThrow());
+    }
+
+    @Test
+    void watermarkStopsBelowTheFirstRangeNotDone() {
+        setCheckpoint(999);
+        store.plan(4999, 1000);
+        BlockRangeLeaseStore.Lease first = store.claim("a", 60_000).orElseThrow();
+        BlockRangeLeaseStore.Lease second = store.claim("b", 60_000).orElseThrow();
+        BlockRangeLeaseStore.Lease third = store.claim("c", 60_000).orElseThrow();
+        assertTrue(store.complete(first, "a"));
+        assertTrue(store.complete(third, "c"));
+
+        // The second range is still claimed: the third one, although done, stays until it is reached
+        assertEquals(1999L, store.advanceWatermark());
+        assertEquals(1999L, checkpoint());
+        assertEquals(List.of(List.of(2000L, 2999L), List.of(3000L, 3999L), List.of(4000L, 4999L)), ranges());
+
+        // Now the run of done ranges reaches the pending fourth range
+        assertTrue(store.complete(second, "b"));
+        assertEquals(3999L, store.advanceWatermark());
+        assertEquals(3999L, checkpoint());
+        assertEquals(List.of(List.of(4000L, 4999L)), ranges());
+    }
+
+    @Test
+    void watermarkKeepsTheHighestRangeAndNeverMovesBack() {
+        setCheckpoint(999);
+        store.plan(1999, 1000);
+        BlockRangeLeaseStore.Lease lease = store.claim("a", 60_000).orElseThrow();
+        assertTrue(store.complete(lease, "a"));
+
+        assertEquals(1999L, store.advanceWatermark());
+        // Planning continues after the highest range, which is kept even though it is done
+        assertEquals(List.of(List.of(1000L, 1999L)), ranges());
+
+        // A checkpoint moved further by a dump import is kept
+        setCheckpoint(5000);
+        store.advanceWatermark();
+        assertEquals(5000L, checkpoint());
+    }
+
+    private void setCheckpoint(long block) {
+        jdbcTemplate.update("INSERT INTO processed_block (id, block_number) VALUES (1, ?) ON CONFLICT (id)"
+                + " DO UPDATE SET block_number = EXCLUDED.block_number", block);
+    }
+
+    private Long checkpoint() {
+        return jdbcTemplate.queryForObject("SELECT block_number FROM processed_block WHERE id = 1", Long.class);
+    }
+
+    private List<List<Long>> ranges() {
+        return jdbcTemplate.query("SELECT range_start, range_end FROM block_range_leases ORDER BY range_start",
+                (row, i) -> List.of(row.getLong("range_start"), row.getLong("range_end")));
+    }
+}
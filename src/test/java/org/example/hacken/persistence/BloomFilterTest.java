@@ -0,0 +1,73 @@
+package org.example.hacken.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTest {
+
+    private static final int INSERTIONS = 10_000;
+
+    @Test
+    void everyInsertedHashIsFound() {
+        BloomFilter filter = new BloomFilter(INSERTIONS, 0.01);
+        List<String> hashes = randomHashes(new Random(1), INSERTIONS);
+        hashes.forEach(filter::put);
+
+        for (String hash : hashes) {
+            assertTrue(filter.mightContain(hash));
+        }
+        // Inputs that are not hex hashes go through the fallback hash
+        filter.put("not a hash");
+        assertTrue(filter.mightContain("not a hash"));
+    }
+
+    @Test
+    void falsePositiveRateIsCloseToTheConfiguredRate() {
+        BloomFilter filter = new BloomFilter(INSERTIONS, 0.01);
+        Random random = new Random(2);
+        randomHashes(random, INSERTIONS).forEach(filter::put);
+
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (String hash : randomHashes(random, probes)) {
+            if (filter.mightContain(hash)) {
+                falsePositives++;
+            }
+        }
+        double rate = (double) falsePositives / probes;
+        assertTrue(rate > 0.002 && rate < 0.02, "false-positive rate " + rate);
+    }
+
+    @Test
+    void restoredFilterAnswersLikeTheOriginal() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        List<String> hashes = randomHashes(new Random(3), 100);
+        hashes.forEach(filter::put);
+
+        BloomFilter restored = new BloomFilter(filter.bitCount(), filter.hashFunctions(), filter.words());
+        assertEquals(filter.hashFunctions(), restored.hashFunctions());
+        hashes.forEach(hash -> assertTrue(restored.mightContain(hash)));
+        assertFalse(new BloomFilter(100, 0.01).mightContain(hashes.get(0)));
+    }
+
+    private static List<String> randomHashes(Random random, int count) {
+        List<String> hashes = new ArrayList<>(count);
+        byte[] bytes = new byte[32];
+        for (int i = 0; i < count; i++) {
+            random.nextBytes(bytes);
+            StringBuilder hash = new StringBuilder("0x");
+            for (byte b : bytes) {
+                hash.append(String.format("%02x", b));
+            }
+            hashes.add(hash.toString());
+        }
+        return hashes;
+    }
+}
@@ -0,0 +1,143 @@
+package org.example.hacken.persistence;
+
+import org.example.hacken.model.HexBytesConverter;
+import org.example.hacken.model.TransactionEntity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Testcontainers(disabledWithoutDocker = true)
+class JdbcTransactionSinkTest {
+
+    private static final String SENDER = "0x" + "ab".repeat(20);
+    private static final String RECIPIENT = "0x" + "cd".repeat(20);
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionPartitionManager partitionManager;
+    private JdbcTransactionSink sink;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource =
+                new DriverManagerDataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS transactions, transaction_blocks, transactions_legacy CASCADE");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+
+        partitionManager = new TransactionPartitionManager();
+        ReflectionTestUtils.setField(partitionManager, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(partitionManager, "enabled", true);
+        ReflectionTestUtils.setField(partitionManager, "sizeBlocks", 1000L);
+
+        // A disabled filter leaves every duplicate to the database
+        sink = new JdbcTransactionSink();
+        ReflectionTestUtils.setField(sink, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(sink, "hashFilter", new RecentTransactionHashFilter());
+        ReflectionTestUtils.setField(sink, "rowsPerStatement", 1000);
+    }
+
+    @Test
+    void migratedTransactionsMoveToTheirBlockWhenSynced() {
+        jdbcTemplate.execute("CREATE TABLE transactions_legacy (transaction_hash bytea PRIMARY KEY,"
+                + " from_address bytea, to_address bytea, tx_value numeric)");
+        jdbcTemplate.update("INSERT INTO transactions_legacy VALUES (?, ?, ?, ?)", bytes(hash(1)), bytes(SENDER),
+                bytes(RECIPIENT), BigDecimal.TEN);
+        LegacyTransactionMigrator migrator = new LegacyTransactionMigrator();
+        ReflectionTestUtils.setField(migrator, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(migrator, "partitionManager", partitionManager);
+        ReflectionTestUtils.setField(migrator, "sourceTable", "transactions_legacy");
+        ReflectionTestUtils.setField(migrator, "chunkSize", 100);
+        migrator.run(null);
+        assertEquals(List.of(0L), storedBlocks(hash(1)));
+
+        // The sync reaches the block: the migrated row is replaced, but only the new transaction counts as inserted
+        partitionManager.ensureCovered(500, 500);
+        List<TransactionEntity> inserted = sink.write(List.of(transaction(hash(1), 500), transaction(hash(2), 500)));
+        assertEquals(List.of(hash(2)), inserted.stream().map(TransactionEntity::getTransactionHash).toList());
+        assertEquals(List.of(500L), storedBlocks(hash(1)));
+        assertEquals(500L, claimedBlock(hash(1)));
+
+        // Replaying the block changes nothing
+        assertTrue(sink.write(List.of(transaction(hash(1), 500), transaction(hash(2), 500))).isEmpty());
+        assertEquals(List.of(500L), storedBlocks(hash(1)));
+
+        // Migrating again does not bring the block-0 copy back
+        migrator.run(null);
+        assertEquals(List.of(500L), storedBlocks(hash(1)));
+    }
+
+    @Test
+    void aHashIsStoredUnderOneBlockOnly() {
+        partitionManager.ensureCovered(100, 1200);
+        assertEquals(1, sink.write(List.of(transaction(hash(3), 100))).size());
+
+        // The same hash under another block, in another partition, and twice within one write
+        assertTrue(sink.write(List.of(transaction(hash(3), 1200), transaction(hash(3), 1200))).isEmpty());
+        assertEquals(List.of(100L), storedBlocks(hash(3)));
+    }
+
+    @Test
+    void receiptDataFillsInStoredRows() {
+        partitionManager.ensureCovered(700, 700);
+        assertEquals(1, sink.write(List.of(transaction(hash(4), 700))).size());
+
+        // Written again once its receipt is known, e.g. by a retry of a block that was stored without receipts
+        TransactionEntity withReceipt = transaction(hash(4), 700);
+        withReceipt.setGasUsed(21000L);
+        withReceipt.setStatus(1);
+        assertTrue(sink.write(List.of(withReceipt)).isEmpty());
+        assertEquals(21000L, jdbcTemplate.queryForObject("SELECT gas_used FROM transactions WHERE transaction_hash = ?",
+                Long.class, bytes(hash(4))));
+
+        // Stored receipt data is kept
+        TransactionEntity other = transaction(hash(4), 700);
+        other.setGasUsed(1L);
+        sink.write(List.of(other));
+        assertEquals(21000L, jdbcTemplate.queryForObject("SELECT gas_used FROM transactions WHERE transaction_hash = ?",
+                Long.class, bytes(hash(4))));
+    }
+
+    private List<Long> storedBlocks(String hash) {
+        return jdbcTemplate.queryForList("SELECT block_number FROM transactions WHERE transaction_hash = ?"
+                + " ORDER BY block_number", Long.class, bytes(hash));
+    }
+
+    private long claimedBlock(String hash) {
+        return jdbcTemplate.queryForObject("SELECT block_number FROM transaction_blocks WHERE transaction_hash = ?",
+                Long.class, bytes(hash));
+    }
+
+    private static TransactionEntity transaction(String hash, long block) {
+        TransactionEntity entity = new TransactionEntity();
+        entity.setTransactionHash(hash);
+        entity.setBlockNumber(block);
+        entity.setFromAddress(SENDER);
+        entity.setToAddress(RECIPIENT);
+        entity.setValue("10");
+        return entity;
+    }
+
+    private static byte[] bytes(String hex) {
+        return HexBytesConverter.toBytes(hex);
+    }
+
+    private static String hash(int i) {
+        return String.format("0x%064x", i);
+    }
+}
@@ -0,0 +1,110 @@
+package org.example.hacken.persistence;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.hacken.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecentTransactionHashFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // Hashes the filter asked the database about
+    private final List<List<String>> lookups = new ArrayList<>();
+    private RecentTransactionHashFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        // Stub repository with nothing stored, for the warm-up
+        TransactionRepository repository = (TransactionRepository) Proxy.newProxyInstance(
+                TransactionRepository.class.getClassLoader(), new Class<?>[]{TransactionRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findLatestTransactionHashes")) {
+                        return new ArrayList<String>();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        filter = new RecentTransactionHashFilter();
+        ReflectionTestUtils.setField(filter, "transactionRepository", repository);
+        ReflectionTestUtils.setField(filter, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        ReflectionTestUtils.setField(filter, "expectedInsertions", 1000L);
+        ReflectionTestUtils.setField(filter, "falsePositiveRate", 0.01);
+        ReflectionTestUtils.setField(filter, "recentSize", 2);
+        filter.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void evictedHashesAreLeftToTheDatabase() {
+        filter.record(List.of(hash(1), hash(2), hash(3)));
+
+        // Only the two most recent hashes are known exactly; the oldest is a probable hit for the Bloom filter
+        Set<String> existing = filter.findExisting(List.of(hash(1), hash(2), hash(3), hash(4)), this::lookup);
+        assertEquals(Set.of(hash(1), hash(2), hash(3)), existing);
+        assertEquals(List.of(List.of(hash(1))), lookups);
+        assertEquals(2.0, meterRegistry.counter("sync.dedup.lookups", "result", "recent").count());
+        assertEquals(1.0, meterRegistry.counter("sync.dedup.lookups", "result", "new").count());
+    }
+
+    @Test
+    void hashesRecordedInARolledBackTransactionAreNotKept() {
+        TransactionSynchronizationManager.initSynchronization();
+        filter.record(List.of(hash(1)));
+        // Deferred until the commit
+        assertTrue(filter.findExisting(List.of(hash(1)), this::lookup).isEmpty());
+        TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertTrue(filter.findExisting(List.of(hash(1)), this::lookup).isEmpty());
+        assertTrue(lookups.isEmpty());
+    }
+
+    @Test
+    void hashesRecordedInACommittedTransactionAreKept() {
+        TransactionSynchronizationManager.initSynchronization();
+        filter.record(List.of(hash(1)));
+        TransactionSynchronizationUtils.triggerAfterCommit();
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertEquals(Set.of(hash(1)), filter.findExisting(List.of(hash(1)), this::lookup));
+        assertTrue(lookups.isEmpty());
+    }
+
+    // The database knows every hash it is asked about
+    private List<String> lookup(List<String> hashes) {
+        lookups.add(hashes);
+        return hashes;
+    }
+
+    // Uniformly distributed like a real transaction hash, which the Bloom filter relies on
+    private static String hash(int i) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(Integer.toString(i).getBytes());
+            return String.format("0x%064x", new BigInteger(1, digest));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.example.hacken.rpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.core.methods.response.EthTransaction;
+import org.web3j.protocol.http.HttpService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonRpcBatcherTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger httpRequests = new AtomicInteger();
+    private HttpServer server;
+    private Web3j web3j;
+    private JsonRpcBatcher batcher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Stub JSON-RPC node answering eth_getTransactionByHash and eth_getBlockByNumber batches in reverse order
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            httpRequests.incrementAndGet();
+            JsonNode payload = objectMapper.readTree(exchange.getRequestBody());
+            List<JsonNode> responses = new ArrayList<>();
+            for (JsonNode request : payload) {
+                ObjectNode response = objectMapper.createObjectNode();
+                response.put("jsonrpc", "2.0");
+                response.put("id", request.get("id").asLong());
+                ObjectNode result = response.putObject("result");
+                if (request.get("method").asText().equals("eth_getBlockByNumber")) {
+                    result.put("number", request.get("params").get(0).asText());
+                    result.put("hash", hash(0));
+                    result.putArray("transactions");
+                } else {
+                    result.put("hash", request.get("params").get(0).asText());
+                    result.put("value", "0x1");
+                }
+                responses.add(response);
+            }
+            Collections.reverse(responses);
+            ArrayNode body = objectMapper.createArrayNode().addAll(responses);
+            byte[] bytes = objectMapper.writeValueAsBytes(body);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+
+        web3j = Web3j.build(new HttpService("http://localhost:" + server.getAddress().getPort()));
+        batcher = new JsonRpcBatcher();
+        ReflectionTestUtils.setField(batcher, "web3j", web3j);
+        ReflectionTestUtils.setField(batcher, "maxBatchSize", 10);
+        ReflectionTestUtils.setField(batcher, "flushIntervalMs", 50L);
+        ReflectionTestUtils.setField(batcher, "responseTimeoutMs", 5000L);
+        batcher.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.stop();
+        web3j.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void fullBatchesAreSentInOneRoundTripAndMatchedById() throws Exception {
+        List<CompletableFuture<EthTransaction>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(batcher.getTransactionByHash(hash(i)));
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            EthTransaction response = JsonRpcBatcher.await(futures.get(i));
+            assertFalse(response.hasError());
+            assertEquals(hash(i), response.getTransaction().orElseThrow().getHash());
+        }
+        assertEquals(2, httpRequests.get());
+    }
+
+    @Test
+    void partialBatchIsFlushedAfterInterval() throws Exception {
+        CompletableFuture<EthTransaction> first = batcher.getTransactionByHash(hash(1));
+        CompletableFuture<EthTransaction> second = batcher.getTransactionByHash(hash(2));
+
+        assertEquals(hash(1), JsonRpcBatcher.await(first).getTransaction().orElseThrow().getHash());
+        assertEquals(hash(2), JsonRpcBatcher.await(second).getTransaction().orElseThrow().getHash());
+        assertEquals(1, httpRequests.get());
+    }
+
+    @Test
+    void mixedBatchAnsweredOutOfOrderFailsOnlyTheMismatchedCalls() throws Exception {
+        CompletableFuture<EthTransaction> first = batcher.getTransactionByHash(hash(1));
+        CompletableFuture<EthTransaction> second = batcher.getTransactionByHash(hash(2));
+        CompletableFuture<EthBlock> block = batcher.getBlockByNumber(BigInteger.valueOf(5), false);
+
+        // Web3j decodes the reversed answers as [transaction, transaction, block]: the middle one still fits its
+        // request, the block and the first transaction arrive as the wrong type
+        assertEquals(hash(2), JsonRpcBatcher.await(second).getTransaction().orElseThrow().getHash());
+        assertThrows(IOException.class, () -> JsonRpcBatcher.await(first));
+        assertThrows(IOException.class, () -> JsonRpcBatcher.await(block));
+        assertEquals(1, httpRequests.get());
+    }
+
+    private static String hash(int i) {
+        return String.format("0x%064x", i);
+    }
+}
@@ -0,0 +1,181 @@
+package org.example.hacken.rpc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.web3j.protocol.Web3j;
+import org.web3j.protocol.core.DefaultBlockParameterNumber;
+import org.web3j.protocol.core.methods.response.EthBlock;
+import org.web3j.protocol.http.HttpService;
+
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MultiEndpointWeb3jServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<StubNode> nodes = new ArrayList<>();
+    private Web3j web3j;
+
+    @AfterEach
+    void tearDown() {
+        if (web3j != null) {
+            web3j.shutdown();
+        }
+        nodes.forEach(node -> node.server.stop(0));
+    }
+
+    @Test
+    void slowReadsAreHedgedToTheNextEndpoint() throws Exception {
+        StubNode slow = node(1, 2000, Answer.RESULT);
+        StubNode fast = node(2, 0, Answer.RESULT);
+        web3j = Web3j.build(service(true, 1000, endpoint("slow", slow, 0), endpoint("fast", fast, 0)));
+
+        long start = System.nanoTime();
+        BigInteger blockNumber = web3j.ethBlockNumber().send().getBlockNumber();
+
+        // The untried slow endpoint was chosen first; the hedge after the (maximum) delay answered
+        assertEquals(BigInteger.TWO, blockNumber);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1900);
+        assertEquals(1, slow.requests.get());
+        assertEquals(1.0, meterRegistry.counter("rpc.endpoint.hedges", "endpoint", "fast").count());
+    }
+
+    @Test
+    void failingEndpointIsEjectedAndRequestsFailOver() throws Exception {
+        StubNode broken = node(1, 0, Answer.HTTP_ERROR);
+        StubNode healthy = node(2, 0, Answer.RESULT);
+        web3j = Web3j.build(service(false, 1000, endpoint("broken", broken, 0), endpoint("healthy", healthy, 0)));
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(BigInteger.TWO, web3j.ethBlockNumber().send().getBlockNumber());
+        }
+        // Two failures open the breaker; after that the broken endpoint receives nothing
+        assertEquals(2, broken.requests.get());
+        assertEquals(1.0, meterRegistry.get("rpc.endpoint.circuit.open").tag("endpoint", "broken").gauge().value());
+        assertEquals(2, meterRegistry.get("rpc.endpoint.requests").tag("endpoint", "broken").tag("outcome", "error")
+                .timer().count());
+    }
+
+    @Test
+    void throttledRequestsAreRetriedOnAnotherEndpoint() throws Exception {
+        StubNode throttled = node(1, 0, Answer.RATE_LIMITED);
+        StubNode other = node(2, 0, Answer.RESULT);
+        web3j = Web3j.build(service(false, 1000, endpoint("throttled", throttled, 0), endpoint("other", other, 0)));
+
+        assertEquals(BigInteger.TWO, web3j.ethBlockNumber().send().getBlockNumber());
+        assertEquals(1, throttled.requests.get());
+        assertEquals(1, meterRegistry.get("rpc.endpoint.requests").tag("endpoint", "throttled")
+                .tag("outcome", "rate_limited").timer().count());
+    }
+
+    @Test
+    void emptyBlocksWaitForAnotherEndpoint() throws Exception {
+        StubNode lagging = node(1, 0, Answer.NULL_RESULT);
+        StubNode synced = node(2, 200, Answer.RESULT);
+        web3j = Web3j.build(service(true, 1000, endpoint("lagging", lagging, 0), endpoint("synced", synced, 0)));
+
+        // The lagging endpoint is tried first and answers at once, but without the block
+        EthBlock.Block block = web3j.ethGetBlockByNumber(new DefaultBlockParameterNumber(5), false).send().getBlock();
+
+        assertEquals(BigInteger.TWO, block.getNumber());
+        assertEquals(1, lagging.requests.get());
+        assertEquals(1, synced.requests.get());
+        assertEquals(0.0, meterRegistry.get("rpc.endpoint.circuit.open").tag("endpoint", "lagging").gauge().value());
+    }
+
+    @Test
+    void emptyBlockIsReturnedWhenNoEndpointHasIt() throws Exception {
+        StubNode first = node(1, 0, Answer.NULL_RESULT);
+        StubNode second = node(2, 0, Answer.NULL_RESULT);
+        web3j = Web3j.build(service(true, 1000, endpoint("first", first, 0), endpoint("second", second, 0)));
+
+        assertNull(web3j.ethGetBlockByNumber(new DefaultBlockParameterNumber(5), false).send().getBlock());
+        assertEquals(1, first.requests.get());
+        assertEquals(1, second.requests.get());
+    }
+
+    @Test
+    void requestsWaitForTheEndpointBudget() throws Exception {
+        StubNode node = node(1, 0, Answer.RESULT);
+        // 10 requests per second with a burst of one: five requests need at least 400 ms
+        web3j = Web3j.build(service(false, 1000, endpoint("limited", node, 10)));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            assertEquals(BigInteger.ONE, web3j.ethBlockNumber().send().getBlockNumber());
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 380);
+        assertEquals(5, node.requests.get());
+    }
+
+    private MultiEndpointWeb3jService service(boolean hedging, long hedgeMaxDelayMs, RpcEndpoint... endpoints) {
+        return new MultiEndpointWeb3jService(List.of(endpoints), hedging, 0.95, 10, hedgeMaxDelayMs);
+    }
+
+    private RpcEndpoint endpoint(String name, StubNode node, double requestsPerSecond) {
+        return new RpcEndpoint(name, new HttpService("http://localhost:" + node.server.getAddress().getPort()),
+                new TokenBucket(requestsPerSecond, 1), new CircuitBreaker(2, TimeUnit.MINUTES.toNanos(1)),
+                meterRegistry);
+    }
+
+    private enum Answer { RESULT, HTTP_ERROR, RATE_LIMITED, NULL_RESULT }
+
+    // Stub JSON-RPC node answering every single call with its own id as the result (as the number for blocks)
+    private StubNode node(long id, long delayMs, Answer answer) throws Exception {
+        StubNode node = new StubNode(HttpServer.create(new InetSocketAddress("localhost", 0), 0));
+        node.server.createContext("/", exchange -> {
+            node.requests.incrementAndGet();
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ObjectNode response = objectMapper.createObjectNode();
+            response.put("jsonrpc", "2.0");
+            response.put("id", request.get("id").asLong());
+            if (answer == Answer.RATE_LIMITED) {
+                response.putObject("error").put("code", -32005).put("message", "limit exceeded");
+            } else if (answer == Answer.NULL_RESULT) {
+                response.putNull("result");
+            } else if (request.get("method").asText().equals("eth_getBlockByNumber")) {
+                response.putObject("result").put("number", "0x" + Long.toHexString(id));
+            } else {
+                response.put("result", "0x" + Long.toHexString(id));
+            }
+            byte[] bytes = objectMapper.writeValueAsBytes(response);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(answer == Answer.HTTP_ERROR ? 503 : 200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        // Requests of a hedged call are answered concurrently
+        node.server.setExecutor(Executors.newCachedThreadPool());
+        node.server.start();
+        nodes.add(node);
+        return node;
+    }
+
+    private record StubNode(HttpServer server, AtomicInteger requests) {
+        StubNode(HttpServer server) {
+            this(server, new AtomicInteger());
+        }
+    }
+}
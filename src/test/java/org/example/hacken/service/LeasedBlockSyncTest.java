@@ -0,0 +1,158 @@
+package org.example.hacken.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.hacken.ingest.IngestionPipeline;
+import org.example.hacken.persistence.BlockRangeLeaseStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.web3j.protocol.core.methods.response.EthBlock;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LeasedBlockSyncTest {
+
+    private static final BlockRangeLeaseStore.Lease LEASE = new BlockRangeLeaseStore.Lease(1000, 1999);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StubLeaseStore leaseStore = new StubLeaseStore();
+    private final StubBackfill backfill = new StubBackfill();
+    private final StubPipeline pipeline = new StubPipeline();
+    private ScheduledExecutorService renewer;
+    private LeasedBlockSync sync;
+
+    @BeforeEach
+    void setUp() {
+        sync = new LeasedBlockSync();
+        ReflectionTestUtils.setField(sync, "leaseStore", leaseStore);
+        ReflectionTestUtils.setField(sync, "blockBackfillService", backfill);
+        ReflectionTestUtils.setField(sync, "ingestionPipeline", pipeline);
+        ReflectionTestUtils.setField(sync, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(sync, "leaseMs", 60_000L);
+        ReflectionTestUtils.setField(sync, "instanceId", "instance-a");
+        renewer = Executors.newSingleThreadScheduledExecutor();
+        ReflectionTestUtils.setField(sync, "renewer", renewer);
+        sync.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        renewer.shutdownNow();
+    }
+
+    @Test
+    void completedRangeAdvancesTheWatermark() {
+        process();
+
+        assertEquals(List.of(List.of(1000L, 1999L)), backfill.ranges);
+        assertEquals(1, pipeline.awaits);
+        assertEquals(List.of("complete", "advanceWatermark"), leaseStore.calls);
+        assertEquals(1.0, meterRegistry.counter("sync.leases.completed").count());
+        assertEquals(0.0, meterRegistry.counter("sync.leases.lost").count());
+    }
+
+    @Test
+    void lostLeaseIsCountedAndTheWatermarkStillAdvances() {
+        leaseStore.completes = false;
+        process();
+
+        // The blocks are committed either way, the range is just owned by someone else now
+        assertEquals(List.of("complete", "advanceWatermark"), leaseStore.calls);
+        assertEquals(0.0, meterRegistry.counter("sync.leases.completed").count());
+        assertEquals(1.0, meterRegistry.counter("sync.leases.lost").count());
+    }
+
+    @Test
+    void unfinishedRangeIsReleased() {
+        backfill.lastBlock = 1500;
+        assertThrows(IllegalStateException.class, this::process);
+
+        assertEquals(0, pipeline.awaits);
+        assertEquals(List.of("release"), leaseStore.calls);
+        assertEquals(0.0, meterRegistry.counter("sync.leases.lost").count());
+    }
+
+    @Test
+    void rangeWithFailedBlocksIsReleasedInsteadOfCompleted() {
+        pipeline.failed = List.of(BigInteger.valueOf(1500));
+        assertThrows(IllegalStateException.class, this::process);
+
+        // Marking it done would move the shared checkpoint past the hole
+        assertEquals(1, pipeline.awaits);
+        assertEquals(List.of("release"), leaseStore.calls);
+        assertEquals(0.0, meterRegistry.counter("sync.leases.completed").count());
+    }
+
+    private void process() {
+        ReflectionTestUtils.invokeMethod(sync, "process", LEASE);
+    }
+
+    private static class StubLeaseStore extends BlockRangeLeaseStore {
+        final List<String> calls = new ArrayList<>();
+        boolean completes = true;
+
+        @Override
+        public boolean complete(Lease lease, String owner) {
+            assertEquals(LEASE, lease);
+            assertEquals("instance-a", owner);
+            calls.add("complete");
+            return completes;
+        }
+
+        @Override
+        public void release(Lease lease, String owner) {
+            calls.add("release");
+        }
+
+        @Override
+        public boolean renew(Lease lease, String owner, long leaseMs) {
+            return true;
+        }
+
+        @Override
+        public Long advanceWatermark() {
+            calls.add("advanceWatermark");
+            return 999L;
+        }
+    }
+
+    // Reports the range as fetched up to lastBlock without fetching anything
+    private static class StubBackfill extends BlockBackfillService {
+        final List<List<Long>> ranges = new ArrayList<>();
+        long lastBlock = -1;
+
+        @Override
+        public <T> BigInteger backfill(BigInteger fromBlock, BigInteger toBlock, Function<EthBlock, T> decoder,
+                                       BiConsumer<BigInteger, T> committer) {
+            ranges.add(List.of(fromBlock.longValueExact(), toBlock.longValueExact()));
+            return lastBlock < 0 ? toBlock : BigInteger.valueOf(lastBlock);
+        }
+    }
+
+    private static class StubPipeline extends IngestionPipeline {
+        int awaits;
+        List<BigInteger> failed = List.of();
+
+        @Override
+        public void awaitPersisted() {
+            awaits++;
+        }
+
+        @Override
+        public List<BigInteger> failedBlocks(BigInteger fromBlock, BigInteger toBlock) {
+            assertEquals(BigInteger.valueOf(LEASE.fromBlock()), fromBlock);
+            assertEquals(BigInteger.valueOf(LEASE.toBlock()), toBlock);
+            return failed;
+        }
+    }
+}
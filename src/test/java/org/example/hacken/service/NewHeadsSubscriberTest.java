@@ -0,0 +1,166 @@
+package org.example.hacken.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class NewHeadsSubscriberTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Connections that have subscribed to newHeads, in subscription order
+    private final BlockingQueue<WebSocket> subscribed = new LinkedBlockingQueue<>();
+    private final BlockingQueue<List<Long>> fetchedRanges = new LinkedBlockingQueue<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private StubNode node;
+    private NewHeadsSubscriber subscriber;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        node = new StubNode();
+        node.start();
+        // The port is only known once the server is bound
+        if (!node.started.await(5, TimeUnit.SECONDS)) {
+            throw new AssertionError("Stub node did not start");
+        }
+        subscriber = new NewHeadsSubscriber("ws://localhost:" + node.getPort(), 50, 200, 60_000,
+                (fromBlock, toBlock) -> {
+                    fetchedRanges.add(List.of(fromBlock.longValueExact(), toBlock.longValueExact()));
+                    return toBlock;
+                }, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        subscriber.stop();
+        node.stop(1000);
+    }
+
+    @Test
+    void fetchesNewHeadsAndFillsGaps() throws Exception {
+        subscriber.start(BigInteger.valueOf(9));
+        WebSocket connection = awaitSubscription();
+
+        sendHead(connection, 10);
+        assertEquals(List.of(10L, 10L), awaitRange());
+
+        // Two heads were missed: the next notification covers them as well
+        sendHead(connection, 13);
+        assertEquals(List.of(11L, 13L), awaitRange());
+
+        // Already submitted heads (e.g. after a reorg) are ignored
+        sendHead(connection, 12);
+        sendHead(connection, 14);
+        assertEquals(List.of(14L, 14L), awaitRange());
+    }
+
+    @Test
+    void reconnectsAndFillsBlocksMissedWhileDisconnected() throws Exception {
+        subscriber.start(BigInteger.valueOf(9));
+        WebSocket first = awaitSubscription();
+        sendHead(first, 10);
+        assertEquals(List.of(10L, 10L), awaitRange());
+
+        first.close();
+        WebSocket second = awaitSubscription();
+        sendHead(second, 15);
+        assertEquals(List.of(11L, 15L), awaitRange());
+        assertEquals(1.0, meterRegistry.counter("sync.live.reconnects").count());
+
+        // Notifications of the dropped connection must not be processed any more
+        assertNull(fetchedRanges.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    private WebSocket awaitSubscription() throws InterruptedException {
+        WebSocket connection = subscribed.poll(5, TimeUnit.SECONDS);
+        if (connection == null) {
+            throw new AssertionError("No newHeads subscription received");
+        }
+        return connection;
+    }
+
+    private List<Long> awaitRange() throws InterruptedException {
+        List<Long> range = fetchedRanges.poll(5, TimeUnit.SECONDS);
+        if (range == null) {
+            throw new AssertionError("No blocks fetched");
+        }
+        return range;
+    }
+
+    private void sendHead(WebSocket connection, long number) throws Exception {
+        ObjectNode notification = objectMapper.createObjectNode();
+        notification.put("jsonrpc", "2.0");
+        notification.put("method", "eth_subscription");
+        ObjectNode params = notification.putObject("params");
+        params.put("subscription", "0x1");
+        ObjectNode head = params.putObject("result");
+        head.put("number", "0x" + Long.toHexString(number));
+        head.put("hash", String.format("0x%064x", number));
+        head.put("parentHash", String.format("0x%064x", number - 1));
+        connection.send(objectMapper.writeValueAsString(notification));
+    }
+
+    // Stub WebSocket JSON-RPC node that accepts eth_subscribe("newHeads") with subscription id 0x1
+    private class StubNode extends WebSocketServer {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        StubNode() {
+            super(new InetSocketAddress("localhost", 0));
+        }
+
+        @Override
+        public void onMessage(WebSocket connection, String message) {
+            try {
+                JsonNode request = objectMapper.readTree(message);
+                ObjectNode response = objectMapper.createObjectNode();
+                response.put("jsonrpc", "2.0");
+                response.put("id", request.get("id").asLong());
+                if ("eth_subscribe".equals(request.get("method").asText())) {
+                    response.put("result", "0x1");
+                    connection.send(objectMapper.writeValueAsString(response));
+                    subscribed.add(connection);
+                } else {
+                    response.put("result", true);
+                    connection.send(objectMapper.writeValueAsString(response));
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void onOpen(WebSocket connection, ClientHandshake handshake) {
+        }
+
+        @Override
+        public void onClose(WebSocket connection, int code, String reason, boolean remote) {
+        }
+
+        @Override
+        public void onError(WebSocket connection, Exception e) {
+        }
+
+        @Override
+        public void onStart() {
+            started.countDown();
+        }
+    }
+}
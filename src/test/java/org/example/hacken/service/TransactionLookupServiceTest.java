@@ -0,0 +1,203 @@
+package org.example.hacken.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.hacken.model.TransactionEntity;
+import org.example.hacken.persistence.TransactionArchive;
+import org.example.hacken.repository.TransactionRepository;
+import org.example.hacken.rpc.JsonRpcBatcher;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.web3j.protocol.core.Response;
+import org.web3j.protocol.core.methods.response.EthTransaction;
+import org.web3j.protocol.core.methods.response.Transaction;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionLookupServiceTest {
+
+    private static final String STORED = "0x" + "a".repeat(64);
+    private static final String MISSING = "0x" + "b".repeat(64);
+    private static final String PINNED = "0x" + "c".repeat(64);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StubBatcher batcher = new StubBatcher();
+    private final StubWriteBehind writeBehind = new StubWriteBehind();
+
+    @Test
+    void concurrentLookupsOfTheSameMissingHashMakeOneRpcCall() throws IOException {
+        CompletableFuture<EthTransaction> response = new CompletableFuture<>();
+        batcher.responses.put(MISSING, response);
+        TransactionLookupService service = service(100, List.of());
+
+        List<CompletableFuture<Optional<TransactionEntity>>> lookups = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            lookups.add(service.getTransaction(i % 2 == 0 ? MISSING : MISSING.toUpperCase()));
+        }
+        // The first load has to reach the node before its answer can be shared
+        waitForCalls(1);
+        response.complete(transaction(MISSING, "0x10"));
+
+        for (CompletableFuture<Optional<TransactionEntity>> lookup : lookups) {
+            assertEquals(MISSING, JsonRpcBatcher.await(lookup).orElseThrow().getTransactionHash());
+        }
+        assertEquals(List.of(MISSING), batcher.calls);
+        assertEquals(1, writeBehind.enqueued.size());
+    }
+
+    @Test
+    void pinnedHashesAreNeverEvicted() throws IOException {
+        batcher.responses.put(PINNED, CompletableFuture.completedFuture(transaction(PINNED, "0x10")));
+        TransactionLookupService service = service(1, List.of(PINNED));
+        JsonRpcBatcher.await(service.getTransaction(PINNED));
+
+        // Push the pinned hash out of the one-entry cache
+        for (int i = 0; i < 20; i++) {
+            String hash = String.format("0x%064x", i);
+            batcher.responses.put(hash, CompletableFuture.completedFuture(transaction(hash, "0x10")));
+            JsonRpcBatcher.await(service.getTransaction(hash));
+        }
+
+        assertEquals(PINNED, JsonRpcBatcher.await(service.getTransaction(PINNED)).orElseThrow().getTransactionHash());
+        assertEquals(PINNED, JsonRpcBatcher.await(service.getTransactions(List.of(PINNED))).get(0)
+                .orElseThrow().getTransactionHash());
+        assertEquals(1, Collections.frequency(batcher.calls, PINNED));
+        assertEquals(2.0, meterRegistry.counter("cache.transactions.pinned.hits").count());
+    }
+
+    @Test
+    void batchMissesGoThroughTheBatcher() throws IOException {
+        batcher.responses.put(MISSING, CompletableFuture.completedFuture(transaction(MISSING, "0x10")));
+        batcher.responses.put(PINNED, CompletableFuture.completedFuture(transaction(PINNED, null)));
+        TransactionLookupService service = service(100, List.of());
+
+        List<Optional<TransactionEntity>> found =
+                JsonRpcBatcher.await(service.getTransactions(List.of(STORED, MISSING, PINNED)));
+
+        assertEquals(STORED, found.get(0).orElseThrow().getTransactionHash());
+        assertEquals(MISSING, found.get(1).orElseThrow().getTransactionHash());
+        assertEquals(PINNED, found.get(2).orElseThrow().getTransactionHash());
+        // The stored hash is answered by the database; only the misses reach the node
+        assertEquals(List.of(MISSING, PINNED), batcher.calls.stream().sorted().toList());
+        // The pending transaction is returned but not persisted
+        assertEquals(List.of(List.of(MISSING)), writeBehind.batches);
+    }
+
+    @Test
+    void errorResponsesAreNotCached() throws IOException {
+        EthTransaction error = new EthTransaction();
+        error.setError(new Response.Error(-32000, "node is syncing"));
+        batcher.responses.put(MISSING, CompletableFuture.completedFuture(error));
+        TransactionLookupService service = service(100, List.of());
+
+        IOException thrown = assertThrows(IOException.class,
+                () -> JsonRpcBatcher.await(service.getTransaction(MISSING)));
+        assertTrue(thrown.getMessage().contains("node is syncing"));
+        assertThrows(IOException.class, () -> JsonRpcBatcher.await(service.getTransactions(List.of(MISSING))));
+
+        batcher.responses.put(MISSING, CompletableFuture.completedFuture(transaction(MISSING, "0x10")));
+        assertEquals(MISSING, JsonRpcBatcher.await(service.getTransaction(MISSING)).orElseThrow().getTransactionHash());
+        assertEquals(List.of(MISSING, MISSING, MISSING), batcher.calls);
+    }
+
+    private TransactionLookupService service(long maxSize, List<String> pinned) {
+        // Stub repository that only knows STORED
+        TransactionRepository repository = (TransactionRepository) Proxy.newProxyInstance(
+                TransactionRepository.class.getClassLoader(), new Class<?>[]{TransactionRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findByTransactionHash" -> STORED.equals(args[0])
+                            ? Optional.of(entity(STORED)) : Optional.empty();
+                    case "findByTransactionHashIn" -> ((Collection<?>) args[0]).contains(STORED)
+                            ? List.of(entity(STORED)) : List.of();
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        TransactionLookupService service = new TransactionLookupService();
+        ReflectionTestUtils.setField(service, "repository", repository);
+        ReflectionTestUtils.setField(service, "archive", new EmptyArchive());
+        ReflectionTestUtils.setField(service, "rpcBatcher", batcher);
+        ReflectionTestUtils.setField(service, "writeBehind", writeBehind);
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(service, "maxSize", maxSize);
+        ReflectionTestUtils.setField(service, "notFoundTtlSeconds", 5L);
+        ReflectionTestUtils.setField(service, "pinnedHashes", pinned);
+        service.init();
+        return service;
+    }
+
+    private void waitForCalls(int calls) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (batcher.calls.size() < calls && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private static TransactionEntity entity(String hash) {
+        TransactionEntity entity = new TransactionEntity();
+        entity.setTransactionHash(hash);
+        entity.setBlockNumber(1L);
+        return entity;
+    }
+
+    private static EthTransaction transaction(String hash, String blockNumber) {
+        Transaction transaction = new Transaction();
+        transaction.setHash(hash);
+        transaction.setBlockNumber(blockNumber);
+        transaction.setValue("0x1");
+        EthTransaction response = new EthTransaction();
+        response.setResult(transaction);
+        return response;
+    }
+
+    // Stub batcher answering from a map of prepared responses and recording every hash it is asked for
+    private static class StubBatcher extends JsonRpcBatcher {
+        final Map<String, CompletableFuture<EthTransaction>> responses = new ConcurrentHashMap<>();
+        final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public CompletableFuture<EthTransaction> getTransactionByHash(String transactionHash) {
+            calls.add(transactionHash);
+            return responses.get(transactionHash);
+        }
+    }
+
+    // Stub archive with nothing archived
+    private static class EmptyArchive extends TransactionArchive {
+        @Override
+        public Optional<TransactionEntity> findByHash(String hash) {
+            return Optional.empty();
+        }
+
+        @Override
+        public List<TransactionEntity> findByHashes(Collection<String> hashes) {
+            return List.of();
+        }
+    }
+
+    // Stub write-behind queue recording what would be persisted
+    private static class StubWriteBehind extends TransactionWriteBehind {
+        final List<TransactionEntity> enqueued = Collections.synchronizedList(new ArrayList<>());
+        final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void enqueue(TransactionEntity entity) {
+            enqueued.add(entity);
+        }
+
+        @Override
+        public void enqueueAll(List<TransactionEntity> entities) {
+            batches.add(entities.stream().map(TransactionEntity::getTransactionHash).toList());
+        }
+    }
+}